@@ -0,0 +1,124 @@
+package com.example.halldues;
+
+import androidx.annotation.Nullable;
+
+// Running dues for one resident-month. Built once from the month bitmap (a few
+// bit counts), then kept current one toggle at a time: each changed day moves
+// one count from its old status to its new one, and every charge is a product of
+// those counts, so an update is O(1) no matter how long the month is.
+public class BillingEngine {
+
+    private final RateTable rates;
+    private final int monthKey;
+    private final int daysInMonth;
+
+    private MonthMealBitmap month;
+    private int mealDays;
+    private int offDays;
+    private int closedDays;
+
+    public BillingEngine(RateTable rates, int monthKey, MonthMealBitmap month) {
+        this.rates = rates;
+        this.monthKey = monthKey;
+        this.daysInMonth = DateKeys.lengthOfMonth(monthKey);
+        this.month = month;
+        mealDays = month.countEffective(MealStatus.MEAL_ON, daysInMonth);
+        offDays = month.count(MealStatus.MEAL_OFF);
+        closedDays = month.count(MealStatus.HALL_CLOSED);
+    }
+
+    public int getMonthKey() {
+        return monthKey;
+    }
+
+    // null clears the day back to "not set", which bills as MEAL_ON.
+    public void setDay(int day, @Nullable MealStatus status) {
+        if (day < 1 || day > daysInMonth) {
+            throw new IllegalArgumentException("Day out of range: " + day);
+        }
+        MealStatus before = month.getOrDefault(day);
+        MealStatus after = status != null ? status : MealStatus.MEAL_ON;
+        month = month.with(day, status);
+        if (before == after) return;
+
+        adjust(before, -1);
+        adjust(after, 1);
+    }
+
+    // Applies only the days that differ from the current state.
+    public void setMonth(MonthMealBitmap newMonth) {
+        int changed = month.diff(newMonth);
+        while (changed != 0) {
+            int day = Integer.numberOfTrailingZeros(changed) + 1;
+            changed &= changed - 1;
+            if (day <= daysInMonth) {
+                setDay(day, newMonth.get(day));
+            }
+        }
+    }
+
+    private void adjust(MealStatus status, int delta) {
+        switch (status) {
+            case MEAL_OFF:
+                offDays += delta;
+                break;
+            case HALL_CLOSED:
+                closedDays += delta;
+                break;
+            default:
+                mealDays += delta;
+                break;
+        }
+    }
+
+    public int getMealDays() {
+        return mealDays;
+    }
+
+    public int getOffDays() {
+        return offDays;
+    }
+
+    public int getClosedDays() {
+        return closedDays;
+    }
+
+    // ================= CHARGES (paisa) =================
+    public long getMessing() {
+        return mealDays * rates.mealRate;
+    }
+
+    public long getFine() {
+        return rates.fineFor(offDays);
+    }
+
+    // Flat charges are waived for a month the hall was closed throughout.
+    public long getGenerator() {
+        return hallOpen() ? rates.generatorCharge : 0;
+    }
+
+    public long getWater() {
+        return hallOpen() ? rates.waterCharge : 0;
+    }
+
+    public long getMisc() {
+        return hallOpen() ? rates.miscCharge : 0;
+    }
+
+    public long getTotal() {
+        return getMessing() + getFine() + getGenerator() + getWater() + getMisc();
+    }
+
+    private boolean hallOpen() {
+        return closedDays < daysInMonth;
+    }
+
+    public PaymentRecord toPaymentRecord(String label) {
+        return new PaymentRecord(label, toAmount(getMessing()), toAmount(getFine()), toAmount(getGenerator()),
+                toAmount(getWater()), toAmount(getMisc()), toAmount(getTotal()));
+    }
+
+    private static double toAmount(long paisa) {
+        return paisa / 100.0;
+    }
+}
@@ -0,0 +1,94 @@
+package com.example.halldues;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for the incremental dues calculation.
+ */
+public class BillingEngineTest {
+
+    private static final RateTable RATES = new RateTable(6500, 500, 2, 5000, 1000, 2000);
+    private static final int APRIL_2025 = DateKeys.monthKey(2025, 4); // 30 days
+
+    @Test
+    public void untouchedMonth_billsEveryDayAsMeal() {
+        BillingEngine engine = new BillingEngine(RATES, APRIL_2025, MonthMealBitmap.EMPTY);
+
+        assertEquals(30, engine.getMealDays());
+        assertEquals(30 * 6500, engine.getMessing());
+        assertEquals(0, engine.getFine());
+        assertEquals(30 * 6500 + 5000 + 1000 + 2000, engine.getTotal());
+    }
+
+    @Test
+    public void offDays_beyondAllowance_areFined() {
+        MonthMealBitmap month = MonthMealBitmap.EMPTY
+                .with(1, MealStatus.MEAL_OFF)
+                .with(2, MealStatus.MEAL_OFF)
+                .with(3, MealStatus.MEAL_OFF)
+                .with(4, MealStatus.HALL_CLOSED);
+        BillingEngine engine = new BillingEngine(RATES, APRIL_2025, month);
+
+        assertEquals(26, engine.getMealDays());
+        assertEquals(3, engine.getOffDays());
+        assertEquals(1, engine.getClosedDays());
+        assertEquals(500, engine.getFine());
+    }
+
+    @Test
+    public void setDay_matchesFullRecompute() {
+        MonthMealBitmap month = MonthMealBitmap.EMPTY;
+        BillingEngine engine = new BillingEngine(RATES, APRIL_2025, month);
+
+        int[] days = {5, 5, 9, 30, 5, 12, 9, 1};
+        for (int day : days) {
+            MealStatus next = month.getOrDefault(day).next();
+            month = month.with(day, next);
+            engine.setDay(day, next);
+
+            BillingEngine fresh = new BillingEngine(RATES, APRIL_2025, month);
+            assertEquals(fresh.getTotal(), engine.getTotal());
+            assertEquals(fresh.getMealDays(), engine.getMealDays());
+            assertEquals(fresh.getOffDays(), engine.getOffDays());
+            assertEquals(fresh.getClosedDays(), engine.getClosedDays());
+        }
+    }
+
+    @Test
+    public void setMonth_appliesOnlyTheDiff() {
+        BillingEngine engine = new BillingEngine(RATES, APRIL_2025,
+                MonthMealBitmap.EMPTY.with(3, MealStatus.MEAL_OFF));
+        MonthMealBitmap remote = MonthMealBitmap.EMPTY
+                .with(7, MealStatus.HALL_CLOSED)
+                .with(8, MealStatus.MEAL_ON);
+
+        engine.setMonth(remote);
+
+        assertEquals(new BillingEngine(RATES, APRIL_2025, remote).getTotal(), engine.getTotal());
+        assertEquals(0, engine.getOffDays());
+        assertEquals(1, engine.getClosedDays());
+    }
+
+    @Test
+    public void hallClosedAllMonth_waivesFlatCharges() {
+        MonthMealBitmap month = MonthMealBitmap.EMPTY;
+        for (int day = 1; day <= 30; day++) {
+            month = month.with(day, MealStatus.HALL_CLOSED);
+        }
+        BillingEngine engine = new BillingEngine(RATES, APRIL_2025, month);
+
+        assertEquals(0, engine.getTotal());
+    }
+
+    @Test
+    public void paymentRecord_isInCurrencyUnits() {
+        PaymentRecord record = new BillingEngine(RATES, APRIL_2025, MonthMealBitmap.EMPTY)
+                .toPaymentRecord("2025-04");
+
+        assertEquals("2025-04", record.getMonth());
+        assertEquals(1950.0, record.messing, 0.0);
+        assertEquals(2030.0, record.getTotal(), 0.0);
+    }
+}
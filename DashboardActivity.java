@@ -1,82 +1,96 @@
 package com.example.halldues;
 
 import android.content.Intent;
-import android.content.SharedPreferences;
-import android.graphics.Color;
 import android.os.Bundle;
-import android.view.Gravity;
 import android.widget.Button;
-import android.widget.GridLayout;
 import android.widget.TextView;
 import android.widget.Toast;
 
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
 import androidx.appcompat.app.AppCompatActivity;
 import androidx.recyclerview.widget.LinearLayoutManager;
 import androidx.recyclerview.widget.RecyclerView;
 
-import com.google.firebase.auth.FirebaseAuth;
+import com.google.android.gms.tasks.CancellationToken;
 
-import java.text.SimpleDateFormat;
 import java.util.ArrayList;
-import java.util.Calendar;
-import java.util.HashMap;
+import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Locale;
-import java.util.Map;
+import java.util.Set;
 
 public class DashboardActivity extends AppCompatActivity {
 
-    private static final String PREFS_NAME = "HallDuesPrefs";
-    private static final String KEY_USER_ID = "userId";
+    private static final int HISTORY_MONTHS = 3;
+    private static final int PAYMENT_PAGE_SIZE = 12;
+    // Next page is requested when the last row is this close to the screen.
+    private static final int PAGE_PREFETCH_ROWS = 4;
+    private static final String MONTH_REQUEST = "month";
 
     private FirebaseManager firebaseManager;
-    private FirebaseAuth firebaseAuth;
+    private MealRepository mealRepository;
+    private StartupPipeline startup;
+    private RequestScope requests;
     private User currentUser;
+    private FirebaseManager.MealSubscription mealSubscription;
+    private boolean mealsMigrated;
+    @Nullable
+    private List<PaymentRecord> firstPaymentPage; // kept until the migration has finished
 
     private RecyclerView rvPaymentHistory;
     private PaymentHistoryAdapter paymentHistoryAdapter;
-    private List<PaymentRecord> paymentRecords;
+    private LinearLayoutManager paymentLayout;
+    private PaymentRecord currentPayment;
+    private final List<PaymentRecord> pastPayments = new ArrayList<>(); // newest first
+    private boolean paymentPageLoading;
+    private boolean paymentsComplete;
+    private TextView tvCurrentDues;
+    private BillingEngine currentBill;
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
-        setContentView(R.layout.activity_dashboard);
-
-        firebaseManager = FirebaseManager.getInstance();
-        firebaseAuth = FirebaseAuth.getInstance();
+        startup = StartupPipeline.getInstance(this);
 
+        // Launched from the home screen without a session: hand over to login
+        // before inflating anything.
         String userId = getIntent().getStringExtra("userId");
         if (userId == null) {
-            userId = getLoggedInUserId();
+            userId = startup.getSessionUserId();
         }
 
         if (userId == null) {
-            Toast.makeText(this, "Session expired. Please login again.", Toast.LENGTH_SHORT).show();
             navigateToLogin();
             return;
         }
 
+        setContentView(R.layout.activity_dashboard);
+        startup.mark("dashboard");
+        firebaseManager = FirebaseManager.getInstance();
+        mealRepository = LocalFirstMealRepository.getInstance(this);
+        requests = new RequestScope(this);
         loadUserData(userId);
     }
 
     private void loadUserData(String userId) {
-        firebaseManager.getUserById(userId, new FirebaseManager.OnUserOperationListener() {
-            @Override
-            public void onSuccess(User user) {
-                runOnUiThread(() -> {
+        User cached = firebaseManager.getCachedUser(userId);
+        if (cached != null) {
+            currentUser = cached;
+            setupDashboardUI();
+            return;
+        }
+
+        firebaseManager.loadUser(userId, requests.token())
+                .addOnSuccessListener(user -> {
                     currentUser = user;
                     setupDashboardUI();
-                });
-            }
-
-            @Override
-            public void onFailure(String error) {
-                runOnUiThread(() -> {
-                    Toast.makeText(DashboardActivity.this, "Error loading user data: " + error, Toast.LENGTH_LONG).show();
+                })
+                .addOnFailureListener(e -> {
+                    Toast.makeText(this, "Error loading user data: " + e.getMessage(), Toast.LENGTH_LONG).show();
                     navigateToLogin();
                 });
-            }
-        });
     }
 
     private void setupDashboardUI() {
@@ -84,6 +98,10 @@ public class DashboardActivity extends AppCompatActivity {
 
         TextView tvUserName = findViewById(R.id.tvUserName);
         tvUserName.setText(currentUser.getFullName() + " (" + currentUser.getDepartment() + ")");
+        tvUserName.setOnLongClickListener(v -> {
+            startActivity(new Intent(this, MetricsDebugActivity.class));
+            return true;
+        });
 
         Button btnLogout = findViewById(R.id.btnLogout);
         btnLogout.setOnClickListener(v -> logout());
@@ -95,31 +113,166 @@ public class DashboardActivity extends AppCompatActivity {
             startActivity(intent);
         });
 
+        // Compact read-only view: day numbers on coloured cells, no status labels.
+        MealCalendarView calendarMealStatus = findViewById(R.id.calendarMealStatus);
+        calendarMealStatus.setShowStatusLabels(false);
+        calendarMealStatus.setCellHeightRatio(0.8f);
+
         setupRecyclerView();
-        fetchAndDisplayMealData();
+        migrateMealsThenFetch();
+    }
+
+    private void migrateMealsThenFetch() {
+        new MealStoreMigrator(this).migrateIfNeeded(currentUser.getId(), new MealStoreMigrator.OnMigrationListener() {
+            @Override
+            public void onComplete(int migratedCount) {
+                runOnUiThread(() -> {
+                    mealsMigrated = true;
+                    fetchAndDisplayMealData();
+                    if (firstPaymentPage != null) billRecentMonths(firstPaymentPage);
+                });
+            }
+
+            @Override
+            public void onFailure(String error) {
+                // Show whatever is already migrated; the migration is retried on the next launch.
+                // Nothing is billed: months still holding legacy records would come out wrong.
+                runOnUiThread(() -> {
+                    mealsMigrated = true;
+                    fetchAndDisplayMealData();
+                });
+            }
+        });
     }
 
     private void setupRecyclerView() {
         rvPaymentHistory = findViewById(R.id.rvPaymentHistory);
-        rvPaymentHistory.setLayoutManager(new LinearLayoutManager(this));
+        paymentLayout = new LinearLayoutManager(this);
+        rvPaymentHistory.setLayoutManager(paymentLayout);
+        tvCurrentDues = findViewById(R.id.tvCurrentDues);
 
-        // Create sample data
-        paymentRecords = new ArrayList<>();
-        paymentRecords.add(new PaymentRecord("Jan 2025", 1755, 0, 50, 10, 20, 1835));
-        paymentRecords.add(new PaymentRecord("Dec 2024", 1600, 10, 50, 10, 20, 1690));
-        paymentRecords.add(new PaymentRecord("Nov 2024", 1800, 0, 50, 10, 20, 1880));
+        // Row 0 is the current month, kept live by the meal subscription; earlier
+        // months are stored bills, read a page at a time as the list scrolls.
+        int monthKey = DateKeys.currentMonthKey();
+        currentBill = new BillingEngine(RateTable.DEFAULT, monthKey, MonthMealBitmap.EMPTY);
+        currentPayment = currentBill.toPaymentRecord(DateKeys.formatMonth(monthKey));
 
-        paymentHistoryAdapter = new PaymentHistoryAdapter(paymentRecords);
+        paymentHistoryAdapter = new PaymentHistoryAdapter();
         rvPaymentHistory.setAdapter(paymentHistoryAdapter);
+        rvPaymentHistory.addOnScrollListener(new RecyclerView.OnScrollListener() {
+            @Override
+            public void onScrolled(@NonNull RecyclerView recyclerView, int dx, int dy) {
+                if (paymentLayout.findLastVisibleItemPosition() >= paymentHistoryAdapter.getItemCount() - PAGE_PREFETCH_ROWS) {
+                    loadPaymentPage();
+                }
+            }
+        });
+        submitPayments();
+        loadPaymentPage();
+    }
+
+    private void loadPaymentPage() {
+        if (paymentPageLoading || paymentsComplete) return;
+        paymentPageLoading = true;
+        boolean firstPage = pastPayments.isEmpty();
+        String before = firstPage ? currentPayment.getMonth() : pastPayments.get(pastPayments.size() - 1).getMonth();
+
+        CancellationToken token = requests.token();
+        firebaseManager.loadPaymentPage(currentUser.getId(), before, PAYMENT_PAGE_SIZE, token)
+                .addOnCompleteListener(page -> {
+                    if (token.isCancellationRequested()) return;
+                    paymentPageLoading = false;
+                    if (!page.isSuccessful()) return; // retried on the next scroll
+                    List<PaymentRecord> records = page.getResult();
+                    pastPayments.addAll(records);
+                    paymentsComplete = records.size() < PAYMENT_PAGE_SIZE;
+                    submitPayments();
+                    if (!firstPage) return;
+                    // Billing reads the month nodes, which are only complete once the
+                    // legacy records have been migrated into them.
+                    firstPaymentPage = records;
+                    if (mealsMigrated) billRecentMonths(records);
+                });
     }
 
+    // The last closed months without a stored bill are billed from their meal data
+    // (read from the on-device store) for display only. Stored bills are written by
+    // the hall office; the rules do not let residents write their own.
+    private void billRecentMonths(List<PaymentRecord> latestPage) {
+        firstPaymentPage = null;
+        int newestMonthKey = DateKeys.currentMonthKey() - 1;
+        int oldestMonthKey = DateKeys.currentMonthKey() - (HISTORY_MONTHS - 1);
+        Set<String> stored = new HashSet<>();
+        for (PaymentRecord record : latestPage) {
+            stored.add(record.getMonth());
+        }
+        boolean anyMissing = false;
+        for (int monthKey = oldestMonthKey; monthKey <= newestMonthKey; monthKey++) {
+            if (!stored.contains(DateKeys.formatMonth(monthKey))) anyMissing = true;
+        }
+        if (!anyMissing) return;
+
+        CancellationToken token = requests.token();
+        mealRepository.getMonths(currentUser.getId(), oldestMonthKey, newestMonthKey, token)
+                .addOnSuccessListener(months -> {
+                    if (token.isCancellationRequested()) return;
+                    List<PaymentRecord> bills = new ArrayList<>();
+                    for (int monthKey = newestMonthKey; monthKey >= oldestMonthKey; monthKey--) {
+                        // History is informational; a month that failed is left out.
+                        MonthMealBitmap month = months.get(monthKey);
+                        String yearMonth = DateKeys.formatMonth(monthKey);
+                        if (month == null || stored.contains(yearMonth)) continue;
+                        bills.add(new BillingEngine(RateTable.DEFAULT, monthKey, month).toPaymentRecord(yearMonth));
+                    }
+                    pastPayments.addAll(bills);
+                    // yyyy-MM keys sort by date.
+                    Collections.sort(pastPayments, (a, b) -> b.getMonth().compareTo(a.getMonth()));
+                    submitPayments();
+                });
+    }
+
+    private void submitPayments() {
+        List<PaymentRecord> rows = new ArrayList<>(pastPayments.size() + 1);
+        rows.add(currentPayment);
+        rows.addAll(pastPayments);
+        paymentHistoryAdapter.submitList(rows);
+    }
+
+    private void updateCurrentDues(MonthMealBitmap month) {
+        currentBill.setMonth(month);
+        currentPayment = currentBill.toPaymentRecord(DateKeys.formatMonth(currentBill.getMonthKey()));
+        submitPayments();
+        tvCurrentDues.setText(String.format(Locale.US, "Current dues: $%.2f", currentPayment.getTotal()));
+    }
+
+    @Override
+    protected void onStart() {
+        super.onStart();
+        if (mealsMigrated) {
+            fetchAndDisplayMealData();
+        }
+    }
+
+    @Override
+    protected void onStop() {
+        super.onStop();
+        if (requests != null) requests.cancel(MONTH_REQUEST);
+        mealSubscription = null;
+    }
+
+    // Live: edits made on another device or in MealManagementActivity show up here.
     private void fetchAndDisplayMealData() {
-        String yearMonth = new SimpleDateFormat("yyyy-MM", Locale.getDefault()).format(Calendar.getInstance().getTime());
+        if (mealSubscription != null) return;
+        String yearMonth = DateKeys.formatMonth(DateKeys.currentMonthKey());
 
-        firebaseManager.getMealRecordsForMonth(currentUser.getId(), yearMonth, new FirebaseManager.OnMealListListener() {
+        CancellationToken token = requests.latest(MONTH_REQUEST);
+        mealSubscription = firebaseManager.subscribeToMonth(currentUser.getId(), yearMonth, token, new FirebaseManager.OnMonthChangeListener() {
             @Override
-            public void onSuccess(List<MealRecord> records) {
-                runOnUiThread(() -> populateMealGrid(records));
+            public void onMonthChanged(MonthMealBitmap month, int changedDays) {
+                runOnUiThread(() -> {
+                    populateMealGrid(month);
+                    updateCurrentDues(month);
+                });
             }
 
             @Override
@@ -129,63 +282,20 @@ public class DashboardActivity extends AppCompatActivity {
         });
     }
 
-    private void populateMealGrid(List<MealRecord> records) {
-        GridLayout gridMealStatus = findViewById(R.id.gridMealStatus);
-        gridMealStatus.removeAllViews();
-
-        Map<String, MealRecord> recordsMap = new HashMap<>();
-        for (MealRecord r : records) {
-            recordsMap.put(r.getDate(), r);
-        }
-
-        Calendar cal = Calendar.getInstance();
-        int daysInMonth = cal.getActualMaximum(Calendar.DAY_OF_MONTH);
-        SimpleDateFormat dateFormat = new SimpleDateFormat("yyyy-MM-dd", Locale.getDefault());
-
-        for (int day = 1; day <= daysInMonth; day++) {
-            cal.set(Calendar.DAY_OF_MONTH, day);
-            String date = dateFormat.format(cal.getTime());
-            String status = recordsMap.containsKey(date) ? recordsMap.get(date).getStatus() : "MEAL_ON";
-
-            TextView dayView = new TextView(this);
-            dayView.setText(String.valueOf(day));
-            dayView.setGravity(Gravity.CENTER);
-            dayView.setPadding(12, 12, 12, 12);
-
-            if ("MEAL_OFF".equals(status)) {
-                dayView.setBackgroundColor(Color.parseColor("#FEE2E2"));
-            } else if ("HALL_CLOSED".equals(status)) {
-                dayView.setBackgroundColor(Color.parseColor("#E2E8F0"));
-            } else {
-                dayView.setBackgroundColor(Color.parseColor("#D1FAE5"));
-            }
-
-            GridLayout.LayoutParams params = new GridLayout.LayoutParams();
-            params.width = 0;
-            params.height = GridLayout.LayoutParams.WRAP_CONTENT;
-            params.columnSpec = GridLayout.spec(GridLayout.UNDEFINED, 1f);
-            params.setMargins(4, 4, 4, 4);
-            dayView.setLayoutParams(params);
-
-            gridMealStatus.addView(dayView);
-        }
+    private void populateMealGrid(MonthMealBitmap month) {
+        MealCalendarView calendarMealStatus = findViewById(R.id.calendarMealStatus);
+        calendarMealStatus.setMonth(DateKeys.currentMonthKey(), month);
+        startup.markFirstCalendar();
     }
 
     private void logout() {
-        firebaseAuth.signOut();
-
-        SharedPreferences prefs = getSharedPreferences(PREFS_NAME, MODE_PRIVATE);
-        prefs.edit().clear().apply();
+        firebaseManager.logout();
+        startup.clearSession();
 
         Toast.makeText(this, "Logged out successfully", Toast.LENGTH_SHORT).show();
         navigateToLogin();
     }
 
-    private String getLoggedInUserId() {
-        SharedPreferences prefs = getSharedPreferences(PREFS_NAME, MODE_PRIVATE);
-        return prefs.getString(KEY_USER_ID, null);
-    }
-
     private void navigateToLogin() {
         Intent intent = new Intent(this, LoginActivity.class);
         intent.setFlags(Intent.FLAG_ACTIVITY_NEW_TASK | Intent.FLAG_ACTIVITY_CLEAR_TASK);
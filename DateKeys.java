@@ -0,0 +1,194 @@
+package com.example.halldues;
+
+import java.util.TimeZone;
+
+// Integer date keys used below the serialization boundary:
+//   day key   - yyyyMMdd as an int (20250314); sorts and range-scans like the date
+//   month key - year * 12 + (month - 1), so moving between months is plain addition
+//   epoch day - days since 1970-01-01, for weekday arithmetic
+// "yyyy-MM-dd" / "yyyy-MM" strings are only built when talking to Firebase or
+// SharedPreferences, and always with ASCII digits whatever the device locale.
+public final class DateKeys {
+
+    // Month length and first weekday for 2000..2099, looked up on every calendar render.
+    private static final int TABLE_FIRST_YEAR = 2000;
+    private static final int TABLE_MONTHS = 100 * 12;
+    private static final int TABLE_FIRST_KEY = TABLE_FIRST_YEAR * 12;
+    private static final byte[] MONTH_LENGTHS = new byte[TABLE_MONTHS];
+    private static final byte[] FIRST_WEEKDAYS = new byte[TABLE_MONTHS];
+
+    private static final int[] DAYS_IN_MONTH = {31, 28, 31, 30, 31, 30, 31, 31, 30, 31, 30, 31};
+    private static final long MILLIS_PER_DAY = 24L * 60 * 60 * 1000;
+
+    static {
+        for (int i = 0; i < TABLE_MONTHS; i++) {
+            int monthKey = TABLE_FIRST_KEY + i;
+            MONTH_LENGTHS[i] = (byte) computeLengthOfMonth(yearOf(monthKey), monthOf(monthKey));
+            FIRST_WEEKDAYS[i] = (byte) weekday(epochDay(yearOf(monthKey), monthOf(monthKey), 1));
+        }
+    }
+
+    private DateKeys() {
+    }
+
+    // ================= MONTH KEYS =================
+    // month is 1..12 throughout.
+    public static int monthKey(int year, int month) {
+        return year * 12 + month - 1;
+    }
+
+    public static int yearOf(int monthKey) {
+        return monthKey / 12;
+    }
+
+    public static int monthOf(int monthKey) {
+        return monthKey % 12 + 1;
+    }
+
+    public static int lengthOfMonth(int monthKey) {
+        int i = monthKey - TABLE_FIRST_KEY;
+        if (i >= 0 && i < TABLE_MONTHS) return MONTH_LENGTHS[i];
+        return computeLengthOfMonth(yearOf(monthKey), monthOf(monthKey));
+    }
+
+    // 0 = Sunday ... 6 = Saturday, matching Calendar.DAY_OF_WEEK - 1.
+    public static int firstWeekday(int monthKey) {
+        int i = monthKey - TABLE_FIRST_KEY;
+        if (i >= 0 && i < TABLE_MONTHS) return FIRST_WEEKDAYS[i];
+        return weekday(epochDay(yearOf(monthKey), monthOf(monthKey), 1));
+    }
+
+    // ================= DAY KEYS =================
+    public static int dayKey(int year, int month, int day) {
+        return (year * 100 + month) * 100 + day;
+    }
+
+    public static int dayKey(int monthKey, int day) {
+        return dayKey(yearOf(monthKey), monthOf(monthKey), day);
+    }
+
+    public static int monthKeyOf(int dayKey) {
+        int yearMonth = dayKey / 100;
+        return monthKey(yearMonth / 100, yearMonth % 100);
+    }
+
+    public static int dayOfMonth(int dayKey) {
+        return dayKey % 100;
+    }
+
+    public static int today() {
+        long now = System.currentTimeMillis();
+        long localMillis = now + TimeZone.getDefault().getOffset(now);
+        return fromEpochDay(Math.floorDiv(localMillis, MILLIS_PER_DAY));
+    }
+
+    public static int currentMonthKey() {
+        return monthKeyOf(today());
+    }
+
+    // ================= EPOCH DAYS =================
+    // Proleptic Gregorian conversions (H. Hinnant's days_from_civil / civil_from_days).
+    public static long epochDay(int year, int month, int day) {
+        long y = month <= 2 ? year - 1 : year;
+        long era = (y >= 0 ? y : y - 399) / 400;
+        long yearOfEra = y - era * 400;
+        long dayOfYear = (153 * (month + (month > 2 ? -3 : 9)) + 2) / 5 + day - 1;
+        long dayOfEra = yearOfEra * 365 + yearOfEra / 4 - yearOfEra / 100 + dayOfYear;
+        return era * 146097 + dayOfEra - 719468;
+    }
+
+    public static int fromEpochDay(long epochDay) {
+        long z = epochDay + 719468;
+        long era = (z >= 0 ? z : z - 146096) / 146097;
+        long dayOfEra = z - era * 146097;
+        long yearOfEra = (dayOfEra - dayOfEra / 1460 + dayOfEra / 36524 - dayOfEra / 146096) / 365;
+        long dayOfYear = dayOfEra - (365 * yearOfEra + yearOfEra / 4 - yearOfEra / 100);
+        long mp = (5 * dayOfYear + 2) / 153;
+        int day = (int) (dayOfYear - (153 * mp + 2) / 5 + 1);
+        int month = (int) (mp < 10 ? mp + 3 : mp - 9);
+        int year = (int) (yearOfEra + era * 400 + (month <= 2 ? 1 : 0));
+        return dayKey(year, month, day);
+    }
+
+    public static long toEpochDay(int dayKey) {
+        int yearMonth = dayKey / 100;
+        return epochDay(yearMonth / 100, yearMonth % 100, dayKey % 100);
+    }
+
+    public static int plusDays(int dayKey, int days) {
+        return fromEpochDay(toEpochDay(dayKey) + days);
+    }
+
+    // 1970-01-01 was a Thursday.
+    public static int weekday(long epochDay) {
+        return (int) Math.floorMod(epochDay + 4, 7L);
+    }
+
+    // ================= SERIALIZATION =================
+    // "yyyy-MM-dd"
+    public static String formatDay(int dayKey) {
+        char[] out = new char[10];
+        int yearMonth = dayKey / 100;
+        writeDigits(out, 0, yearMonth / 100, 4);
+        out[4] = '-';
+        writeDigits(out, 5, yearMonth % 100, 2);
+        out[7] = '-';
+        writeDigits(out, 8, dayKey % 100, 2);
+        return new String(out);
+    }
+
+    // "yyyy-MM"
+    public static String formatMonth(int monthKey) {
+        char[] out = new char[7];
+        writeDigits(out, 0, yearOf(monthKey), 4);
+        out[4] = '-';
+        writeDigits(out, 5, monthOf(monthKey), 2);
+        return new String(out);
+    }
+
+    // Day key for "yyyy-MM-dd", or -1 if the string is not a valid date.
+    public static int parseDay(String date) {
+        if (date == null || date.length() != 10 || date.charAt(7) != '-') return -1;
+        int monthKey = parseMonthPrefix(date);
+        int day = readDigits(date, 8, 2);
+        if (monthKey < 0 || day < 1 || day > lengthOfMonth(monthKey)) return -1;
+        return dayKey(monthKey, day);
+    }
+
+    // Month key for "yyyy-MM", or -1 if the string is not a valid month.
+    public static int parseMonth(String yearMonth) {
+        if (yearMonth == null || yearMonth.length() != 7) return -1;
+        return parseMonthPrefix(yearMonth);
+    }
+
+    private static int parseMonthPrefix(String s) {
+        if (s.charAt(4) != '-') return -1;
+        int year = readDigits(s, 0, 4);
+        int month = readDigits(s, 5, 2);
+        if (year < 0 || month < 1 || month > 12) return -1;
+        return monthKey(year, month);
+    }
+
+    // Only ASCII '0'..'9' count; Character.isDigit would accept other scripts.
+    private static int readDigits(String s, int from, int count) {
+        int value = 0;
+        for (int i = from; i < from + count; i++) {
+            char c = s.charAt(i);
+            if (c < '0' || c > '9') return -1;
+            value = value * 10 + (c - '0');
+        }
+        return value;
+    }
+
+    private static void writeDigits(char[] out, int from, int value, int count) {
+        for (int i = from + count - 1; i >= from; i--) {
+            out[i] = (char) ('0' + value % 10);
+            value /= 10;
+        }
+    }
+
+    private static int computeLengthOfMonth(int year, int month) {
+        if (month == 2 && (year % 4 == 0 && (year % 100 != 0 || year % 400 == 0))) return 29;
+        return DAYS_IN_MONTH[month - 1];
+    }
+}
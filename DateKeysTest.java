@@ -0,0 +1,75 @@
+package com.example.halldues;
+
+import org.junit.Test;
+
+import java.util.Calendar;
+import java.util.GregorianCalendar;
+import java.util.TimeZone;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for the integer date keys.
+ */
+public class DateKeysTest {
+
+    @Test
+    public void monthTables_matchGregorianCalendar() {
+        GregorianCalendar cal = new GregorianCalendar(TimeZone.getTimeZone("UTC"));
+        for (int year = 1990; year <= 2110; year++) {
+            for (int month = 1; month <= 12; month++) {
+                cal.clear();
+                cal.set(year, month - 1, 1);
+                int key = DateKeys.monthKey(year, month);
+
+                assertEquals(cal.getActualMaximum(Calendar.DAY_OF_MONTH), DateKeys.lengthOfMonth(key));
+                assertEquals(cal.get(Calendar.DAY_OF_WEEK) - 1, DateKeys.firstWeekday(key));
+            }
+        }
+    }
+
+    @Test
+    public void epochDay_roundTrips() {
+        assertEquals(0L, DateKeys.epochDay(1970, 1, 1));
+        assertEquals(20200101, DateKeys.fromEpochDay(DateKeys.epochDay(2020, 1, 1)));
+        assertEquals(20240229, DateKeys.fromEpochDay(DateKeys.epochDay(2024, 3, 1) - 1));
+        assertEquals(20250101, DateKeys.plusDays(20241231, 1));
+        assertEquals(20240301, DateKeys.plusDays(20240228, 2));
+        for (long day = -800; day < 50_000; day += 7) {
+            int key = DateKeys.fromEpochDay(day);
+            int yearMonth = key / 100;
+            assertEquals(day, DateKeys.epochDay(yearMonth / 100, yearMonth % 100, key % 100));
+        }
+    }
+
+    @Test
+    public void monthKeys_shiftAcrossYears() {
+        int january = DateKeys.monthKey(2025, 1);
+        assertEquals("2024-12", DateKeys.formatMonth(january - 1));
+        assertEquals("2025-02", DateKeys.formatMonth(january + 1));
+        assertEquals(2025, DateKeys.yearOf(january));
+        assertEquals(1, DateKeys.monthOf(january));
+    }
+
+    @Test
+    public void format_andParse_roundTrip() {
+        int key = DateKeys.dayKey(2025, 3, 7);
+        assertEquals(20250307, key);
+        assertEquals("2025-03-07", DateKeys.formatDay(key));
+        assertEquals(key, DateKeys.parseDay("2025-03-07"));
+        assertEquals(DateKeys.monthKey(2025, 3), DateKeys.monthKeyOf(key));
+        assertEquals(7, DateKeys.dayOfMonth(key));
+        assertEquals(DateKeys.monthKey(2025, 3), DateKeys.parseMonth("2025-03"));
+    }
+
+    @Test
+    public void parse_rejectsMalformedAndNonAsciiDigits() {
+        assertEquals(-1, DateKeys.parseDay(null));
+        assertEquals(-1, DateKeys.parseDay("2025-02-29"));
+        assertEquals(-1, DateKeys.parseDay("2025-13-01"));
+        assertEquals(-1, DateKeys.parseDay("2025/03/07"));
+        // Arabic-Indic digits, as SimpleDateFormat emits under an "ar" locale.
+        assertEquals(-1, DateKeys.parseDay("\u0662\u0660\u0662\u0665-03-07"));
+        assertEquals(-1, DateKeys.parseMonth("2025-3"));
+    }
+}
@@ -1,31 +1,112 @@
 package com.example.halldues;
 
+import android.content.Context;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+import android.util.SparseArray;
+import android.util.SparseIntArray;
+
 import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
 
+import com.google.android.gms.tasks.CancellationToken;
+import com.google.android.gms.tasks.CancellationTokenSource;
+import com.google.android.gms.tasks.Task;
+import com.google.android.gms.tasks.TaskCompletionSource;
+import com.google.android.gms.tasks.Tasks;
 import com.google.firebase.auth.FirebaseAuth;
 import com.google.firebase.auth.FirebaseUser;
 import com.google.firebase.database.DataSnapshot;
 import com.google.firebase.database.DatabaseError;
+import com.google.firebase.database.DatabaseException;
 import com.google.firebase.database.DatabaseReference;
 import com.google.firebase.database.FirebaseDatabase;
+import com.google.firebase.database.MutableData;
 import com.google.firebase.database.Query;
+import com.google.firebase.database.ServerValue;
+import com.google.firebase.database.Transaction;
 import com.google.firebase.database.ValueEventListener;
 
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeoutException;
 
 public class FirebaseManager {
 
+    private static final long OUTBOX_FLUSH_DELAY_MS = 15_000;
+    private static final int MONTH_CACHE_CAPACITY = 24;
+    private static final int COUNT_SHARDS = 16;
+    private static final String ROLLUP_DAYS = "days";
+    private static final int COUNT_ATTEMPTS = 3;
+    private static final long LOAD_TIMEOUT_MS = 15_000;
+    private static final String TAG = "FirebaseManager";
+
     private static FirebaseManager instance;
+    private final DatabaseReference rootRef;
     private final DatabaseReference usersRef;
+    private final DatabaseReference rollIndexRef;
     private final DatabaseReference mealsRef;
+    private final DatabaseReference mealCountsRef;
+    private final DatabaseReference countMarksRef;
+    private final DatabaseReference paymentsRef;
+    private final DatabaseReference hallClosuresRef;
+    private final DatabaseReference mealRulesRef;
+    private final DatabaseReference mealRollupsRef;
+    private final DatabaseReference residentCountRef;
     private final FirebaseAuth firebaseAuth;
+    private final UserProfileRepository profiles;
+
+    private final Handler handler = new Handler(Looper.getMainLooper());
+    private final Runnable flushRunnable = () -> flushPendingMeals(null);
+    private final List<OnBatchOperationListener> flushListeners = new ArrayList<>();
+    private final MonthCache monthCache = new MonthCache(MONTH_CACHE_CAPACITY);
+    private final OperationMetrics metrics = new OperationMetrics();
+    private final Set<String> prefetchesInFlight = new HashSet<>();
+    private final Map<String, LiveMealMonth> liveMonths = new HashMap<>();
+    private final ResidentTrie residentIndex = new ResidentTrie(); // every resident seen, for offline search
+    private final SparseIntArray hallClosures = new SparseIntArray(); // month key -> closed-day mask
+    @Nullable
+    private TaskCompletionSource<Void> hallClosuresLoaded;
+    @Nullable
+    private ValueEventListener hallClosuresListener;
+    // Standing meal plans of one resident (the signed-in one), in creation order.
+    private final List<MealRule> mealRules = new ArrayList<>();
+    private final SparseArray<MonthMealBitmap> expandedRules = new SparseArray<>();
+    @Nullable
+    private String mealRulesUserId;
+    @Nullable
+    private TaskCompletionSource<Void> mealRulesLoaded;
+    @Nullable
+    private ValueEventListener mealRulesListener;
+    private MealOutbox outbox;
+    @Nullable
+    private LocalMealStore localStore;
+    private boolean connected;
+    private boolean flushScheduled;
+    private boolean flushInFlight;
 
     private FirebaseManager() {
         FirebaseDatabase database = FirebaseDatabase.getInstance();
         firebaseAuth = FirebaseAuth.getInstance();
+        rootRef = database.getReference();
         usersRef = database.getReference("users");
+        rollIndexRef = database.getReference("rollIndex");
         mealsRef = database.getReference("meals");
+        mealCountsRef = database.getReference("mealCounts");
+        countMarksRef = database.getReference("mealCountMarks");
+        paymentsRef = database.getReference("payments");
+        hallClosuresRef = database.getReference("hallClosures");
+        mealRulesRef = database.getReference("mealRules");
+        mealRollupsRef = database.getReference("mealRollups");
+        residentCountRef = database.getReference("hallStats").child("residentCount");
+        profiles = new UserProfileRepository(usersRef);
     }
 
     public static synchronized FirebaseManager getInstance() {
@@ -45,14 +126,56 @@ public class FirebaseManager {
         void onFailure(String error);
     }
 
+    public interface OnMealMonthListener {
+        void onSuccess(MonthMealBitmap month);
+        void onFailure(String error);
+    }
+
+    public interface OnMonthChangeListener {
+        // changedDays has bit (day - 1) set for each day that differs from the previous
+        // delivery; the first delivery reports every day that has a status.
+        void onMonthChanged(MonthMealBitmap month, int changedDays);
+        void onFailure(String error);
+    }
+
+    public interface MealSubscription {
+        void cancel();
+    }
+
     public interface OnMealOperationListener {
         void onSuccess(MealRecord record);
         void onFailure(String error);
     }
 
+    public interface OnBatchOperationListener {
+        void onSuccess(int savedCount);
+        void onFailure(String error);
+    }
+
+    // Months are saved in date order; a failure names the month that failed, so the
+    // months before it are known to be committed. permanent is a rules rejection,
+    // which no retry will get past.
+    private interface MonthPatchListener {
+        void onSuccess(int savedCount);
+        void onFailure(String error, int failedMonthKey, boolean permanent);
+    }
+
+    public interface OnHallCountsListener {
+        void onSuccess(List<HallDayCount> days);
+        void onFailure(String error);
+    }
+
     // ================= REGISTER USER =================
     public void registerUser(User user, String password, OnUserOperationListener listener) {
-        String email = user.getRollNumber() + "@halldues.com";
+        // Checked before the auth account exists, so a rejected roll leaves nothing behind.
+        String roll = SnapshotMappers.rollKey(user.getRollNumber());
+        if (roll == null) {
+            listener.onFailure("Roll number may only contain letters, digits and '-'.");
+            return;
+        }
+        user.setRollNumber(roll);
+        String email = roll + "@halldues.com";
+        OperationMetrics.Timer timer = metrics.start("registerUser");
 
         firebaseAuth.createUserWithEmailAndPassword(email, password)
                 .addOnSuccessListener(authResult -> {
@@ -61,86 +184,1444 @@ public class FirebaseManager {
                         String userId = firebaseUser.getUid();
                         user.setId(userId); // IMPORTANT: The User object's ID is now the Firebase UID.
 
-                        usersRef.child(userId).setValue(user)
-                                .addOnSuccessListener(aVoid -> listener.onSuccess(user))
-                                .addOnFailureListener(e -> listener.onFailure("Failed to save user data: " + e.getMessage()));
+                        // The profile and its roll number index entry go in one write.
+                        Map<String, Object> updates = new HashMap<>();
+                        updates.put("users/" + userId, SnapshotMappers.toMap(user));
+                        updates.put("rollIndex/" + roll, userId);
+                        updates.put("hallStats/residentCount", ServerValue.increment(1));
+                        rootRef.updateChildren(updates)
+                                .addOnSuccessListener(aVoid -> {
+                                    timer.addRecords(1).addBytes(userBytes(user)).success();
+                                    listener.onSuccess(user);
+                                })
+                                .addOnFailureListener(e -> {
+                                    timer.failure();
+                                    listener.onFailure("Failed to save user data: " + e.getMessage());
+                                });
                     }
                 })
-                .addOnFailureListener(e -> listener.onFailure("Registration failed: " + e.getMessage()));
+                .addOnFailureListener(e -> {
+                    timer.failure();
+                    listener.onFailure("Registration failed: " + e.getMessage());
+                });
     }
 
     // ================= LOGIN USER =================
     public void loginUser(String rollNumber, String password, OnUserOperationListener listener) {
-        String email = rollNumber + "@halldues.com";
+        String email = rollNumber.trim() + "@halldues.com";
+        OperationMetrics.Timer timer = metrics.start("loginUser");
 
         firebaseAuth.signInWithEmailAndPassword(email, password)
                 .addOnSuccessListener(authResult -> {
                     FirebaseUser firebaseUser = authResult.getUser();
                     if (firebaseUser != null) {
-                        getUserById(firebaseUser.getUid(), listener);
+                        // Starts the session profile; later screens read it from memory.
+                        profiles.load(firebaseUser.getUid(), timed(timer, listener));
                     }
                 })
-                .addOnFailureListener(e -> listener.onFailure("Login failed: " + e.getMessage()));
+                .addOnFailureListener(e -> {
+                    timer.failure();
+                    listener.onFailure("Login failed: " + e.getMessage());
+                });
+    }
+
+    // ================= LOGOUT =================
+    // Edits still queued for this resident are dropped: they could only be sent with
+    // their credentials, and the device may be handed to someone else.
+    public void logout() {
+        FirebaseUser firebaseUser = firebaseAuth.getCurrentUser();
+        if (firebaseUser != null && outbox != null) {
+            int dropped = outbox.clearUser(firebaseUser.getUid());
+            if (dropped > 0) Log.w(TAG, "Dropped " + dropped + " unsent meal edits at logout");
+        }
+        profiles.clear();
+        for (LiveMealMonth live : liveMonths.values()) {
+            live.stop();
+        }
+        liveMonths.clear();
+        monthCache.clear();
+        if (hallClosuresListener != null) {
+            hallClosuresRef.removeEventListener(hallClosuresListener);
+            hallClosuresListener = null;
+        }
+        hallClosuresLoaded = null;
+        hallClosures.clear();
+        stopMealRules();
+        residentIndex.clear();
+        if (localStore != null) {
+            localStore.clearAsync();
+        }
+        firebaseAuth.signOut();
     }
 
     // ================= GET USER BY ID =================
+    // The signed-in user's profile, if the session already has it; no network.
+    @Nullable
+    public User getCachedUser(String userId) {
+        return profiles.get(userId);
+    }
+
     public void getUserById(String userId, OnUserOperationListener listener) {
         // NOTE: The 'userId' parameter MUST be the Firebase Authentication UID.
+        OperationMetrics.Timer timer = metrics.start("getUserById");
+        FirebaseUser firebaseUser = firebaseAuth.getCurrentUser();
+        if (firebaseUser != null && userId.equals(firebaseUser.getUid())) {
+            // Served from the session profile (a restored session starts it here).
+            profiles.load(userId, timed(timer, listener));
+            return;
+        }
+
         usersRef.child(userId).addListenerForSingleValueEvent(new ValueEventListener() {
             @Override
             public void onDataChange(@NonNull DataSnapshot snapshot) {
-                User user = snapshot.getValue(User.class);
+                User user = SnapshotMappers.userFromSnapshot(snapshot);
                 if (user != null) {
-                    user.setId(snapshot.getKey()); // Ensure the user object has the UID.
+                    timer.addRecords(1).addBytes(userBytes(user)).success();
                     listener.onSuccess(user);
                 } else {
+                    timer.failure();
                     listener.onFailure("User data not found in database.");
                 }
             }
 
             @Override
             public void onCancelled(@NonNull DatabaseError error) {
+                timer.failure();
                 listener.onFailure("Database error: " + error.getMessage());
             }
         });
     }
 
     // ================= MEAL DATA =================
+    // Each month is one node, meals/{uid}/{yyyy-MM} = {bits, updatedAt}, holding a
+    // MonthMealBitmap (2 bits per day). A month read is a single small node.
     public void saveMealRecord(MealRecord record, OnMealOperationListener listener) {
-         String id = record.getUserId() + "_" + record.getDate();
-        record.setId(id);
+        saveMealRecords(record.getUserId(), Collections.singletonList(record), new OnBatchOperationListener() {
+            @Override
+            public void onSuccess(int savedCount) {
+                listener.onSuccess(record);
+            }
+
+            @Override
+            public void onFailure(String error) {
+                listener.onFailure(error);
+            }
+        });
+    }
+
+    // Changed days are merged into each month's bitmap inside a transaction, so edits
+    // made to other days from another device are kept. Every month is written as a
+    // unit; a save from the calendar touches one month and is one round trip.
+    // saveMealRecord() is measured here too, as a batch of one.
+    public void saveMealRecords(String userId, Collection<MealRecord> records, OnBatchOperationListener listener) {
+        saveMealMonths(userId, records, new MonthPatchListener() {
+            @Override
+            public void onSuccess(int savedCount) {
+                listener.onSuccess(savedCount);
+            }
+
+            @Override
+            public void onFailure(String error, int failedMonthKey, boolean permanent) {
+                listener.onFailure(error);
+            }
+        });
+    }
+
+    private void saveMealMonths(String userId, Collection<MealRecord> records, MonthPatchListener listener) {
+        OperationMetrics.Timer timer = metrics.start("saveMealRecords").addRecords(records.size());
+        // Keyed by DateKeys month key, so the months go out in date order.
+        SparseArray<List<MealRecord>> byMonth = new SparseArray<>();
+        for (MealRecord record : records) {
+            record.setUserId(userId);
+            record.setId(userId + "_" + record.getDate());
+
+            int dayKey = DateKeys.parseDay(record.getDate());
+            if (dayKey < 0) continue;
+            int monthKey = DateKeys.monthKeyOf(dayKey);
+            List<MealRecord> monthRecords = byMonth.get(monthKey);
+            if (monthRecords == null) {
+                monthRecords = new ArrayList<>();
+                byMonth.put(monthKey, monthRecords);
+            }
+            monthRecords.add(record);
+        }
+
+        applyMonthPatches(userId, byMonth, 0, records.size(), timer, listener);
+    }
+
+    private void applyMonthPatches(String userId, SparseArray<List<MealRecord>> months, int index, int total,
+                                   OperationMetrics.Timer timer, MonthPatchListener listener) {
+        if (index == months.size()) {
+            timer.success();
+            listener.onSuccess(total);
+            return;
+        }
+
+        String yearMonth = DateKeys.formatMonth(months.keyAt(index));
+        int monthKey = months.keyAt(index);
+        MonthMealBitmap patch = MonthMealBitmap.fromRecords(months.valueAt(index));
+        // State seen by the last (committed) run, so the day counters get the real transition.
+        MonthMealBitmap[] before = new MonthMealBitmap[1];
+        Map<?, ?>[] written = new Map<?, ?>[1];
+        mealsRef.child(userId).child(yearMonth).runTransaction(new Transaction.Handler() {
+            @NonNull
+            @Override
+            public Transaction.Result doTransaction(@NonNull MutableData data) {
+                MonthMealBitmap current = MealMonthNode.decode(data);
+                before[0] = current;
+                written[0] = MealMonthNode.toMap(current.overlay(patch));
+                data.setValue(written[0]);
+                return Transaction.success(data);
+            }
+
+            @Override
+            public void onComplete(@Nullable DatabaseError error, boolean committed, @Nullable DataSnapshot snapshot) {
+                if (error != null) {
+                    timer.failure();
+                    listener.onFailure("Save failed: " + error.getMessage(), monthKey,
+                            error.getCode() == DatabaseError.PERMISSION_DENIED);
+                } else if (!committed) {
+                    timer.failure();
+                    listener.onFailure("Save failed: transaction aborted", monthKey, false);
+                } else {
+                    timer.addBytes(OperationMetrics.estimateBytes(written[0]));
+                    // Keep the cache in step with what was just committed.
+                    if (snapshot != null) {
+                        rememberMonth(userId, yearMonth, MealMonthNode.decode(snapshot));
+                    }
+                    if (before[0] != null) {
+                        updateDayCounts(userId, monthKey, before[0], before[0].overlay(patch));
+                    }
+                    if (snapshot != null) {
+                        updateRollup(userId, monthKey, snapshot);
+                    }
+                    applyMonthPatches(userId, months, index + 1, total, timer, listener);
+                }
+            }
+        });
+    }
+
+    public void getMealMonth(String userId, String yearMonth, OnMealMonthListener listener) {
+        loadMealMonth(userId, yearMonth, new CancellationTokenSource().getToken())
+                .addOnSuccessListener(listener::onSuccess)
+                .addOnFailureListener(e -> listener.onFailure(e.getMessage()));
+    }
+
+    // ================= HALL MEAL COUNTS =================
+    // mealCounts/{yyyy-MM-dd}/{shard}/{STATUS} counts the residents who set each status
+    // for that day. A resident always lands on shard hash(uid) % COUNT_SHARDS, so
+    // hundreds of concurrent updates spread over COUNT_SHARDS small nodes instead of
+    // queueing on one hot counter. Counters are updated after the month commits and
+    // never hold up the save itself.
+    //
+    // Days a meal rule decides are counted too: adding or removing a rule moves the
+    // resident's count on every day from today on whose status the rule change flips
+    // (updateRuleDayCounts), the same way a range edit is flushed day by day.
+    //
+    // mealCountMarks/{yyyy-MM-dd}/{uid} = {shard, status} records which count a
+    // resident is in. Every update moves the mark and the counts together in one
+    // write, and the rules check each against the other, so a resident can only ever
+    // be counted once per day, under their own mark.
+    private void updateDayCounts(String userId, int monthKey, MonthMealBitmap before, MonthMealBitmap after) {
+        String shard = String.valueOf(Math.floorMod(userId.hashCode(), COUNT_SHARDS));
+        int changed = before.diff(after);
+        while (changed != 0) {
+            int day = Integer.numberOfTrailingZeros(changed) + 1;
+            changed &= changed - 1;
+
+            MealStatus to = after.get(day);
+            if (to == null) continue;
+            String date = DateKeys.formatDay(DateKeys.dayKey(monthKey, day));
+            moveDayCount(userId, shard, date, to, COUNT_ATTEMPTS);
+        }
+    }
+
+    // before and after are the resident's rules around an add or remove; only days in
+    // fromDayKey..toDayKey (the rule's span) can differ. Days already past are not
+    // planned for and are left alone. A month is read from the server (or the cache)
+    // so that days set by hand keep their count.
+    private void updateRuleDayCounts(String userId, int fromDayKey, int toDayKey,
+                                     List<MealRule> before, List<MealRule> after) {
+        int first = Math.max(fromDayKey, DateKeys.today());
+        if (first > toDayKey) return;
+        String shard = String.valueOf(Math.floorMod(userId.hashCode(), COUNT_SHARDS));
+        for (int monthKey = DateKeys.monthKeyOf(first); monthKey <= DateKeys.monthKeyOf(toDayKey); monthKey++) {
+            int month = monthKey;
+            String yearMonth = DateKeys.formatMonth(monthKey);
+            loadServerMonth(userId, yearMonth).addOnSuccessListener(server -> {
+                MonthMealBitmap explicit = server.overlay(getPendingMealMonth(userId, yearMonth));
+                MonthMealBitmap moves = HallDayCount.countMoves(month, explicit,
+                        MealRule.expand(before, month), MealRule.expand(after, month), first);
+                int days = moves.setDays();
+                while (days != 0) {
+                    int day = Integer.numberOfTrailingZeros(days) + 1;
+                    days &= days - 1;
+                    moveDayCount(userId, shard, DateKeys.formatDay(DateKeys.dayKey(month, day)), moves.get(day),
+                            COUNT_ATTEMPTS);
+                }
+            });
+        }
+    }
+
+    // The month as stored on the server, without rules, pending edits or closures.
+    private Task<MonthMealBitmap> loadServerMonth(String userId, String yearMonth) {
+        MonthMealBitmap cached = monthCache.get(userId, yearMonth);
+        if (cached != null) return Tasks.forResult(cached);
+        TaskCompletionSource<MonthMealBitmap> source = new TaskCompletionSource<>();
+        mealsRef.child(userId).child(yearMonth).addListenerForSingleValueEvent(new ValueEventListener() {
+            @Override
+            public void onDataChange(@NonNull DataSnapshot snapshot) {
+                MonthMealBitmap month = MealMonthNode.decode(snapshot);
+                rememberMonth(userId, yearMonth, month);
+                source.trySetResult(month);
+            }
+
+            @Override
+            public void onCancelled(@NonNull DatabaseError error) {
+                Log.w(TAG, "Hall counts for " + yearMonth + " not updated: " + error.getMessage());
+                source.trySetException(new DatabaseException("Database error: " + error.getMessage()));
+            }
+        });
+        return source.getTask();
+    }
+
+    // The count to take away is the one the mark names, not the month's previous
+    // status: a day set before marks existed was never counted under one. A write
+    // rejected because another device moved the mark first is retried from a fresh read.
+    private void moveDayCount(String userId, String shard, String date, MealStatus to, int attempts) {
+        countMarksRef.child(date).child(userId).addListenerForSingleValueEvent(new ValueEventListener() {
+            @Override
+            public void onDataChange(@NonNull DataSnapshot mark) {
+                MealStatus from = MealStatus.fromName(mark.child("status").getValue(String.class));
+                if (from == to) return;
+                String markedShard = mark.child("shard").getValue(String.class);
+                String countShard = markedShard != null ? markedShard : shard;
+
+                Map<String, Object> nextMark = new HashMap<>();
+                nextMark.put("shard", countShard);
+                nextMark.put("status", to.name());
+                Map<String, Object> updates = new HashMap<>();
+                updates.put("mealCountMarks/" + date + "/" + userId, nextMark);
+                updates.put("mealCounts/" + date + "/" + countShard + "/" + to.name(), ServerValue.increment(1));
+                if (from != null) {
+                    updates.put("mealCounts/" + date + "/" + countShard + "/" + from.name(), ServerValue.increment(-1));
+                }
+                rootRef.updateChildren(updates).addOnFailureListener(e -> {
+                    if (attempts > 1) moveDayCount(userId, shard, date, to, attempts - 1);
+                    else Log.w(TAG, "Hall count for " + date + " not updated: " + e.getMessage());
+                });
+            }
+
+            @Override
+            public void onCancelled(@NonNull DatabaseError error) {
+                Log.w(TAG, "Hall count for " + date + " not updated: " + error.getMessage());
+            }
+        });
+    }
+
+    // Admins only (the rules let nobody else read users/ or set the count). Derives
+    // hallStats/residentCount from users/ in one read, for residents who registered
+    // before the counter existed; registrations keep it current after that.
+    public void recountResidents(OnBatchOperationListener listener) {
+        OperationMetrics.Timer timer = metrics.start("recountResidents");
+        usersRef.orderByKey().addListenerForSingleValueEvent(new ValueEventListener() {
+            @Override
+            public void onDataChange(@NonNull DataSnapshot snapshot) {
+                long residents = snapshot.getChildrenCount();
+                residentCountRef.setValue(residents)
+                        .addOnSuccessListener(unused -> {
+                            timer.addRecords(residents).success();
+                            listener.onSuccess((int) residents);
+                        })
+                        .addOnFailureListener(e -> {
+                            timer.failure();
+                            listener.onFailure("Saving the resident count failed: " + e.getMessage());
+                        });
+            }
+
+            @Override
+            public void onCancelled(@NonNull DatabaseError error) {
+                timer.failure();
+                listener.onFailure("Counting residents failed: " + error.getMessage());
+            }
+        });
+    }
+
+    // Today and the following days - 1 days: one read for the resident count and one
+    // key-range query over mealCounts, whatever the size of the hall. Days the hall
+    // is closed count every resident as closed, so the closures are loaded first.
+    public void getHallMealCounts(int days, OnHallCountsListener listener) {
+        if (days <= 0) {
+            listener.onSuccess(new ArrayList<>());
+            return;
+        }
+        loadHallClosures().addOnCompleteListener(loaded -> {
+            if (loaded.isSuccessful()) {
+                readHallMealCounts(days, listener);
+            } else {
+                Exception e = loaded.getException();
+                listener.onFailure("Loading hall closures failed: " + (e != null ? e.getMessage() : "unknown error"));
+            }
+        });
+    }
+
+    private void readHallMealCounts(int days, OnHallCountsListener listener) {
+        int firstDay = DateKeys.today();
+        int lastDay = DateKeys.plusDays(firstDay, days - 1);
+        OperationMetrics.Timer timer = metrics.start("getHallMealCounts");
+
+        residentCountRef.addListenerForSingleValueEvent(new ValueEventListener() {
+            @Override
+            public void onDataChange(@NonNull DataSnapshot residentSnapshot) {
+                Long residentValue = residentSnapshot.getValue(Long.class);
+                if (residentValue == null) {
+                    // Never seeded: without it every expected-meal figure would be 0.
+                    timer.failure();
+                    recountResidents(new OnBatchOperationListener() {
+                        @Override
+                        public void onSuccess(int residents) {
+                            readHallMealCounts(days, listener);
+                        }
+
+                        @Override
+                        public void onFailure(String error) {
+                            listener.onFailure("The hall's resident count is not set up yet. " + error);
+                        }
+                    });
+                    return;
+                }
+                long residents = residentValue;
+                timer.addBytes(OperationMetrics.estimateBytes(residentValue));
+
+                mealCountsRef.orderByKey()
+                        .startAt(DateKeys.formatDay(firstDay))
+                        .endAt(DateKeys.formatDay(lastDay))
+                        .addListenerForSingleValueEvent(new ValueEventListener() {
+                            @Override
+                            public void onDataChange(@NonNull DataSnapshot snapshot) {
+                                List<HallDayCount> counts = new ArrayList<>(days);
+                                for (int i = 0; i < days; i++) {
+                                    int dayKey = DateKeys.plusDays(firstDay, i);
+                                    counts.add(sumShards(dayKey, snapshot.child(DateKeys.formatDay(dayKey)), residents)
+                                            .withClosedDays(getHallClosedDays(DateKeys.monthKeyOf(dayKey))));
+                                }
+                                timer.addRecords(days).addBytes(OperationMetrics.estimateBytes(snapshot.getValue())).success();
+                                listener.onSuccess(counts);
+                            }
+
+                            @Override
+                            public void onCancelled(@NonNull DatabaseError error) {
+                                timer.failure();
+                                listener.onFailure("Database error: " + error.getMessage());
+                            }
+                        });
+            }
+
+            @Override
+            public void onCancelled(@NonNull DatabaseError error) {
+                timer.failure();
+                listener.onFailure("Database error: " + error.getMessage());
+            }
+        });
+    }
+
+    private static HallDayCount sumShards(int dayKey, DataSnapshot day, long residents) {
+        long on = 0, off = 0, closed = 0;
+        for (DataSnapshot shard : day.getChildren()) {
+            on += countOf(shard, MealStatus.MEAL_ON);
+            off += countOf(shard, MealStatus.MEAL_OFF);
+            closed += countOf(shard, MealStatus.HALL_CLOSED);
+        }
+        return new HallDayCount(dayKey, on, off, closed, residents);
+    }
+
+    private static long countOf(DataSnapshot shard, MealStatus status) {
+        Long value = shard.child(status.name()).getValue(Long.class);
+        return value != null ? value : 0;
+    }
+
+    // ================= MEAL ROLLUPS =================
+    // mealRollups/{uid}/{yyyy} = {months: {MM: {days, MEAL_OFF, HALL_CLOSED, MEAL_ON,
+    // updatedAt}}, totals: {...}, complete: true} keeps each stored month's set days
+    // (the month bits, as hex) and how many days it has set to each status. After a
+    // month save commits, its entry and the year totals are rewritten together in one
+    // transaction from the committed month, so totals never drift; the entry with the
+    // newest updatedAt wins. A year saved before rollups existed has no "complete" flag,
+    // and one from before entries kept their days has an entry without them; either is
+    // built once from its months on first read. Hall closures and meal rules are not
+    // stored: statistics apply them to the entry's days the way presentMonth does.
+    // A rejected update clears the year's "complete" flag, so the next statistics
+    // read rebuilds the year from its months instead of trusting a stale entry.
+    private void updateRollup(String userId, int monthKey, DataSnapshot monthSnapshot) {
+        MonthMealBitmap month = MealMonthNode.decode(monthSnapshot);
+        long updatedAt = updatedAtOf(monthSnapshot);
+        String year = String.valueOf(DateKeys.yearOf(monthKey));
+        OperationMetrics.Timer timer = metrics.start("updateRollup");
+        DatabaseReference yearRef = mealRollupsRef.child(userId).child(year);
+        yearRef.runTransaction(new Transaction.Handler() {
+            @NonNull
+            @Override
+            public Transaction.Result doTransaction(@NonNull MutableData data) {
+                putRollupMonth(data, monthKey, month, updatedAt);
+                sumRollupTotals(data);
+                return Transaction.success(data);
+            }
+
+            @Override
+            public void onComplete(@Nullable DatabaseError error, boolean committed, @Nullable DataSnapshot snapshot) {
+                if (error == null && committed) {
+                    timer.success();
+                    return;
+                }
+                timer.failure();
+                Log.w(TAG, "Rollup for " + year + " not updated" + (error != null ? ": " + error.getMessage() : ""));
+                yearRef.child("complete").removeValue();
+            }
+        });
+    }
+
+    // Statistics for fromDayKey..toDayKey from the rollups: one read covering every
+    // year in the range, however long the history. Each month is counted as
+    // getMealMonth shows it, with meal rules, pending edits and hall closures applied,
+    // so the figures match the calendar.
+    public Task<MealCounts> getMealStats(String userId, int fromDayKey, int toDayKey, CancellationToken token) {
+        if (fromDayKey > toDayKey) return Tasks.forResult(MealCounts.EMPTY);
+        TaskCompletionSource<MealCounts> source = new TaskCompletionSource<>(token);
+        int fromMonthKey = DateKeys.monthKeyOf(fromDayKey);
+        int toMonthKey = DateKeys.monthKeyOf(toDayKey);
+        OperationMetrics.Timer timer = metrics.start("getMealStats").addRecords(toMonthKey - fromMonthKey + 1);
+        int fromYear = DateKeys.yearOf(fromMonthKey);
+        int toYear = DateKeys.yearOf(toMonthKey);
+
+        loadMonthOverlays(userId).addOnCompleteListener(overlays -> mealRollupsRef.child(userId).orderByKey()
+                .startAt(String.valueOf(fromYear))
+                .endAt(String.valueOf(toYear))
+                .addListenerForSingleValueEvent(new ValueEventListener() {
+                    @Override
+                    public void onDataChange(@NonNull DataSnapshot snapshot) {
+                        if (source.getTask().isComplete()) return; // cancelled or timed out
+                        timer.addBytes(OperationMetrics.estimateBytes(snapshot.getValue()));
+                        MealCounts counts = MealCounts.EMPTY;
+                        List<Task<DataSnapshot>> builds = new ArrayList<>();
+                        for (int year = fromYear; year <= toYear; year++) {
+                            DataSnapshot node = snapshot.child(String.valueOf(year));
+                            if (isRollupCurrent(node)) {
+                                counts = counts.plus(rollupCounts(userId, node, year, fromDayKey, toDayKey));
+                            } else {
+                                builds.add(buildRollup(userId, year));
+                            }
+                        }
+
+                        MealCounts stored = counts;
+                        Tasks.whenAllSuccess(builds)
+                                .addOnSuccessListener(built -> {
+                                    MealCounts total = stored;
+                                    for (DataSnapshot year : built) {
+                                        total = total.plus(rollupCounts(userId, year, Integer.parseInt(year.getKey()),
+                                                fromDayKey, toDayKey));
+                                    }
+                                    timer.success();
+                                    source.trySetResult(total);
+                                })
+                                .addOnFailureListener(e -> {
+                                    timer.failure();
+                                    source.trySetException(e);
+                                });
+                    }
 
-        mealsRef.child(id).setValue(record)
-                .addOnSuccessListener(v -> listener.onSuccess(record))
-                .addOnFailureListener(e -> listener.onFailure("Save failed: " + e.getMessage()));
+                    @Override
+                    public void onCancelled(@NonNull DatabaseError error) {
+                        timer.failure();
+                        source.trySetException(new DatabaseException("Database error: " + error.getMessage()));
+                    }
+                }));
+        failAfterTimeout(source, LOAD_TIMEOUT_MS, null);
+        return source.getTask();
+    }
+
+    // One range read of the year's months, then one transaction that fills in the
+    // entries (keeping any newer one a save wrote meanwhile) and marks the year complete.
+    private Task<DataSnapshot> buildRollup(String userId, int year) {
+        TaskCompletionSource<DataSnapshot> source = new TaskCompletionSource<>();
+        OperationMetrics.Timer timer = metrics.start("buildRollup");
+        mealsRef.child(userId).orderByKey()
+                .startAt(year + "-01")
+                .endAt(year + "-12")
+                .addListenerForSingleValueEvent(new ValueEventListener() {
+                    @Override
+                    public void onDataChange(@NonNull DataSnapshot months) {
+                        timer.addBytes(OperationMetrics.estimateBytes(months.getValue()));
+                        mealRollupsRef.child(userId).child(String.valueOf(year)).runTransaction(new Transaction.Handler() {
+                            @NonNull
+                            @Override
+                            public Transaction.Result doTransaction(@NonNull MutableData data) {
+                                for (DataSnapshot month : months.getChildren()) {
+                                    int monthKey = DateKeys.parseMonth(month.getKey());
+                                    if (monthKey < 0) continue;
+                                    putRollupMonth(data, monthKey, MealMonthNode.decode(month), updatedAtOf(month));
+                                }
+                                sumRollupTotals(data);
+                                data.child("complete").setValue(true);
+                                return Transaction.success(data);
+                            }
+
+                            @Override
+                            public void onComplete(@Nullable DatabaseError error, boolean committed, @Nullable DataSnapshot snapshot) {
+                                if (error != null || !committed || snapshot == null) {
+                                    timer.failure();
+                                    source.trySetException(new DatabaseException("Building the " + year + " rollup failed"
+                                            + (error != null ? ": " + error.getMessage() : "")));
+                                    return;
+                                }
+                                timer.addRecords(months.getChildrenCount()).success();
+                                source.trySetResult(snapshot);
+                            }
+                        });
+                    }
+
+                    @Override
+                    public void onCancelled(@NonNull DatabaseError error) {
+                        timer.failure();
+                        source.trySetException(new DatabaseException("Database error: " + error.getMessage()));
+                    }
+                });
+        return source.getTask();
+    }
+
+    private static void putRollupMonth(MutableData year, int monthKey, MonthMealBitmap month, long updatedAt) {
+        MutableData entry = year.child("months").child(rollupMonthKey(monthKey));
+        Long seen = entry.child(MealMonthNode.UPDATED_AT).getValue(Long.class);
+        if (seen != null && seen > updatedAt) return;
+
+        Map<String, Object> counts = new HashMap<>();
+        if (month.getBits() != 0L) counts.put(ROLLUP_DAYS, month.toHex());
+        for (MealStatus status : MealStatus.values()) {
+            int days = month.count(status);
+            if (days > 0) counts.put(status.name(), days);
+        }
+        counts.put(MealMonthNode.UPDATED_AT, updatedAt);
+        entry.setValue(counts);
+    }
+
+    private static void sumRollupTotals(MutableData year) {
+        Map<String, Object> totals = new HashMap<>();
+        for (MealStatus status : MealStatus.values()) {
+            long days = 0;
+            for (MutableData month : year.child("months").getChildren()) {
+                Long value = month.child(status.name()).getValue(Long.class);
+                if (value != null) days += value;
+            }
+            if (days > 0) totals.put(status.name(), days);
+        }
+        year.child("totals").setValue(totals.isEmpty() ? null : totals);
+    }
+
+    // Complete, and every entry with days set carries them.
+    private static boolean isRollupCurrent(DataSnapshot year) {
+        if (!Boolean.TRUE.equals(year.child("complete").getValue(Boolean.class))) return false;
+        for (DataSnapshot entry : year.child("months").getChildren()) {
+            boolean anySet = false;
+            for (MealStatus status : MealStatus.values()) {
+                if (countOf(entry, status) > 0) anySet = true;
+            }
+            if (anySet && !entry.hasChild(ROLLUP_DAYS)) return false;
+        }
+        return true;
+    }
+
+    // The days of year that fall in fromDayKey..toDayKey, each month presented as
+    // getMealMonth would; a month without an entry had nothing set.
+    private MealCounts rollupCounts(String userId, DataSnapshot year, int yearNumber, int fromDayKey, int toDayKey) {
+        int first = Math.max(DateKeys.monthKeyOf(fromDayKey), DateKeys.monthKey(yearNumber, 1));
+        int last = Math.min(DateKeys.monthKeyOf(toDayKey), DateKeys.monthKey(yearNumber, 12));
+        MealCounts counts = MealCounts.EMPTY;
+        for (int monthKey = first; monthKey <= last; monthKey++) {
+            DataSnapshot entry = year.child("months").child(rollupMonthKey(monthKey));
+            MonthMealBitmap month = MonthMealBitmap.fromHex(entry.child(ROLLUP_DAYS).getValue(String.class));
+            counts = counts.plus(MealCounts.ofMonth(monthKey,
+                    presentMonth(userId, DateKeys.formatMonth(monthKey), month), fromDayKey, toDayKey));
+        }
+        return counts;
+    }
+
+    private static String rollupMonthKey(int monthKey) {
+        int month = DateKeys.monthOf(monthKey);
+        return month < 10 ? "0" + month : String.valueOf(month);
+    }
+
+    private static long updatedAtOf(DataSnapshot month) {
+        Long value = month.child(MealMonthNode.UPDATED_AT).getValue(Long.class);
+        return value != null ? value : 0;
+    }
+
+    // ================= LIVE MONTHS =================
+    // Ends the subscription when token is cancelled; nothing is delivered after that.
+    public MealSubscription subscribeToMonth(String userId, String yearMonth, CancellationToken token,
+                                             OnMonthChangeListener listener) {
+        MealSubscription subscription = subscribeToMonth(userId, yearMonth, new OnMonthChangeListener() {
+            @Override
+            public void onMonthChanged(MonthMealBitmap month, int changedDays) {
+                if (!token.isCancellationRequested()) listener.onMonthChanged(month, changedDays);
+            }
+
+            @Override
+            public void onFailure(String error) {
+                if (!token.isCancellationRequested()) listener.onFailure(error);
+            }
+        });
+        token.onCanceledRequested(subscription::cancel);
+        return subscription;
+    }
+
+    // Screens showing the same (uid, month) share one listener; it is detached when
+    // the last subscriber cancels.
+    public MealSubscription subscribeToMonth(String userId, String yearMonth, OnMonthChangeListener listener) {
+        String key = userId + "/" + yearMonth;
+        LiveMealMonth live = liveMonths.get(key);
+        if (live == null) {
+            MonthMealBitmap cached = monthCache.get(userId, yearMonth);
+            live = new LiveMealMonth(this, mealsRef.child(userId).child(yearMonth), userId, yearMonth, cached);
+            liveMonths.put(key, live);
+            live.addSubscriber(listener);
+            live.start(cached != null);
+        } else {
+            live.addSubscriber(listener);
+        }
+        prefetchAdjacentMonths(userId, yearMonth);
+        loadMonthOverlays(userId);
+
+        LiveMealMonth subscribed = live;
+        return () -> {
+            if (liveMonths.get(key) == subscribed && subscribed.removeSubscriber(listener) == 0) {
+                subscribed.stop();
+                liveMonths.remove(key);
+            }
+        };
+    }
+
+    void cacheMonth(String userId, String yearMonth, MonthMealBitmap month) {
+        rememberMonth(userId, yearMonth, month);
+    }
+
+    // Every month read from (or committed to) the server goes to the in-memory cache
+    // and, once attached, to the on-device store that LocalFirstMealRepository reads.
+    private void rememberMonth(String userId, String yearMonth, MonthMealBitmap month) {
+        monthCache.put(userId, yearMonth, month);
+        if (localStore != null) {
+            localStore.writeMonthAsync(userId, DateKeys.parseMonth(yearMonth), month);
+        }
+    }
+
+    // For writers outside this class (the legacy migration) that changed a month node.
+    public void replaceCachedMonth(String userId, String yearMonth, MonthMealBitmap month) {
+        rememberMonth(userId, yearMonth, month);
+    }
+
+    public void attachLocalStore(LocalMealStore store) {
+        localStore = store;
+    }
+
+    public MonthCache.Stats getMonthCacheStats() {
+        return monthCache.getStats();
+    }
+
+    // ================= METRICS =================
+    public OperationMetrics getMetrics() {
+        return metrics;
+    }
+
+    private static OnUserOperationListener timed(OperationMetrics.Timer timer, OnUserOperationListener listener) {
+        return new OnUserOperationListener() {
+            @Override
+            public void onSuccess(User user) {
+                timer.addRecords(1).addBytes(userBytes(user)).success();
+                listener.onSuccess(user);
+            }
+
+            @Override
+            public void onFailure(String error) {
+                timer.failure();
+                listener.onFailure(error);
+            }
+        };
+    }
+
+    private static long userBytes(User user) {
+        return OperationMetrics.estimateBytes(SnapshotMappers.toMap(user));
+    }
+
+    private void prefetchAdjacentMonths(String userId, String yearMonth) {
+        int monthKey = DateKeys.parseMonth(yearMonth);
+        prefetchMonth(userId, DateKeys.formatMonth(monthKey - 1));
+        prefetchMonth(userId, DateKeys.formatMonth(monthKey + 1));
+    }
+
+    private void prefetchMonth(String userId, String yearMonth) {
+        String key = userId + "/" + yearMonth;
+        if (monthCache.contains(userId, yearMonth) || !prefetchesInFlight.add(key)) return;
+
+        mealsRef.child(userId).child(yearMonth).addListenerForSingleValueEvent(new ValueEventListener() {
+            @Override
+            public void onDataChange(@NonNull DataSnapshot snapshot) {
+                prefetchesInFlight.remove(key);
+                rememberMonth(userId, yearMonth, MealMonthNode.decode(snapshot));
+            }
+
+            @Override
+            public void onCancelled(@NonNull DatabaseError error) {
+                prefetchesInFlight.remove(key);
+            }
+        });
     }
 
     public void getMealRecordsForMonth(String userId, String yearMonth, OnMealListListener listener) {
+        loadMealRecordsForMonth(userId, yearMonth, new CancellationTokenSource().getToken())
+                .addOnSuccessListener(listener::onSuccess)
+                .addOnFailureListener(e -> listener.onFailure(e.getMessage()));
+    }
+
+    // ================= TASK API =================
+    // Task forms of the reads, for callers that need to compose, time out or cancel
+    // them. Cancelling the token detaches the database listener; a response that
+    // still arrives is dropped before it is decoded, and the task ends cancelled so
+    // none of its success or failure listeners run. Loads fail with a
+    // TimeoutException after LOAD_TIMEOUT_MS. Listeners run on the main thread.
+    public Task<User> loadUser(String userId, CancellationToken token) {
+        TaskCompletionSource<User> source = new TaskCompletionSource<>(token);
+        getUserById(userId, new OnUserOperationListener() {
+            @Override
+            public void onSuccess(User user) {
+                source.trySetResult(user);
+            }
+
+            @Override
+            public void onFailure(String error) {
+                source.trySetException(new DatabaseException(error));
+            }
+        });
+        failAfterTimeout(source, LOAD_TIMEOUT_MS, null);
+        return source.getTask();
+    }
+
+    // Served from the month cache when possible; the months on either side are
+    // prefetched so Prev/Next navigation does not wait on the network. The result is
+    // what screens show (see presentMonth).
+    public Task<MonthMealBitmap> loadMealMonth(String userId, String yearMonth, CancellationToken token) {
+        TaskCompletionSource<MonthMealBitmap> source = new TaskCompletionSource<>(token);
+        MonthMealBitmap cached = monthCache.get(userId, yearMonth);
+        if (cached != null) {
+            metrics.start("getMealMonth (cache)").addRecords(Integer.bitCount(cached.setDays())).success();
+            loadMonthOverlays(userId).addOnCompleteListener(overlays -> source.trySetResult(presentMonth(userId, yearMonth, cached)));
+            prefetchAdjacentMonths(userId, yearMonth);
+            return source.getTask();
+        }
+
+        OperationMetrics.Timer timer = metrics.start("getMealMonth");
+        DatabaseReference monthRef = mealsRef.child(userId).child(yearMonth);
+        ValueEventListener monthListener = new ValueEventListener() {
+            @Override
+            public void onDataChange(@NonNull DataSnapshot snapshot) {
+                if (source.getTask().isComplete()) return; // cancelled or timed out
+                MonthMealBitmap month = MealMonthNode.decode(snapshot);
+                timer.addRecords(Integer.bitCount(month.setDays()))
+                        .addBytes(OperationMetrics.estimateBytes(snapshot.getValue()))
+                        .success();
+                rememberMonth(userId, yearMonth, month);
+                loadMonthOverlays(userId).addOnCompleteListener(overlays -> source.trySetResult(presentMonth(userId, yearMonth, month)));
+                prefetchAdjacentMonths(userId, yearMonth);
+            }
+
+            @Override
+            public void onCancelled(@NonNull DatabaseError error) {
+                timer.failure();
+                source.trySetException(new DatabaseException("Database error: " + error.getMessage()));
+            }
+        };
+        monthRef.addListenerForSingleValueEvent(monthListener);
+        token.onCanceledRequested(() -> monthRef.removeEventListener(monthListener));
+        failAfterTimeout(source, LOAD_TIMEOUT_MS, () -> monthRef.removeEventListener(monthListener));
+        return source.getTask();
+    }
+
+    // End to end, including the cache; bytes read are counted under getMealMonth.
+    public Task<List<MealRecord>> loadMealRecordsForMonth(String userId, String yearMonth, CancellationToken token) {
+        OperationMetrics.Timer timer = metrics.start("getMealRecordsForMonth");
+        Task<MonthMealBitmap> load = loadMealMonth(userId, yearMonth, token);
+        // A cancelled load runs neither failure nor success listeners.
+        load.addOnCompleteListener(t -> {
+            if (!t.isSuccessful()) timer.failure();
+        });
+        return load.onSuccessTask(month -> {
+            List<MealRecord> records = month.toRecords(userId, yearMonth);
+            timer.addRecords(records.size()).success();
+            return Tasks.forResult(records);
+        });
+    }
 
-        Query query = mealsRef.orderByChild("userId").equalTo(userId);
+    // ================= HALL CLOSURES =================
+    // hallClosures/{yyyy-MM} = {days: closed-day mask (bit day - 1), updatedAt}, one
+    // node per month for the whole hall. The calendar is read once per session by one
+    // listener and kept here; it is merged into every resident's months when they are
+    // read, so a closure is one write instead of a HALL_CLOSED record per resident.
 
-        query.addListenerForSingleValueEvent(new ValueEventListener() {
+    // Completes once the calendar has been read, or could not be (months are then
+    // shown without closures, and the next read tries again).
+    public Task<Void> loadHallClosures() {
+        if (hallClosuresLoaded != null) return hallClosuresLoaded.getTask();
+        TaskCompletionSource<Void> loaded = new TaskCompletionSource<>();
+        hallClosuresLoaded = loaded;
+        OperationMetrics.Timer timer = metrics.start("hallClosures");
+
+        hallClosuresListener = new ValueEventListener() {
             @Override
             public void onDataChange(@NonNull DataSnapshot snapshot) {
-                List<MealRecord> list = new ArrayList<>();
-                if (!snapshot.exists()) {
-                    if (listener != null)
-                    listener.onSuccess(list); // Return an empty list
+                hallClosures.clear();
+                for (DataSnapshot month : snapshot.getChildren()) {
+                    int monthKey = DateKeys.parseMonth(month.getKey());
+                    Long days = month.child("days").getValue(Long.class);
+                    if (monthKey >= 0 && days != null) hallClosures.put(monthKey, days.intValue());
+                }
+                timer.addRecords(hallClosures.size())
+                        .addBytes(OperationMetrics.estimateBytes(snapshot.getValue()))
+                        .success();
+                loaded.trySetResult(null);
+                for (LiveMealMonth live : liveMonths.values()) {
+                    live.refresh();
+                }
+            }
+
+            @Override
+            public void onCancelled(@NonNull DatabaseError error) {
+                timer.failure();
+                if (hallClosuresLoaded == loaded) {
+                    hallClosuresLoaded = null;
+                    hallClosuresListener = null;
+                }
+                loaded.trySetResult(null);
+            }
+        };
+        hallClosuresRef.addValueEventListener(hallClosuresListener);
+        return loaded.getTask();
+    }
+
+    // Bit (day - 1) is set for every day the hall is closed.
+    public int getHallClosedDays(int monthKey) {
+        return hallClosures.get(monthKey);
+    }
+
+    // A month as screens show it. Days the resident set (on the server or still in
+    // the outbox, which is newer) win over their meal rules, unset days fall back to
+    // the rules and then to MEAL_ON, and hall closures win over everything.
+    public MonthMealBitmap presentMonth(String userId, String yearMonth, MonthMealBitmap server) {
+        int monthKey = DateKeys.parseMonth(yearMonth);
+        return MonthMealBitmap.present(getPlannedMonth(userId, monthKey), server,
+                getPendingMealMonth(userId, yearMonth), getHallClosedDays(monthKey));
+    }
+
+    // Everything presentMonth needs besides the month itself.
+    public Task<Void> loadMonthOverlays(String userId) {
+        return Tasks.whenAll(loadHallClosures(), loadMealRules(userId));
+    }
+
+    // Admins only (see database.rules.json). One transaction per month touched.
+    public void setHallClosed(int fromDayKey, int toDayKey, boolean closed, OnBatchOperationListener listener) {
+        int fromMonthKey = DateKeys.monthKeyOf(fromDayKey);
+        int toMonthKey = DateKeys.monthKeyOf(toDayKey);
+        int[] remaining = {toMonthKey - fromMonthKey + 1};
+        int[] days = {0};
+        String[] firstError = {null};
+        OperationMetrics.Timer timer = metrics.start("setHallClosed");
+
+        for (int monthKey = fromMonthKey; monthKey <= toMonthKey; monthKey++) {
+            int mask = dayRangeMask(monthKey, fromDayKey, toDayKey);
+            days[0] += Integer.bitCount(mask);
+            hallClosuresRef.child(DateKeys.formatMonth(monthKey)).runTransaction(new Transaction.Handler() {
+                @NonNull
+                @Override
+                public Transaction.Result doTransaction(@NonNull MutableData data) {
+                    Long current = data.child("days").getValue(Long.class);
+                    int before = current != null ? current.intValue() : 0;
+                    int after = closed ? before | mask : before & ~mask;
+                    if (after == 0) {
+                        data.setValue(null);
+                    } else {
+                        Map<String, Object> node = new HashMap<>();
+                        node.put("days", after);
+                        node.put("updatedAt", System.currentTimeMillis());
+                        data.setValue(node);
+                    }
+                    return Transaction.success(data);
+                }
+
+                @Override
+                public void onComplete(@Nullable DatabaseError error, boolean committed, @Nullable DataSnapshot snapshot) {
+                    if (error != null && firstError[0] == null) firstError[0] = error.getMessage();
+                    if (--remaining[0] > 0) return;
+                    if (firstError[0] != null) {
+                        timer.failure();
+                        listener.onFailure("Closure update failed: " + firstError[0]);
+                    } else {
+                        timer.addRecords(days[0]).success();
+                        listener.onSuccess(days[0]);
+                    }
+                }
+            });
+        }
+    }
+
+    // Bit (day - 1) for each day of the month inside fromDayKey..toDayKey.
+    private static int dayRangeMask(int monthKey, int fromDayKey, int toDayKey) {
+        int first = Math.max(fromDayKey, DateKeys.dayKey(monthKey, 1));
+        int last = Math.min(toDayKey, DateKeys.dayKey(monthKey, DateKeys.lengthOfMonth(monthKey)));
+        int mask = 0;
+        for (int day = DateKeys.dayOfMonth(first); day <= DateKeys.dayOfMonth(last); day++) {
+            mask |= 1 << (day - 1);
+        }
+        return mask;
+    }
+
+    // ================= MEAL RULES =================
+    // mealRules/{uid}/{pushId} = {from: "yyyy-MM-dd", to: "yyyy-MM-dd", weekdays, status}.
+    // A rule is a standing plan ("every Friday off this semester") kept as one small
+    // node and expanded into a month only when the month is read (presentMonth).
+    // Push ids sort by creation time, which is the order rules apply in. Rules are
+    // kept for one resident at a time, through one listener.
+    public Task<Void> loadMealRules(String userId) {
+        if (userId.equals(mealRulesUserId) && mealRulesLoaded != null) return mealRulesLoaded.getTask();
+        stopMealRules();
+        TaskCompletionSource<Void> loaded = new TaskCompletionSource<>();
+        mealRulesUserId = userId;
+        mealRulesLoaded = loaded;
+        OperationMetrics.Timer timer = metrics.start("mealRules");
+
+        mealRulesListener = new ValueEventListener() {
+            @Override
+            public void onDataChange(@NonNull DataSnapshot snapshot) {
+                mealRules.clear();
+                expandedRules.clear();
+                for (DataSnapshot rule : snapshot.getChildren()) {
+                    MealRule decoded = decodeMealRule(rule);
+                    if (decoded != null) mealRules.add(decoded);
+                }
+                timer.addRecords(mealRules.size())
+                        .addBytes(OperationMetrics.estimateBytes(snapshot.getValue()))
+                        .success();
+                loaded.trySetResult(null);
+                for (LiveMealMonth live : liveMonths.values()) {
+                    live.refresh();
+                }
+            }
+
+            @Override
+            public void onCancelled(@NonNull DatabaseError error) {
+                timer.failure();
+                if (mealRulesLoaded == loaded) stopMealRules();
+                loaded.trySetResult(null);
+            }
+        };
+        mealRulesRef.child(userId).addValueEventListener(mealRulesListener);
+        return loaded.getTask();
+    }
+
+    public List<MealRule> getMealRules(String userId) {
+        return userId.equals(mealRulesUserId) ? new ArrayList<>(mealRules) : Collections.emptyList();
+    }
+
+    // One write, however many days the rule covers; the hall counts of the days it
+    // changes follow once it is stored. The rules in effect are taken before the
+    // write, which shows up in the rules listener at once.
+    public void addMealRule(String userId, MealRule rule, OnBatchOperationListener listener) {
+        OperationMetrics.Timer timer = metrics.start("addMealRule").addRecords(1);
+        List<MealRule> before = getMealRules(userId);
+        List<MealRule> after = new ArrayList<>(before);
+        after.add(rule);
+        Map<String, Object> node = new HashMap<>();
+        node.put("from", DateKeys.formatDay(rule.fromDayKey));
+        node.put("to", DateKeys.formatDay(rule.toDayKey));
+        node.put("weekdays", rule.weekdays);
+        node.put("status", rule.status.name());
+        timer.addBytes(OperationMetrics.estimateBytes(node));
+        mealRulesRef.child(userId).push().setValue(node)
+                .addOnSuccessListener(unused -> {
+                    timer.success();
+                    listener.onSuccess(1);
+                    updateRuleDayCounts(userId, rule.fromDayKey, rule.toDayKey, before, after);
+                })
+                .addOnFailureListener(e -> {
+                    timer.failure();
+                    listener.onFailure("Saving the rule failed: " + e.getMessage());
+                });
+    }
+
+    // The days the rule decided go back to the other rules (or MEAL_ON), in the
+    // hall counts too.
+    public void removeMealRule(String userId, String ruleId, OnBatchOperationListener listener) {
+        OperationMetrics.Timer timer = metrics.start("removeMealRule").addRecords(1);
+        List<MealRule> before = getMealRules(userId);
+        List<MealRule> after = new ArrayList<>(before.size());
+        MealRule removed = null;
+        for (MealRule rule : before) {
+            if (ruleId.equals(rule.id)) removed = rule;
+            else after.add(rule);
+        }
+        MealRule target = removed;
+        mealRulesRef.child(userId).child(ruleId).removeValue()
+                .addOnSuccessListener(unused -> {
+                    timer.success();
+                    listener.onSuccess(1);
+                    if (target != null) updateRuleDayCounts(userId, target.fromDayKey, target.toDayKey, before, after);
+                })
+                .addOnFailureListener(e -> {
+                    timer.failure();
+                    listener.onFailure("Removing the rule failed: " + e.getMessage());
+                });
+    }
+
+    // The month as the resident's rules alone would have it.
+    public MonthMealBitmap getPlannedMonth(String userId, int monthKey) {
+        if (!userId.equals(mealRulesUserId) || mealRules.isEmpty()) return MonthMealBitmap.EMPTY;
+        MonthMealBitmap month = expandedRules.get(monthKey);
+        if (month == null) {
+            month = MealRule.expand(mealRules, monthKey);
+            expandedRules.put(monthKey, month);
+        }
+        return month;
+    }
+
+    private void stopMealRules() {
+        if (mealRulesListener != null && mealRulesUserId != null) {
+            mealRulesRef.child(mealRulesUserId).removeEventListener(mealRulesListener);
+        }
+        mealRulesListener = null;
+        mealRulesLoaded = null;
+        mealRulesUserId = null;
+        mealRules.clear();
+        expandedRules.clear();
+    }
+
+    @Nullable
+    private static MealRule decodeMealRule(DataSnapshot rule) {
+        int from = DateKeys.parseDay(rule.child("from").getValue(String.class));
+        int to = DateKeys.parseDay(rule.child("to").getValue(String.class));
+        Long weekdays = rule.child("weekdays").getValue(Long.class);
+        MealStatus status = MealStatus.fromName(rule.child("status").getValue(String.class));
+        if (from < 0 || to < 0 || weekdays == null || status == null) return null;
+        return new MealRule(rule.getKey(), from, to, weekdays.intValue(), status);
+    }
+
+    // ================= RESIDENT SEARCH =================
+    // For hall office staff (admins; rules keep other users' profiles private).
+    // rollIndex/{roll} = uid answers a roll lookup with two point reads; users/ is
+    // indexed on nameKey and department, so a search reads one page, never the tree.
+    // Every resident returned goes into residentIndex, which answers the same
+    // searches while offline.
+    public Task<User> findResidentByRoll(String rollNumber, CancellationToken token) {
+        String roll = SnapshotMappers.rollKey(rollNumber);
+        if (roll == null) return Tasks.forResult(null);
+        if (!connected) return Tasks.forResult(residentIndex.findByRoll(roll));
+        TaskCompletionSource<User> source = new TaskCompletionSource<>(token);
+        OperationMetrics.Timer timer = metrics.start("findResidentByRoll");
+
+        rollIndexRef.child(roll).addListenerForSingleValueEvent(new ValueEventListener() {
+            @Override
+            public void onDataChange(@NonNull DataSnapshot index) {
+                if (source.getTask().isComplete()) return;
+                String userId = index.getValue(String.class);
+                if (userId == null) {
+                    timer.success();
+                    source.trySetResult(null);
                     return;
                 }
-                for (DataSnapshot s : snapshot.getChildren()) {
-                    MealRecord r = s.getValue(MealRecord.class);
-                    if (r != null && r.getDate().startsWith(yearMonth)) {
-                        list.add(r);
+                usersRef.child(userId).addListenerForSingleValueEvent(new ValueEventListener() {
+                    @Override
+                    public void onDataChange(@NonNull DataSnapshot snapshot) {
+                        User user = SnapshotMappers.userFromSnapshot(snapshot);
+                        if (user != null) {
+                            residentIndex.put(user);
+                            timer.addRecords(1).addBytes(userBytes(user));
+                        }
+                        timer.success();
+                        source.trySetResult(user);
+                    }
+
+                    @Override
+                    public void onCancelled(@NonNull DatabaseError error) {
+                        timer.failure();
+                        source.trySetException(new DatabaseException("Database error: " + error.getMessage()));
                     }
+                });
+            }
+
+            @Override
+            public void onCancelled(@NonNull DatabaseError error) {
+                timer.failure();
+                source.trySetException(new DatabaseException("Database error: " + error.getMessage()));
+            }
+        });
+        failAfterTimeout(source, LOAD_TIMEOUT_MS, null);
+        return source.getTask();
+    }
+
+    // Residents whose name starts with prefix, in name order, pageSize at a time;
+    // pass the last resident of the previous page as after. Offline, any word of
+    // the name (or the roll number) may match.
+    public Task<List<User>> searchResidentsByName(String prefix, @Nullable User after, int pageSize,
+                                                  CancellationToken token) {
+        if (!connected) return Tasks.forResult(residentIndex.search(prefix, after, pageSize));
+        String key = SnapshotMappers.nameKey(prefix);
+        Query query = usersRef.orderByChild(SnapshotMappers.NAME_KEY);
+        query = after == null
+                ? query.startAt(key)
+                : query.startAfter(SnapshotMappers.nameKey(after.getFullName()), after.getId());
+        return loadResidentPage("searchResidentsByName", query.endAt(key + "\uf8ff").limitToFirst(pageSize), token);
+    }
+
+    public Task<List<User>> listResidentsByDepartment(String department, @Nullable User after, int pageSize,
+                                                      CancellationToken token) {
+        Query query = usersRef.orderByChild("department");
+        query = after == null ? query.startAt(department) : query.startAfter(department, after.getId());
+        return loadResidentPage("listResidentsByDepartment", query.endAt(department).limitToFirst(pageSize), token);
+    }
+
+    // Offline search over whatever residentIndex holds; an admin can fill it with
+    // every resident in one read.
+    public Task<Integer> loadResidentDirectory(CancellationToken token) {
+        TaskCompletionSource<Integer> source = new TaskCompletionSource<>(token);
+        loadResidentPage("loadResidentDirectory", usersRef.orderByKey(), token)
+                .addOnSuccessListener(users -> source.trySetResult(users.size()))
+                .addOnFailureListener(source::trySetException);
+        return source.getTask();
+    }
+
+    public List<User> searchResidentsOffline(String query, @Nullable User after, int limit) {
+        return residentIndex.search(query, after, limit);
+    }
+
+    private Task<List<User>> loadResidentPage(String operation, Query page, CancellationToken token) {
+        TaskCompletionSource<List<User>> source = new TaskCompletionSource<>(token);
+        OperationMetrics.Timer timer = metrics.start(operation);
+
+        ValueEventListener pageListener = new ValueEventListener() {
+            @Override
+            public void onDataChange(@NonNull DataSnapshot snapshot) {
+                if (source.getTask().isComplete()) return; // cancelled or timed out
+                List<User> users = new ArrayList<>((int) snapshot.getChildrenCount());
+                for (DataSnapshot child : snapshot.getChildren()) {
+                    User user = SnapshotMappers.userFromSnapshot(child);
+                    if (user == null) continue;
+                    residentIndex.put(user);
+                    users.add(user);
                 }
-                listener.onSuccess(list);
+                timer.addRecords(users.size())
+                        .addBytes(OperationMetrics.estimateBytes(snapshot.getValue()))
+                        .success();
+                source.trySetResult(users);
             }
 
             @Override
             public void onCancelled(@NonNull DatabaseError error) {
-                listener.onFailure("Database error: " + error.getMessage());
+                timer.failure();
+                source.trySetException(new DatabaseException("Database error: " + error.getMessage()));
+            }
+        };
+        page.addListenerForSingleValueEvent(pageListener);
+        token.onCanceledRequested(() -> page.removeEventListener(pageListener));
+        failAfterTimeout(source, LOAD_TIMEOUT_MS, () -> page.removeEventListener(pageListener));
+        return source.getTask();
+    }
+
+    // ================= PAYMENTS =================
+    // payments/{uid}/{yyyy-MM} = {messing, fine, generator, water, misc, total},
+    // written by the hall office with "java Main bill --write-payments". Month keys
+    // sort by date, so a page is the pageSize months before beforeMonth (or the latest
+    // ones), newest first; the last month of a page is the cursor for the next. A page
+    // shorter than pageSize is the end of the history.
+    public Task<List<PaymentRecord>> loadPaymentPage(String userId, @Nullable String beforeMonth, int pageSize,
+                                                     CancellationToken token) {
+        TaskCompletionSource<List<PaymentRecord>> source = new TaskCompletionSource<>(token);
+        OperationMetrics.Timer timer = metrics.start("loadPaymentPage");
+        Query query = paymentsRef.child(userId).orderByKey();
+        if (beforeMonth != null) query = query.endBefore(beforeMonth);
+        Query page = query.limitToLast(pageSize);
+
+        ValueEventListener pageListener = new ValueEventListener() {
+            @Override
+            public void onDataChange(@NonNull DataSnapshot snapshot) {
+                if (source.getTask().isComplete()) return; // cancelled or timed out
+                List<PaymentRecord> records = new ArrayList<>();
+                for (DataSnapshot month : snapshot.getChildren()) {
+                    PaymentRecord record = SnapshotMappers.paymentFromSnapshot(month);
+                    if (record != null) records.add(record);
+                }
+                Collections.reverse(records);
+                timer.addRecords(records.size())
+                        .addBytes(OperationMetrics.estimateBytes(snapshot.getValue()))
+                        .success();
+                source.trySetResult(records);
+            }
+
+            @Override
+            public void onCancelled(@NonNull DatabaseError error) {
+                timer.failure();
+                source.trySetException(new DatabaseException("Database error: " + error.getMessage()));
+            }
+        };
+        page.addListenerForSingleValueEvent(pageListener);
+        token.onCanceledRequested(() -> page.removeEventListener(pageListener));
+        failAfterTimeout(source, LOAD_TIMEOUT_MS, () -> page.removeEventListener(pageListener));
+        return source.getTask();
+    }
+
+    private <T> void failAfterTimeout(TaskCompletionSource<T> source, long timeoutMs, @Nullable Runnable onTimeout) {
+        Runnable timeout = () -> {
+            if (source.trySetException(new TimeoutException("No response after " + timeoutMs + " ms"))
+                    && onTimeout != null) {
+                onTimeout.run();
+            }
+        };
+        handler.postDelayed(timeout, timeoutMs);
+        source.getTask().addOnCompleteListener(t -> handler.removeCallbacks(timeout));
+    }
+
+    // ================= WRITE-BEHIND OUTBOX =================
+    // Meal toggles are queued on disk and pushed in batches, either after a short
+    // delay or as soon as the connection comes back.
+    public void startWriteBehind(Context context) {
+        if (outbox != null) return;
+        outbox = new MealOutbox(context);
+
+        FirebaseDatabase.getInstance().getReference(".info/connected").addValueEventListener(new ValueEventListener() {
+            @Override
+            public void onDataChange(@NonNull DataSnapshot snapshot) {
+                connected = Boolean.TRUE.equals(snapshot.getValue(Boolean.class));
+                if (connected && !outbox.isEmpty()) {
+                    flushPendingMeals(null);
+                }
+            }
+
+            @Override
+            public void onCancelled(@NonNull DatabaseError error) {
+            }
+        });
+    }
+
+    public void queueMealRecord(MealRecord record) {
+        outbox.put(record);
+        scheduleFlush();
+
+        int dayKey = DateKeys.parseDay(record.getDate());
+        if (dayKey < 0) return;
+        LiveMealMonth live = liveMonths.get(record.getUserId() + "/" + DateKeys.formatMonth(DateKeys.monthKeyOf(dayKey)));
+        if (live != null) {
+            live.refresh();
+        }
+    }
+
+    // A date range set to one status is one edit: every day goes into the outbox,
+    // which pushes them as one transaction per month. Hall-closed days are skipped,
+    // as they are for single taps.
+    public void queueMealRange(String userId, int fromDayKey, int toDayKey, MealStatus status) {
+        for (int dayKey = fromDayKey; dayKey <= toDayKey; dayKey = DateKeys.plusDays(dayKey, 1)) {
+            int closed = getHallClosedDays(DateKeys.monthKeyOf(dayKey));
+            if ((closed & (1 << (DateKeys.dayOfMonth(dayKey) - 1))) != 0) continue;
+            outbox.put(new MealRecord(userId, DateKeys.formatDay(dayKey), status.name()));
+        }
+        scheduleFlush();
+
+        for (int monthKey = DateKeys.monthKeyOf(fromDayKey); monthKey <= DateKeys.monthKeyOf(toDayKey); monthKey++) {
+            LiveMealMonth live = liveMonths.get(userId + "/" + DateKeys.formatMonth(monthKey));
+            if (live != null) {
+                live.refresh();
+            }
+        }
+    }
+
+    public MonthMealBitmap getPendingMealMonth(String userId, String yearMonth) {
+        if (outbox == null) return MonthMealBitmap.EMPTY;
+        return outbox.getMonth(userId, DateKeys.parseMonth(yearMonth));
+    }
+
+    public int getPendingMealCount(String userId) {
+        return outbox != null ? outbox.sizeForUser(userId) : 0;
+    }
+
+    public void flushPendingMeals(@Nullable OnBatchOperationListener listener) {
+        if (listener != null) flushListeners.add(listener);
+        if (flushInFlight) return; // Picked up when the running flush completes.
+
+        handler.removeCallbacks(flushRunnable);
+        flushScheduled = false;
+
+        // Only the signed-in resident's edits can pass the meals/$uid owner rule.
+        FirebaseUser firebaseUser = firebaseAuth.getCurrentUser();
+        String userId = firebaseUser != null ? firebaseUser.getUid() : null;
+        if (userId == null || outbox.sizeForUser(userId) == 0) {
+            finishFlush(0, null);
+        } else if (!connected) {
+            finishFlush(0, "You are offline. Changes are kept on this device and will sync automatically.");
+        } else {
+            flushInFlight = true;
+            flushUser(userId, 0);
+        }
+    }
+
+    private void flushUser(String userId, int savedSoFar) {
+        List<MealRecord> batch = outbox.getForUser(userId);
+        if (batch.isEmpty()) {
+            flushInFlight = false;
+            finishFlush(savedSoFar, null);
+            return;
+        }
+
+        saveMealMonths(userId, batch, new MonthPatchListener() {
+            @Override
+            public void onSuccess(int savedCount) {
+                for (MealRecord r : batch) {
+                    outbox.remove(r);
+                }
+                flushUser(userId, savedSoFar + savedCount);
+            }
+
+            @Override
+            public void onFailure(String error, int failedMonthKey, boolean permanent) {
+                // Months before the failed one are committed; a rejected month is
+                // dropped rather than retried forever ahead of everything behind it.
+                int sent = 0;
+                int dropped = 0;
+                for (MealRecord r : batch) {
+                    int monthKey = DateKeys.monthKeyOf(DateKeys.parseDay(r.getDate()));
+                    if (monthKey < failedMonthKey) {
+                        outbox.remove(r);
+                        sent++;
+                    } else if (permanent && monthKey == failedMonthKey) {
+                        outbox.remove(r);
+                        dropped++;
+                    }
+                }
+                if (permanent) {
+                    Log.w(TAG, "Dropped " + dropped + " meal edits for " + DateKeys.formatMonth(failedMonthKey) + ": " + error);
+                    flushUser(userId, savedSoFar + sent);
+                    return;
+                }
+                flushInFlight = false;
+                finishFlush(savedSoFar + sent, error);
+                scheduleFlush();
             }
         });
     }
+
+    private void finishFlush(int savedCount, @Nullable String error) {
+        List<OnBatchOperationListener> listeners = new ArrayList<>(flushListeners);
+        flushListeners.clear();
+        for (OnBatchOperationListener l : listeners) {
+            if (error == null) l.onSuccess(savedCount);
+            else l.onFailure(error);
+        }
+    }
+
+    private void scheduleFlush() {
+        if (flushScheduled) return;
+        flushScheduled = true;
+        handler.postDelayed(flushRunnable, OUTBOX_FLUSH_DELAY_MS);
+    }
 }
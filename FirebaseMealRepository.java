@@ -0,0 +1,42 @@
+package com.example.halldues;
+
+import android.util.SparseArray;
+
+import com.google.android.gms.tasks.CancellationToken;
+import com.google.android.gms.tasks.Task;
+import com.google.android.gms.tasks.Tasks;
+
+import java.util.ArrayList;
+import java.util.List;
+
+// Every read goes to the server (through FirebaseManager's month cache).
+public class FirebaseMealRepository implements MealRepository {
+
+    private final FirebaseManager firebaseManager;
+
+    public FirebaseMealRepository(FirebaseManager firebaseManager) {
+        this.firebaseManager = firebaseManager;
+    }
+
+    @Override
+    public Task<MonthMealBitmap> getMonth(String userId, int monthKey, CancellationToken token) {
+        return firebaseManager.loadMealMonth(userId, DateKeys.formatMonth(monthKey), token);
+    }
+
+    // The months are requested together, not one after another.
+    @Override
+    public Task<SparseArray<MonthMealBitmap>> getMonths(String userId, int fromMonthKey, int toMonthKey,
+                                                        CancellationToken token) {
+        List<Task<MonthMealBitmap>> loads = new ArrayList<>();
+        for (int monthKey = fromMonthKey; monthKey <= toMonthKey; monthKey++) {
+            loads.add(getMonth(userId, monthKey, token));
+        }
+        return Tasks.whenAll(loads).continueWith(task -> {
+            SparseArray<MonthMealBitmap> months = new SparseArray<>();
+            for (int i = 0; i < loads.size(); i++) {
+                if (loads.get(i).isSuccessful()) months.put(fromMonthKey + i, loads.get(i).getResult());
+            }
+            return months;
+        });
+    }
+}
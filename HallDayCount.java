@@ -0,0 +1,57 @@
+package com.example.halldues;
+
+// Hall-wide meal numbers for one day, summed over the counter shards.
+// Counts are of residents whose day has a status, set by hand or by one of their
+// meal rules; everyone else eats by default, so the kitchen plans for
+// getExpectedMeals(). On a day the hall is closed every resident counts as
+// closed, whatever their own status says.
+public class HallDayCount {
+
+    public final int dayKey;
+    public final long mealsOn;
+    public final long mealsOff;
+    public final long hallClosed;
+    public final long residents;
+
+    public HallDayCount(int dayKey, long mealsOn, long mealsOff, long hallClosed, long residents) {
+        this.dayKey = dayKey;
+        this.mealsOn = mealsOn;
+        this.mealsOff = mealsOff;
+        this.hallClosed = hallClosed;
+        this.residents = residents;
+    }
+
+    // This day with the hall closure mask of its month (bit day - 1) applied.
+    public HallDayCount withClosedDays(int closedDays) {
+        if ((closedDays & (1 << (DateKeys.dayOfMonth(dayKey) - 1))) == 0) return this;
+        return new HallDayCount(dayKey, 0, 0, residents, residents);
+    }
+
+    // The days of monthKey, from fromDayKey on, whose counted status changes when a
+    // resident's rules go from plannedBefore to plannedAfter (both expanded for the
+    // month), each set to the status it moves to. Days in explicit (set by hand, on
+    // the server or pending) win over rules; an unset day counts as MEAL_ON.
+    public static MonthMealBitmap countMoves(int monthKey, MonthMealBitmap explicit, MonthMealBitmap plannedBefore,
+                                             MonthMealBitmap plannedAfter, int fromDayKey) {
+        int fromMonthKey = DateKeys.monthKeyOf(fromDayKey);
+        if (monthKey < fromMonthKey) return MonthMealBitmap.EMPTY;
+        int firstDay = monthKey == fromMonthKey ? DateKeys.dayOfMonth(fromDayKey) : 1;
+
+        MonthMealBitmap before = plannedBefore.overlay(explicit);
+        MonthMealBitmap after = plannedAfter.overlay(explicit);
+        MonthMealBitmap moves = MonthMealBitmap.EMPTY;
+        for (int day = firstDay; day <= DateKeys.lengthOfMonth(monthKey); day++) {
+            MealStatus to = after.getOrDefault(day);
+            if (before.getOrDefault(day) != to) moves = moves.with(day, to);
+        }
+        return moves;
+    }
+
+    public long getExpectedMeals() {
+        return Math.max(0, residents - mealsOff - hallClosed);
+    }
+
+    public String getDate() {
+        return DateKeys.formatDay(dayKey);
+    }
+}
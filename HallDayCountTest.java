@@ -0,0 +1,66 @@
+package com.example.halldues;
+
+import org.junit.Test;
+
+import java.util.Collections;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for HallDayCount.
+ */
+public class HallDayCountTest {
+
+    @Test
+    public void withClosedDays_closedDayCountsEveryResidentAsClosed() {
+        int dayKey = DateKeys.parseDay("2025-04-03");
+        HallDayCount counted = new HallDayCount(dayKey, 12, 30, 0, 200);
+        assertEquals(170, counted.getExpectedMeals());
+
+        HallDayCount closed = counted.withClosedDays(1 << 2);
+        assertEquals(dayKey, closed.dayKey);
+        assertEquals(0, closed.mealsOn);
+        assertEquals(0, closed.mealsOff);
+        assertEquals(200, closed.hallClosed);
+        assertEquals(0, closed.getExpectedMeals());
+    }
+
+    @Test
+    public void withClosedDays_otherDaysAreUnchanged() {
+        HallDayCount counted = new HallDayCount(DateKeys.parseDay("2025-04-03"), 12, 30, 0, 200);
+        assertSame(counted, counted.withClosedDays((1 << 1) | (1 << 3)));
+        assertSame(counted, counted.withClosedDays(0));
+    }
+
+    @Test
+    public void countMoves_ruleDaysMoveUnlessSetByHand() {
+        int april = DateKeys.parseMonth("2025-04");
+        int from = DateKeys.parseDay("2025-04-10");
+        MealRule fridaysOff = new MealRule("r1", DateKeys.parseDay("2025-04-01"), DateKeys.parseDay("2025-06-30"),
+                MealRule.weekdayBit(5), MealStatus.MEAL_OFF);
+        MonthMealBitmap none = MealRule.expand(Collections.emptyList(), april);
+        MonthMealBitmap planned = MealRule.expand(Collections.singletonList(fridaysOff), april);
+        MonthMealBitmap explicit = MonthMealBitmap.EMPTY.with(18, MealStatus.MEAL_ON);
+
+        // Fridays are 4, 11, 18 and 25; the 4th is before from and the 18th was set by hand.
+        MonthMealBitmap added = HallDayCount.countMoves(april, explicit, none, planned, from);
+        assertEquals((1 << 10) | (1 << 24), added.setDays());
+        assertEquals(MealStatus.MEAL_OFF, added.get(11));
+        assertEquals(MealStatus.MEAL_OFF, added.get(25));
+
+        MonthMealBitmap removed = HallDayCount.countMoves(april, explicit, planned, none, from);
+        assertEquals((1 << 10) | (1 << 24), removed.setDays());
+        assertEquals(MealStatus.MEAL_ON, removed.get(11));
+        assertEquals(MealStatus.MEAL_ON, removed.get(25));
+    }
+
+    @Test
+    public void countMoves_monthsBeforeFromDayAreLeftAlone() {
+        int march = DateKeys.parseMonth("2025-03");
+        MealRule everyDayOff = new MealRule("r1", DateKeys.parseDay("2025-03-01"), DateKeys.parseDay("2025-04-30"),
+                MealRule.EVERY_DAY, MealStatus.MEAL_OFF);
+        MonthMealBitmap planned = MealRule.expand(Collections.singletonList(everyDayOff), march);
+        assertSame(MonthMealBitmap.EMPTY, HallDayCount.countMoves(march, MonthMealBitmap.EMPTY,
+                MonthMealBitmap.EMPTY, planned, DateKeys.parseDay("2025-04-10")));
+    }
+}
@@ -10,5 +10,11 @@ public class HallDuesApplication extends Application {
         super.onCreate();
         // Enable Firebase database persistence
         FirebaseDatabase.getInstance().setPersistenceEnabled(true);
+        // Restore meal edits that were queued before the process last died
+        FirebaseManager.getInstance().startWriteBehind(this);
+        // Months read from the server are also kept on disk for LocalFirstMealRepository
+        FirebaseManager.getInstance().attachLocalStore(LocalMealStore.getInstance(this));
+        // With a saved session, start the profile and current-month reads now
+        StartupPipeline.getInstance(this).start();
     }
 }
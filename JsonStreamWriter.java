@@ -0,0 +1,165 @@
+import java.io.Closeable;
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.Writer;
+
+// Counterpart of JsonStreamReader: writes JSON token by token straight to a Writer.
+// Elements of arrays go on their own line, so a record export reads one record
+// per line.
+public final class JsonStreamWriter implements Closeable, Flushable {
+
+    private static final int DOCUMENT = 0;
+    private static final int EMPTY_OBJECT = 1;
+    private static final int NONEMPTY_OBJECT = 2;
+    private static final int DANGLING_NAME = 3;
+    private static final int EMPTY_ARRAY = 4;
+    private static final int NONEMPTY_ARRAY = 5;
+
+    private final Writer out;
+    private int[] stack = new int[32];
+    private int depth = 1;
+
+    public JsonStreamWriter(Writer out) {
+        this.out = out;
+        stack[0] = DOCUMENT;
+    }
+
+    public JsonStreamWriter beginObject() throws IOException {
+        beforeValue();
+        push(EMPTY_OBJECT);
+        out.write('{');
+        return this;
+    }
+
+    public JsonStreamWriter endObject() throws IOException {
+        int top = stack[depth - 1];
+        if (top != EMPTY_OBJECT && top != NONEMPTY_OBJECT) throw new IllegalStateException("Not in an object");
+        depth--;
+        out.write('}');
+        return this;
+    }
+
+    public JsonStreamWriter beginArray() throws IOException {
+        beforeValue();
+        push(EMPTY_ARRAY);
+        out.write('[');
+        return this;
+    }
+
+    public JsonStreamWriter endArray() throws IOException {
+        int top = stack[depth - 1];
+        if (top != EMPTY_ARRAY && top != NONEMPTY_ARRAY) throw new IllegalStateException("Not in an array");
+        depth--;
+        if (top == NONEMPTY_ARRAY) out.write('\n');
+        out.write(']');
+        return this;
+    }
+
+    public JsonStreamWriter name(String name) throws IOException {
+        int top = stack[depth - 1];
+        if (top == NONEMPTY_OBJECT) {
+            out.write(',');
+        } else if (top != EMPTY_OBJECT) {
+            throw new IllegalStateException("Name outside an object");
+        }
+        stack[depth - 1] = DANGLING_NAME;
+        writeString(name);
+        out.write(':');
+        return this;
+    }
+
+    public JsonStreamWriter value(String value) throws IOException {
+        if (value == null) return nullValue();
+        beforeValue();
+        writeString(value);
+        return this;
+    }
+
+    public JsonStreamWriter value(long value) throws IOException {
+        beforeValue();
+        out.write(Long.toString(value));
+        return this;
+    }
+
+    // Whole numbers are written without a fraction, as the database returns them.
+    public JsonStreamWriter value(double value) throws IOException {
+        if (Double.isNaN(value) || Double.isInfinite(value)) {
+            throw new IllegalArgumentException("Not a JSON number: " + value);
+        }
+        beforeValue();
+        out.write(value == Math.rint(value) && Math.abs(value) < 1e15 ? Long.toString((long) value) : Double.toString(value));
+        return this;
+    }
+
+    public JsonStreamWriter value(boolean value) throws IOException {
+        beforeValue();
+        out.write(value ? "true" : "false");
+        return this;
+    }
+
+    public JsonStreamWriter nullValue() throws IOException {
+        beforeValue();
+        out.write("null");
+        return this;
+    }
+
+    @Override
+    public void flush() throws IOException {
+        out.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        out.close();
+    }
+
+    private void beforeValue() throws IOException {
+        switch (stack[depth - 1]) {
+            case DOCUMENT:
+                break;
+            case DANGLING_NAME:
+                stack[depth - 1] = NONEMPTY_OBJECT;
+                break;
+            case EMPTY_ARRAY:
+                stack[depth - 1] = NONEMPTY_ARRAY;
+                out.write('\n');
+                break;
+            case NONEMPTY_ARRAY:
+                out.write(",\n");
+                break;
+            default:
+                throw new IllegalStateException("Value where a name was expected");
+        }
+    }
+
+    private void push(int scope) {
+        if (depth == stack.length) {
+            int[] grown = new int[depth * 2];
+            System.arraycopy(stack, 0, grown, 0, depth);
+            stack = grown;
+        }
+        stack[depth++] = scope;
+    }
+
+    private void writeString(String s) throws IOException {
+        out.write('"');
+        int last = 0;
+        int n = s.length();
+        for (int i = 0; i < n; i++) {
+            char c = s.charAt(i);
+            String escape;
+            if (c == '"') escape = "\\\"";
+            else if (c == '\\') escape = "\\\\";
+            else if (c == '\n') escape = "\\n";
+            else if (c == '\r') escape = "\\r";
+            else if (c == '\t') escape = "\\t";
+            else if (c < 0x20 || c == 0x2028 || c == 0x2029) escape = String.format("\\u%04x", (int) c);
+            else continue;
+            out.write(s, last, i - last);
+            out.write(escape);
+            last = i + 1;
+        }
+        out.write(s, last, n - last);
+        out.write('"');
+    }
+}
@@ -0,0 +1,165 @@
+package com.example.halldues;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.google.firebase.database.ChildEventListener;
+import com.google.firebase.database.DataSnapshot;
+import com.google.firebase.database.DatabaseError;
+import com.google.firebase.database.DatabaseReference;
+import com.google.firebase.database.ValueEventListener;
+
+import java.util.ArrayList;
+import java.util.List;
+
+// One shared listener on meals/{uid}/{yyyy-MM}, reference-counted by FirebaseManager.
+// Child events are applied as deltas to an in-memory month model and every
+// subscriber is told which days changed.
+class LiveMealMonth {
+
+    private final FirebaseManager manager;
+    private final String userId;
+    private final String yearMonth;
+    private final DatabaseReference monthRef;
+    private final List<FirebaseManager.OnMonthChangeListener> subscribers = new ArrayList<>();
+
+    // "bits" child and any day-bucket children ("01".."31") are tracked apart,
+    // and combined the same way MealMonthNode.decode does.
+    private MonthMealBitmap bitsPart = MonthMealBitmap.EMPTY;
+    private MonthMealBitmap bucketPart = MonthMealBitmap.EMPTY;
+    private MonthMealBitmap delivered;
+    private ValueEventListener initialRead;
+
+    private final ChildEventListener childListener = new ChildEventListener() {
+        @Override
+        public void onChildAdded(@NonNull DataSnapshot snapshot, @Nullable String previousChildName) {
+            applyChild(snapshot.getKey(), snapshot);
+        }
+
+        @Override
+        public void onChildChanged(@NonNull DataSnapshot snapshot, @Nullable String previousChildName) {
+            applyChild(snapshot.getKey(), snapshot);
+        }
+
+        @Override
+        public void onChildRemoved(@NonNull DataSnapshot snapshot) {
+            applyChild(snapshot.getKey(), null);
+        }
+
+        @Override
+        public void onChildMoved(@NonNull DataSnapshot snapshot, @Nullable String previousChildName) {
+        }
+
+        @Override
+        public void onCancelled(@NonNull DatabaseError error) {
+            for (FirebaseManager.OnMonthChangeListener l : new ArrayList<>(subscribers)) {
+                l.onFailure("Database error: " + error.getMessage());
+            }
+        }
+    };
+
+    LiveMealMonth(FirebaseManager manager, DatabaseReference monthRef, String userId, String yearMonth,
+                  @Nullable MonthMealBitmap cached) {
+        this.manager = manager;
+        this.monthRef = monthRef;
+        this.userId = userId;
+        this.yearMonth = yearMonth;
+        if (cached != null) {
+            bitsPart = cached;
+        }
+    }
+
+    void start(boolean haveCachedState) {
+        monthRef.addChildEventListener(childListener);
+        if (haveCachedState) {
+            deliver();
+        }
+
+        // Child events say nothing for a month that does not exist yet. This read shares
+        // the same server listen, marks the initial state as loaded either way and
+        // replaces whatever the cache had with the full server state.
+        initialRead = new ValueEventListener() {
+            @Override
+            public void onDataChange(@NonNull DataSnapshot snapshot) {
+                if (initialRead != this) return; // stopped before the state arrived
+                initialRead = null;
+                bitsPart = MonthMealBitmap.EMPTY;
+                bucketPart = MonthMealBitmap.EMPTY;
+                for (DataSnapshot child : snapshot.getChildren()) {
+                    applyChildState(child.getKey(), child);
+                }
+                deliver();
+            }
+
+            @Override
+            public void onCancelled(@NonNull DatabaseError error) {
+            }
+        };
+        monthRef.addListenerForSingleValueEvent(initialRead);
+    }
+
+    // A month navigated away from before it loaded is never decoded.
+    void stop() {
+        monthRef.removeEventListener(childListener);
+        if (initialRead != null) {
+            monthRef.removeEventListener(initialRead);
+            initialRead = null;
+        }
+    }
+
+    void addSubscriber(FirebaseManager.OnMonthChangeListener listener) {
+        subscribers.add(listener);
+        if (delivered != null) {
+            listener.onMonthChanged(delivered, delivered.setDays());
+        }
+    }
+
+    // Returns the number of subscribers left.
+    int removeSubscriber(FirebaseManager.OnMonthChangeListener listener) {
+        subscribers.remove(listener);
+        return subscribers.size();
+    }
+
+    // Pending outbox edits or hall closures changed; re-deliver if the merged view moved.
+    void refresh() {
+        if (delivered != null) deliver();
+    }
+
+    private void applyChild(@Nullable String key, @Nullable DataSnapshot snapshot) {
+        // Until the initial state is out, child events only build up the model.
+        if (applyChildState(key, snapshot) && delivered != null) {
+            deliver();
+        }
+    }
+
+    private boolean applyChildState(@Nullable String key, @Nullable DataSnapshot snapshot) {
+        if (MealMonthNode.BITS.equals(key)) {
+            bitsPart = MonthMealBitmap.fromHex(snapshot != null ? snapshot.getValue(String.class) : null);
+        } else if (key != null && key.length() == 2
+                && Character.isDigit(key.charAt(0)) && Character.isDigit(key.charAt(1))) {
+            int day = Integer.parseInt(key);
+            if (day < 1 || day > 31) return false;
+            MealStatus status = snapshot != null
+                    ? MealStatus.fromName(snapshot.child("status").getValue(String.class)) : null;
+            bucketPart = bucketPart.with(day, status);
+        } else {
+            return false; // updatedAt and anything else carry no day state
+        }
+        return true;
+    }
+
+    private void deliver() {
+        MonthMealBitmap server = bucketPart.overlay(bitsPart);
+        manager.cacheMonth(userId, yearMonth, server);
+
+        MonthMealBitmap merged = manager.presentMonth(userId, yearMonth, server);
+        int changedDays = delivered == null ? merged.setDays() : delivered.diff(merged);
+        boolean first = delivered == null;
+        delivered = merged;
+        if (!first && changedDays == 0) return;
+
+        for (FirebaseManager.OnMonthChangeListener l : new ArrayList<>(subscribers)) {
+            l.onMonthChanged(merged, changedDays);
+        }
+    }
+}
@@ -0,0 +1,533 @@
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+import java.util.SplittableRandom;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Load generator for the app's meal paths, for sizing the database layout:
+//
+//   java Main load [emulator-url] [--residents N] [--sessions N] [--concurrency N]
+//                  [--think-ms N] [--latency-ms N] [--shards N] [--seed N]
+//
+// Each resident opens the app a few times before the nightly cutoff. A session reads
+// the current month, sometimes browses the month before, and toggles a few of the
+// next days. Requests go out the way FirebaseManager sends them:
+//   getMealRecordsForMonth  GET meals/{uid}/{yyyy-MM}
+//   saveMealRecord          transaction on meals/{uid}/{yyyy-MM} ({bits, updatedAt})
+//   mealCounts              per changed day, GET mealCountMarks/{date}/{uid}, then one
+//                           multi-path update that sets the mark and applies
+//                           ServerValue.increment(+1 / -1) to
+//                           mealCounts/{date}/{shard}/{STATUS} (fire-and-forget in
+//                           the app; everyone toggles the same few dates, but the
+//                           server applies increments without a read-modify-write)
+// A transaction is read, then a conditional write, retried up to 25 times as the SDK
+// does; a rejected count update is retried from a fresh mark up to 3 times, as
+// FirebaseManager does. Without a URL the database is an in-process map that applies
+// each update atomically; --latency-ms adds a round trip to every call. With an
+// emulator URL (http://127.0.0.1:9000/?ns=halldues) the REST API is used with ETag
+// conditional writes, PATCH multi-path updates and admin credentials.
+//
+// Reports throughput, p50/p99/max latency and payload bytes per operation.
+final class LoadSimulator {
+
+    private static final int MAX_TRANSACTION_ATTEMPTS = 25;
+    private static final int COUNT_ATTEMPTS = 3;
+    private static final int UID_LENGTH = 28;
+
+    private final Backend backend;
+    private final int shards;
+    private final long thinkMs;
+    private final YearMonth month;
+    private final Map<String, Samples> operations = new LinkedHashMap<>();
+
+    private LoadSimulator(Backend backend, int shards, long thinkMs, YearMonth month) {
+        this.backend = backend;
+        this.shards = shards;
+        this.thinkMs = thinkMs;
+        this.month = month;
+        for (String op : new String[]{"getMealRecordsForMonth", "saveMealRecord", "mealCounts"}) {
+            operations.put(op, new Samples());
+        }
+    }
+
+    static int run(String[] args) throws InterruptedException {
+        String url = null;
+        int residents = 2000;
+        int sessions = 3;
+        int concurrency = 64;
+        long thinkMs = 0;
+        long latencyMs = 0;
+        int shards = 16;
+        long seed = 1;
+        for (int i = 1; i < args.length; i++) {
+            String arg = args[i];
+            if (!arg.startsWith("--")) {
+                url = arg;
+                continue;
+            }
+            if (i + 1 >= args.length) {
+                System.err.println("Missing value for " + arg);
+                return 1;
+            }
+            long value = Long.parseLong(args[++i]);
+            switch (arg) {
+                case "--residents": residents = (int) value; break;
+                case "--sessions": sessions = (int) value; break;
+                case "--concurrency": concurrency = (int) value; break;
+                case "--think-ms": thinkMs = value; break;
+                case "--latency-ms": latencyMs = value; break;
+                case "--shards": shards = (int) value; break;
+                case "--seed": seed = value; break;
+                default:
+                    System.err.println("Unknown option " + arg);
+                    return 1;
+            }
+        }
+
+        Backend backend = url != null ? new EmulatorBackend(url) : new MemoryBackend(latencyMs);
+        LoadSimulator simulator = new LoadSimulator(backend, shards, thinkMs, YearMonth.now());
+
+        // Sessions of all residents, shuffled, so residents overlap like they do in the
+        // evening rush rather than arriving one after another.
+        List<long[]> work = new ArrayList<>(residents * sessions);
+        for (int r = 0; r < residents; r++) {
+            for (int s = 0; s < sessions; s++) {
+                work.add(new long[]{r, s});
+            }
+        }
+        Collections.shuffle(work, new Random(seed));
+
+        System.err.printf("%d residents x %d sessions, %d concurrent, against %s%n",
+                residents, sessions, concurrency, url != null ? url : "in-process database");
+        ExecutorService pool = Executors.newFixedThreadPool(concurrency);
+        AtomicLong failedSessions = new AtomicLong();
+        long start = System.nanoTime();
+        for (long[] job : work) {
+            long sessionSeed = seed * 1_000_003L + job[0] * 31 + job[1];
+            pool.execute(() -> {
+                try {
+                    simulator.session(uid((int) job[0]), new SplittableRandom(sessionSeed));
+                } catch (IOException e) {
+                    failedSessions.incrementAndGet();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            });
+        }
+        pool.shutdown();
+        pool.awaitTermination(1, TimeUnit.DAYS);
+        long elapsedNanos = System.nanoTime() - start;
+
+        System.out.print(simulator.report(elapsedNanos));
+        if (failedSessions.get() > 0) {
+            System.out.printf("%d sessions stopped on an I/O error%n", failedSessions.get());
+        }
+        return 0;
+    }
+
+    // ================= RESIDENT BEHAVIOUR =================
+    private void session(String uid, SplittableRandom random) throws IOException, InterruptedException {
+        readMonth(uid, month);
+        think(random);
+        if (random.nextInt(100) < 30) {
+            readMonth(uid, month.minusMonths(1));
+            think(random);
+        }
+
+        // Toggles land on the coming week, most of them on tomorrow.
+        LocalDate tomorrow = LocalDate.now().plusDays(1);
+        int toggles = 1 + random.nextInt(4);
+        for (int t = 0; t < toggles; t++) {
+            LocalDate date = random.nextInt(100) < 60 ? tomorrow : tomorrow.plusDays(random.nextInt(7));
+            int code = 1 + random.nextInt(2); // MEAL_ON or MEAL_OFF; closures are the office's
+            save(uid, date, code);
+            think(random);
+        }
+    }
+
+    private void think(SplittableRandom random) throws InterruptedException {
+        if (thinkMs > 0) Thread.sleep(thinkMs / 2 + random.nextLong(thinkMs + 1));
+    }
+
+    // ================= OPERATIONS =================
+    private void readMonth(String uid, YearMonth yearMonth) throws IOException, InterruptedException {
+        long start = System.nanoTime();
+        try {
+            Versioned node = backend.read("meals/" + uid + "/" + yearMonth);
+            operations.get("getMealRecordsForMonth").add(System.nanoTime() - start, node.json.length(), 0, true);
+        } catch (IOException e) {
+            operations.get("getMealRecordsForMonth").add(System.nanoTime() - start, 0, 0, false);
+            throw e;
+        }
+    }
+
+    private void save(String uid, LocalDate date, int code) throws IOException, InterruptedException {
+        int day = date.getDayOfMonth();
+        String monthPath = "meals/" + uid + "/" + YearMonth.from(date);
+        long[] before = new long[1];
+        long[] after = new long[1];
+        boolean saved = transaction("saveMealRecord", monthPath, json -> {
+            before[0] = parseBits(json);
+            int shift = (day - 1) * 2;
+            after[0] = (before[0] & ~(0b11L << shift)) | ((long) code << shift);
+            return monthJson(after[0]);
+        });
+        if (!saved) return;
+
+        int from = (int) (before[0] >>> ((day - 1) * 2)) & 0b11;
+        if (from == code) return;
+        moveDayCount(uid, date.toString(), code);
+    }
+
+    // Same as FirebaseManager.moveDayCount: the count taken away is the one the
+    // resident's mark names, and the mark moves with the counters in one update.
+    private void moveDayCount(String uid, String date, int to) throws IOException, InterruptedException {
+        String markPath = "mealCountMarks/" + date + "/" + uid;
+        long start = System.nanoTime();
+        long bytes = 0;
+        int retries = 0;
+        IOException error = null;
+        for (int attempt = 0; attempt < COUNT_ATTEMPTS; attempt++) {
+            try {
+                Versioned mark = backend.read(markPath);
+                bytes += mark.json.length();
+                String[] marked = parseMark(mark.json);
+                int from = Arrays.asList(STATUS_NAMES).indexOf(marked[1]);
+                if (from == to) {
+                    operations.get("mealCounts").add(System.nanoTime() - start, bytes, retries, true);
+                    return;
+                }
+                String shard = marked[0] != null ? marked[0] : String.valueOf(Math.floorMod(uid.hashCode(), shards));
+
+                Map<String, Object> updates = new LinkedHashMap<>();
+                Map<String, Object> nextMark = new LinkedHashMap<>();
+                nextMark.put("shard", shard);
+                nextMark.put("status", STATUS_NAMES[to]);
+                updates.put(markPath, nextMark);
+                updates.put("mealCounts/" + date + "/" + shard + "/" + STATUS_NAMES[to], new Increment(1));
+                if (from > 0) {
+                    updates.put("mealCounts/" + date + "/" + shard + "/" + STATUS_NAMES[from], new Increment(-1));
+                }
+                bytes += backend.update(updates);
+                operations.get("mealCounts").add(System.nanoTime() - start, bytes, retries, true);
+                return;
+            } catch (IOException e) {
+                error = e;
+                retries++;
+            }
+        }
+        operations.get("mealCounts").add(System.nanoTime() - start, bytes, retries - 1, false);
+        throw error;
+    }
+
+    private interface Update {
+        String apply(String json) throws IOException;
+    }
+
+    // Read, apply, conditional write; a lost race re-reads and tries again.
+    private boolean transaction(String operation, String path, Update update) throws IOException, InterruptedException {
+        long start = System.nanoTime();
+        long bytes = 0;
+        int retries = 0;
+        try {
+            for (int attempt = 0; attempt < MAX_TRANSACTION_ATTEMPTS; attempt++) {
+                Versioned current = backend.read(path);
+                String next = update.apply(current.json);
+                bytes += current.json.length() + next.length();
+                if (backend.write(path, current, next)) {
+                    operations.get(operation).add(System.nanoTime() - start, bytes, retries, true);
+                    return true;
+                }
+                retries++;
+            }
+        } catch (IOException e) {
+            operations.get(operation).add(System.nanoTime() - start, bytes, retries, false);
+            throw e;
+        }
+        operations.get(operation).add(System.nanoTime() - start, bytes, retries, false);
+        return false;
+    }
+
+    // ================= NODE SHAPES =================
+    private static long parseBits(String json) throws IOException {
+        JsonStreamReader reader = new JsonStreamReader(new StringReader(json));
+        if (reader.peek() != JsonStreamReader.Token.BEGIN_OBJECT) return 0;
+        long bits = 0;
+        reader.beginObject();
+        while (reader.hasNext()) {
+            if (reader.nextName().equals("bits")) {
+                bits = Long.parseUnsignedLong(reader.nextString(), 16);
+            } else {
+                reader.skipValue();
+            }
+        }
+        return bits;
+    }
+
+    private static String monthJson(long bits) throws IOException {
+        StringWriter out = new StringWriter();
+        new JsonStreamWriter(out).beginObject()
+                .name("bits").value(Long.toHexString(bits))
+                .name("updatedAt").value(System.currentTimeMillis())
+                .endObject().flush();
+        return out.toString();
+    }
+
+    private static final String[] STATUS_NAMES = {null, "MEAL_ON", "MEAL_OFF", "HALL_CLOSED"};
+
+    // {shard, status} of a mark; either is null when absent.
+    private static String[] parseMark(String json) throws IOException {
+        String[] mark = new String[2];
+        JsonStreamReader reader = new JsonStreamReader(new StringReader(json));
+        if (reader.peek() != JsonStreamReader.Token.BEGIN_OBJECT) return mark;
+        reader.beginObject();
+        while (reader.hasNext()) {
+            String name = reader.nextName();
+            if (name.equals("shard")) mark[0] = reader.nextString();
+            else if (name.equals("status")) mark[1] = reader.nextString();
+            else reader.skipValue();
+        }
+        return mark;
+    }
+
+    // A ServerValue.increment: {".sv": {"increment": delta}} on the wire.
+    static final class Increment {
+        final long delta;
+
+        Increment(long delta) {
+            this.delta = delta;
+        }
+    }
+
+    // Strings, longs, nested maps and increments, as a multi-path update holds them.
+    static void writeValue(JsonStreamWriter writer, Object value) throws IOException {
+        if (value instanceof Increment) {
+            writer.beginObject().name(".sv").beginObject()
+                    .name("increment").value(((Increment) value).delta)
+                    .endObject().endObject();
+        } else if (value instanceof Map) {
+            writer.beginObject();
+            for (Map.Entry<?, ?> e : ((Map<?, ?>) value).entrySet()) {
+                writer.name((String) e.getKey());
+                writeValue(writer, e.getValue());
+            }
+            writer.endObject();
+        } else if (value instanceof Long) {
+            writer.value((long) (Long) value);
+        } else {
+            writer.value((String) value);
+        }
+    }
+
+    static String toJson(Object value) throws IOException {
+        StringWriter out = new StringWriter();
+        JsonStreamWriter writer = new JsonStreamWriter(out);
+        writeValue(writer, value);
+        writer.flush();
+        return out.toString();
+    }
+
+    // Firebase uids are 28 characters.
+    private static String uid(int resident) {
+        String n = Integer.toString(resident);
+        StringBuilder sb = new StringBuilder(UID_LENGTH).append("sim");
+        for (int i = sb.length() + n.length(); i < UID_LENGTH; i++) sb.append('0');
+        return sb.append(n).toString();
+    }
+
+    // ================= REPORT =================
+    private String report(long elapsedNanos) {
+        double seconds = elapsedNanos / 1e9;
+        StringBuilder sb = new StringBuilder();
+        sb.append(String.format(Locale.US, "Ran %.1fs%n", seconds));
+        sb.append(String.format(Locale.US, "%-22s %8s %6s %8s %7s %7s %7s %9s %10s %8s%n",
+                "operation", "ok", "fail", "ops/s", "p50ms", "p99ms", "maxms", "avgBytes", "totalBytes", "retries"));
+        for (Map.Entry<String, Samples> e : operations.entrySet()) {
+            Samples s = e.getValue();
+            synchronized (s) {
+                long[] sorted = Arrays.copyOf(s.latencies, s.count);
+                Arrays.sort(sorted);
+                long total = s.successes + s.failures;
+                sb.append(String.format(Locale.US, "%-22s %8d %6d %8.1f %7.2f %7.2f %7.2f %9d %10d %8d%n",
+                        e.getKey(), s.successes, s.failures, total / seconds,
+                        percentileMs(sorted, 0.50), percentileMs(sorted, 0.99),
+                        sorted.length == 0 ? 0 : sorted[sorted.length - 1] / 1e6,
+                        total == 0 ? 0 : s.bytes / total, s.bytes, s.retries));
+            }
+        }
+        return sb.toString();
+    }
+
+    // Nearest-rank percentile of the exact samples.
+    static double percentileMs(long[] sortedNanos, double q) {
+        if (sortedNanos.length == 0) return 0;
+        int rank = (int) Math.max(1, Math.ceil(q * sortedNanos.length));
+        return sortedNanos[rank - 1] / 1e6;
+    }
+
+    private static final class Samples {
+        long[] latencies = new long[1024];
+        int count;
+        long successes;
+        long failures;
+        long bytes;
+        long retries;
+
+        synchronized void add(long nanos, long payloadBytes, int retryCount, boolean success) {
+            if (count == latencies.length) latencies = Arrays.copyOf(latencies, count * 2);
+            latencies[count++] = nanos;
+            if (success) successes++;
+            else failures++;
+            bytes += payloadBytes;
+            retries += retryCount;
+        }
+    }
+
+    // ================= BACKENDS =================
+    // json is "null" for a missing node; version is what a conditional write compares.
+    static final class Versioned {
+        final String json;
+        final String version;
+
+        Versioned(String json, String version) {
+            this.json = json;
+            this.version = version;
+        }
+    }
+
+    interface Backend {
+        Versioned read(String path) throws IOException, InterruptedException;
+
+        // False if the node changed since expected was read.
+        boolean write(String path, Versioned expected, String json) throws IOException, InterruptedException;
+
+        // One atomic multi-path update from the root; returns the bytes sent.
+        long update(Map<String, Object> updates) throws IOException, InterruptedException;
+    }
+
+    static final class MemoryBackend implements Backend {
+        private static final Versioned ABSENT = new Versioned("null", "0");
+
+        private final Map<String, Versioned> nodes = new ConcurrentHashMap<>();
+        private final AtomicLong versions = new AtomicLong();
+        private final long latencyMs;
+
+        MemoryBackend(long latencyMs) {
+            this.latencyMs = latencyMs;
+        }
+
+        @Override
+        public Versioned read(String path) throws InterruptedException {
+            roundTrip();
+            return nodes.getOrDefault(path, ABSENT);
+        }
+
+        @Override
+        public boolean write(String path, Versioned expected, String json) throws InterruptedException {
+            roundTrip();
+            Versioned next = new Versioned(json, Long.toString(versions.incrementAndGet()));
+            if (expected == ABSENT) return nodes.putIfAbsent(path, next) == null;
+            return nodes.replace(path, expected, next);
+        }
+
+        // Leaves are kept per path, so an increment only touches its own counter;
+        // the lock stands in for the server applying one update at a time.
+        @Override
+        public long update(Map<String, Object> updates) throws IOException, InterruptedException {
+            roundTrip();
+            synchronized (this) {
+                apply(updates);
+            }
+            return toJson(updates).length();
+        }
+
+        private void apply(Map<String, Object> updates) throws IOException {
+            for (Map.Entry<String, Object> e : updates.entrySet()) {
+                String json;
+                if (e.getValue() instanceof Increment) {
+                    String current = nodes.getOrDefault(e.getKey(), ABSENT).json;
+                    long count = current.equals("null") ? 0 : Long.parseLong(current);
+                    json = Long.toString(count + ((Increment) e.getValue()).delta);
+                } else {
+                    json = toJson(e.getValue());
+                }
+                nodes.put(e.getKey(), new Versioned(json, Long.toString(versions.incrementAndGet())));
+            }
+        }
+
+        private void roundTrip() throws InterruptedException {
+            if (latencyMs > 0) Thread.sleep(latencyMs);
+        }
+    }
+
+    static final class EmulatorBackend implements Backend {
+        private final HttpClient client = HttpClient.newHttpClient();
+        private final String baseUrl;
+
+        EmulatorBackend(String baseUrl) {
+            this.baseUrl = baseUrl;
+        }
+
+        @Override
+        public Versioned read(String path) throws IOException, InterruptedException {
+            HttpRequest request = HttpRequest.newBuilder(SnapshotTransfer.nodeUri(baseUrl, path))
+                    .header("Authorization", "Bearer owner")
+                    .header("X-Firebase-ETag", "true")
+                    .GET()
+                    .build();
+            HttpResponse<String> response = client.send(request, HttpResponse.BodyHandlers.ofString());
+            if (response.statusCode() / 100 != 2) {
+                throw new IOException("Emulator GET " + path + " failed: HTTP " + response.statusCode());
+            }
+            return new Versioned(response.body(), response.headers().firstValue("ETag").orElse(""));
+        }
+
+        @Override
+        public boolean write(String path, Versioned expected, String json) throws IOException, InterruptedException {
+            HttpRequest request = HttpRequest.newBuilder(SnapshotTransfer.nodeUri(baseUrl, path))
+                    .header("Authorization", "Bearer owner")
+                    .header("Content-Type", "application/json")
+                    .header("if-match", expected.version)
+                    .PUT(HttpRequest.BodyPublishers.ofString(json))
+                    .build();
+            HttpResponse<String> response = client.send(request, HttpResponse.BodyHandlers.ofString());
+            if (response.statusCode() == 412) return false;
+            if (response.statusCode() / 100 != 2) {
+                throw new IOException("Emulator PUT " + path + " failed: HTTP " + response.statusCode());
+            }
+            return true;
+        }
+
+        @Override
+        public long update(Map<String, Object> updates) throws IOException, InterruptedException {
+            String body = toJson(updates);
+            HttpRequest request = HttpRequest.newBuilder(SnapshotTransfer.nodeUri(baseUrl, ""))
+                    .header("Authorization", "Bearer owner")
+                    .header("Content-Type", "application/json")
+                    .method("PATCH", HttpRequest.BodyPublishers.ofString(body))
+                    .build();
+            HttpResponse<String> response = client.send(request, HttpResponse.BodyHandlers.ofString());
+            if (response.statusCode() / 100 != 2) {
+                throw new IOException("Emulator PATCH failed: HTTP " + response.statusCode());
+            }
+            return body.length();
+        }
+    }
+}
@@ -0,0 +1,111 @@
+package com.example.halldues;
+
+import android.content.Context;
+import android.util.SparseArray;
+
+import com.google.android.gms.tasks.CancellationToken;
+import com.google.android.gms.tasks.CancellationTokenSource;
+import com.google.android.gms.tasks.Task;
+import com.google.android.gms.tasks.TaskCompletionSource;
+import com.google.android.gms.tasks.Tasks;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+
+// Reads meal history from LocalMealStore and only goes to the server for months
+// this device has never synced. Months served locally are refreshed in the
+// background; FirebaseManager writes every month it reads back into the store, so
+// the next read sees the server's state. Store queries run on the store's thread,
+// outbox edits, meal rules and hall closures are overlaid on the main thread.
+public class LocalFirstMealRepository implements MealRepository {
+
+    private static LocalFirstMealRepository instance;
+
+    private final LocalMealStore store;
+    private final FirebaseManager firebaseManager;
+    private final FirebaseMealRepository remote;
+
+    private LocalFirstMealRepository(LocalMealStore store, FirebaseManager firebaseManager) {
+        this.store = store;
+        this.firebaseManager = firebaseManager;
+        this.remote = new FirebaseMealRepository(firebaseManager);
+    }
+
+    public static synchronized LocalFirstMealRepository getInstance(Context context) {
+        if (instance == null) {
+            instance = new LocalFirstMealRepository(LocalMealStore.getInstance(context), FirebaseManager.getInstance());
+        }
+        return instance;
+    }
+
+    @Override
+    public Task<MonthMealBitmap> getMonth(String userId, int monthKey, CancellationToken token) {
+        return getMonths(userId, monthKey, monthKey, token).onSuccessTask(months -> {
+            MonthMealBitmap month = months.get(monthKey);
+            return month != null ? Tasks.forResult(month)
+                    : Tasks.forException(new IllegalStateException("Month " + DateKeys.formatMonth(monthKey) + " unavailable"));
+        });
+    }
+
+    // This device's copy only, as screens show it; null if the month was never
+    // synced or the store could not be read. Never touches the network, for screens
+    // that also hold a live listener.
+    public Task<MonthMealBitmap> getStoredMonth(String userId, int monthKey, CancellationToken token) {
+        Task<MonthMealBitmap> local = Tasks.call(store.executor(), () -> store.readMonth(userId, monthKey));
+        return cancellable(Tasks.whenAll(local, firebaseManager.loadMonthOverlays(userId)).continueWith(all -> {
+            MonthMealBitmap month = local.isSuccessful() ? local.getResult() : null;
+            if (month == null) return null;
+            return firebaseManager.presentMonth(userId, DateKeys.formatMonth(monthKey), month);
+        }), token);
+    }
+
+    @Override
+    public Task<SparseArray<MonthMealBitmap>> getMonths(String userId, int fromMonthKey, int toMonthKey,
+                                                        CancellationToken token) {
+        Task<SparseArray<MonthMealBitmap>> local = Tasks.call(store.executor(),
+                () -> store.readMonths(userId, fromMonthKey, toMonthKey));
+        return cancellable(Tasks.whenAll(local, firebaseManager.loadMonthOverlays(userId)).continueWithTask(read -> {
+            SparseArray<MonthMealBitmap> stored = local.isSuccessful() ? local.getResult() : new SparseArray<>();
+            SparseArray<MonthMealBitmap> months = new SparseArray<>();
+            List<Task<MonthMealBitmap>> loads = new ArrayList<>();
+            List<Integer> loadKeys = new ArrayList<>();
+            for (int monthKey = fromMonthKey; monthKey <= toMonthKey; monthKey++) {
+                String yearMonth = DateKeys.formatMonth(monthKey);
+                MonthMealBitmap month = stored.get(monthKey);
+                if (month != null) {
+                    months.put(monthKey, firebaseManager.presentMonth(userId, yearMonth, month));
+                    refresh(userId, yearMonth);
+                } else if (!token.isCancellationRequested()) {
+                    loads.add(remote.getMonth(userId, monthKey, token));
+                    loadKeys.add(monthKey);
+                }
+            }
+            if (loads.isEmpty()) return Tasks.forResult(months);
+
+            return Tasks.whenAll(loads).continueWith(all -> {
+                for (int i = 0; i < loads.size(); i++) {
+                    if (loads.get(i).isSuccessful()) months.put(loadKeys.get(i), loads.get(i).getResult());
+                }
+                return months;
+            });
+        }), token);
+    }
+
+    // Goes to the network only if the month is not already in FirebaseManager's cache.
+    private void refresh(String userId, String yearMonth) {
+        firebaseManager.loadMealMonth(userId, yearMonth, new CancellationTokenSource().getToken());
+    }
+
+    // Ends cancelled as soon as token is; an inner task that was cancelled on its own
+    // fails with a CancellationException, so chained callers always hear back.
+    private static <T> Task<T> cancellable(Task<T> task, CancellationToken token) {
+        TaskCompletionSource<T> source = new TaskCompletionSource<>(token);
+        task.addOnCompleteListener(done -> {
+            if (done.isSuccessful()) source.trySetResult(done.getResult());
+            else if (done.isCanceled()) source.trySetException(new CancellationException());
+            else source.trySetException(done.getException());
+        });
+        return source.getTask();
+    }
+}
@@ -0,0 +1,149 @@
+package com.example.halldues;
+
+import android.content.Context;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteOpenHelper;
+import android.database.sqlite.SQLiteStatement;
+import android.util.SparseArray;
+
+import androidx.annotation.Nullable;
+import androidx.annotation.WorkerThread;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+// On-device relational copy of the meal months this device has seen from the
+// server; the local read side of LocalFirstMealRepository.
+//
+//   meal_days(user_id, day, status)        PRIMARY KEY (user_id, day)
+//   synced_months(user_id, month, synced_at) PRIMARY KEY (user_id, month)
+//
+// day is a DateKeys day key (yyyyMMdd) and status a MealStatus code, so a month,
+// a semester or a year for one resident is a single range scan of the primary-key
+// index. Only days with an explicit status have a row; synced_months tells a month
+// that is all default (no rows) from one never loaded. Everything runs on one
+// background thread, executor().
+public class LocalMealStore extends SQLiteOpenHelper {
+
+    private static final String DATABASE_NAME = "halldues_meals.db";
+    private static final int DATABASE_VERSION = 1;
+
+    private static LocalMealStore instance;
+
+    private final ExecutorService executor = Executors.newSingleThreadExecutor();
+
+    private LocalMealStore(Context context) {
+        super(context.getApplicationContext(), DATABASE_NAME, null, DATABASE_VERSION);
+    }
+
+    public static synchronized LocalMealStore getInstance(Context context) {
+        if (instance == null) {
+            instance = new LocalMealStore(context);
+        }
+        return instance;
+    }
+
+    @Override
+    public void onCreate(SQLiteDatabase db) {
+        db.execSQL("CREATE TABLE meal_days ("
+                + "user_id TEXT NOT NULL, day INTEGER NOT NULL, status INTEGER NOT NULL, "
+                + "PRIMARY KEY (user_id, day)) WITHOUT ROWID");
+        db.execSQL("CREATE TABLE synced_months ("
+                + "user_id TEXT NOT NULL, month INTEGER NOT NULL, synced_at INTEGER NOT NULL, "
+                + "PRIMARY KEY (user_id, month)) WITHOUT ROWID");
+    }
+
+    // A cache of server data: rebuilt rather than migrated.
+    @Override
+    public void onUpgrade(SQLiteDatabase db, int oldVersion, int newVersion) {
+        db.execSQL("DROP TABLE IF EXISTS meal_days");
+        db.execSQL("DROP TABLE IF EXISTS synced_months");
+        onCreate(db);
+    }
+
+    public ExecutorService executor() {
+        return executor;
+    }
+
+    // ================= READS =================
+    // null if the month was never synced to this device.
+    @WorkerThread
+    @Nullable
+    public MonthMealBitmap readMonth(String userId, int monthKey) {
+        return readMonths(userId, monthKey, monthKey).get(monthKey);
+    }
+
+    // The synced months in fromMonthKey..toMonthKey, keyed by month key.
+    @WorkerThread
+    public SparseArray<MonthMealBitmap> readMonths(String userId, int fromMonthKey, int toMonthKey) {
+        SQLiteDatabase db = getReadableDatabase();
+        SparseArray<MonthMealBitmap> months = new SparseArray<>();
+        try (Cursor c = db.rawQuery("SELECT month FROM synced_months WHERE user_id = ? AND month BETWEEN ? AND ?",
+                new String[]{userId, String.valueOf(fromMonthKey), String.valueOf(toMonthKey)})) {
+            while (c.moveToNext()) {
+                months.put(c.getInt(0), MonthMealBitmap.EMPTY);
+            }
+        }
+        if (months.size() == 0) return months;
+
+        try (Cursor c = db.rawQuery("SELECT day, status FROM meal_days WHERE user_id = ? AND day BETWEEN ? AND ?",
+                dayRange(userId, fromMonthKey, toMonthKey))) {
+            while (c.moveToNext()) {
+                int dayKey = c.getInt(0);
+                int monthKey = DateKeys.monthKeyOf(dayKey);
+                MonthMealBitmap month = months.get(monthKey);
+                if (month == null) continue;
+                months.put(monthKey, month.with(DateKeys.dayOfMonth(dayKey), MealStatus.fromCode(c.getInt(1))));
+            }
+        }
+        return months;
+    }
+
+    // ================= WRITES =================
+    // Replaces the month with the server's state and marks it synced.
+    @WorkerThread
+    public void writeMonth(String userId, int monthKey, MonthMealBitmap month) {
+        SQLiteDatabase db = getWritableDatabase();
+        db.beginTransaction();
+        try {
+            db.execSQL("DELETE FROM meal_days WHERE user_id = ? AND day BETWEEN ? AND ?",
+                    dayRange(userId, monthKey, monthKey));
+            SQLiteStatement insert = db.compileStatement("INSERT INTO meal_days (user_id, day, status) VALUES (?, ?, ?)");
+            int days = DateKeys.lengthOfMonth(monthKey);
+            for (int day = 1; day <= days; day++) {
+                MealStatus status = month.get(day);
+                if (status == null) continue;
+                insert.clearBindings();
+                insert.bindString(1, userId);
+                insert.bindLong(2, DateKeys.dayKey(monthKey, day));
+                insert.bindLong(3, status.code);
+                insert.executeInsert();
+            }
+            insert.close();
+            db.execSQL("INSERT OR REPLACE INTO synced_months (user_id, month, synced_at) VALUES (?, ?, ?)",
+                    new Object[]{userId, monthKey, System.currentTimeMillis()});
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+    }
+
+    public void writeMonthAsync(String userId, int monthKey, MonthMealBitmap month) {
+        executor.execute(() -> writeMonth(userId, monthKey, month));
+    }
+
+    // On logout: another resident may sign in on this device.
+    public void clearAsync() {
+        executor.execute(() -> {
+            SQLiteDatabase db = getWritableDatabase();
+            db.execSQL("DELETE FROM meal_days");
+            db.execSQL("DELETE FROM synced_months");
+        });
+    }
+
+    private static String[] dayRange(String userId, int fromMonthKey, int toMonthKey) {
+        return new String[]{userId, String.valueOf(DateKeys.dayKey(fromMonthKey, 1)),
+                String.valueOf(DateKeys.dayKey(toMonthKey, 31))};
+    }
+}
@@ -1,7 +1,6 @@
 package com.example.halldues;
 
 import android.content.Intent;
-import android.content.SharedPreferences;
 import android.os.Bundle;
 import android.util.Log;
 import android.widget.Button;
@@ -10,34 +9,31 @@ import android.widget.TextView;
 import android.widget.Toast;
 import androidx.appcompat.app.AppCompatActivity;
 
-import com.google.firebase.auth.FirebaseAuth;
-
 public class LoginActivity extends AppCompatActivity {
 
     private static final String TAG = "LoginActivity";
-    private static final String PREFS_NAME = "HallDuesPrefs";
-    private static final String KEY_USER_ID = "userId";
 
     private EditText etLoginId, etPassword;
     private Button btnLogin;
     private TextView tvRegisterNavigate;
     private FirebaseManager firebaseManager;
-    private FirebaseAuth firebaseAuth;
+    private StartupPipeline startup;
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
 
         // Check if the user is already logged in.
-        if (isUserLoggedIn()) {
-            navigateToDashboard(getLoggedInUserId());
+        startup = StartupPipeline.getInstance(this);
+        String sessionUserId = startup.getSessionUserId();
+        if (sessionUserId != null) {
+            navigateToDashboard(sessionUserId);
             return; // Skip the rest of the setup.
         }
 
         setContentView(R.layout.activity_login);
 
         firebaseManager = FirebaseManager.getInstance();
-        firebaseAuth = FirebaseAuth.getInstance();
 
         etLoginId = findViewById(R.id.etLoginId);
         etPassword = findViewById(R.id.etPassword);
@@ -73,7 +69,7 @@ public class LoginActivity extends AppCompatActivity {
             public void onSuccess(User user) {
                 runOnUiThread(() -> {
                     Toast.makeText(LoginActivity.this, "Welcome, " + user.getFullName() + "!", Toast.LENGTH_SHORT).show();
-                    saveLoginSession(user.getId());
+                    startup.saveSession(user.getId());
                     navigateToDashboard(user.getId());
                 });
             }
@@ -89,22 +85,6 @@ public class LoginActivity extends AppCompatActivity {
         });
     }
 
-    private void saveLoginSession(String userId) {
-        SharedPreferences prefs = getSharedPreferences(PREFS_NAME, MODE_PRIVATE);
-        prefs.edit().putString(KEY_USER_ID, userId).apply();
-    }
-
-    private boolean isUserLoggedIn() {
-        // A user is logged in if their ID is saved and a Firebase user is active.
-        SharedPreferences prefs = getSharedPreferences(PREFS_NAME, MODE_PRIVATE);
-        return prefs.getString(KEY_USER_ID, null) != null && firebaseAuth.getCurrentUser() != null;
-    }
-
-    private String getLoggedInUserId() {
-        SharedPreferences prefs = getSharedPreferences(PREFS_NAME, MODE_PRIVATE);
-        return prefs.getString(KEY_USER_ID, null);
-    }
-
     private void navigateToDashboard(String userId) {
         Intent intent = new Intent(this, DashboardActivity.class);
         intent.putExtra("userId", userId);
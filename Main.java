@@ -1,13 +1,509 @@
-//TIP To <b>Run</b> code, press <shortcut actionId="Run"/> or
-// click the <icon src="AllIcons.Actions.Execute"/> icon in the gutter.
-void main() {
-    //TIP Press <shortcut actionId="ShowIntentionActions"/> with your caret at the highlighted text
-    // to see how IntelliJ IDEA suggests fixing it.
-    IO.println(String.format("Hello and welcome!"));
-
-    for (int i = 1; i <= 5; i++) {
-        //TIP Press <shortcut actionId="Debug"/> to start debugging your code. We have set one <icon src="AllIcons.Debugger.Db_set_breakpoint"/> breakpoint
-        // for you, but you can always add more by pressing <shortcut actionId="ToggleLineBreakpoint"/>.
-        IO.println("i = " + i);
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.RecursiveTask;
+
+import com.example.halldues.RateTable;
+
+// Desktop tools for the hall office, run against a Realtime Database JSON export.
+//
+//   java Main bill <export.json[.gz]> <yyyy-MM> <bazaarCost> [out.csv] [--threads N] [--verify]
+//                  [--write-payments <database-url>]
+//   java Main export|import ...   (see SnapshotTransfer)
+//   java Main load ...            (see LoadSimulator)
+//
+// bill: month-end dues for every resident in users/. Messing is the month's bazaar
+// cost shared over every meal eaten in the hall (cost / hall meal count per meal);
+// fine and flat charges come from the app's own RateTable.DEFAULT (compile Main with
+// RateTable.java), so the two cannot drift apart. All money is in paisa and the work
+// is split by index over a fork/join pool, so the output is byte-for-byte the same
+// for any thread count (--verify re-runs on one thread and compares).
+//
+// --write-payments stores the bills as payments/{uid}/{yyyy-MM}, the node the app's
+// payment history reads; only this tool writes it. The PATCHes carry the OAuth access
+// token in HALLDUES_DB_TOKEN (a service account with database access), or the
+// emulator's admin credentials when it is unset.
+public class Main {
+
+    private static final RateTable RATES = RateTable.DEFAULT;
+    private static final int PAYMENT_BATCH = 500;
+
+    private static final int LEAF_SIZE = 256;
+
+    public static void main(String[] args) throws Exception {
+        if (args.length == 0) {
+            usage();
+            return;
+        }
+        switch (args[0]) {
+            case "bill":
+                System.exit(bill(args));
+                break;
+            case "export":
+                System.exit(SnapshotTransfer.export(args));
+                break;
+            case "import":
+                System.exit(SnapshotTransfer.importRecords(args));
+                break;
+            case "load":
+                System.exit(LoadSimulator.run(args));
+                break;
+            default:
+                usage();
+                System.exit(1);
+        }
+    }
+
+    private static void usage() {
+        System.err.println("usage: java Main bill <export.json[.gz]> <yyyy-MM> <bazaarCost> [out.csv] [--threads N] [--verify]"
+                + " [--write-payments <database-url>]");
+        System.err.println("       java Main export <dump.json[.gz] | emulator-url> <records.json[.gz]>");
+        System.err.println("       java Main import <records.json[.gz]> <dump.json[.gz] | emulator-url>");
+        System.err.println("       java Main load [emulator-url] [--residents N] [--sessions N] [--concurrency N]"
+                + " [--think-ms N] [--latency-ms N] [--shards N] [--seed N]");
+    }
+
+    // ================= BILL =================
+    private static int bill(String[] args) throws IOException, InterruptedException {
+        List<String> positional = new ArrayList<>();
+        int threads = Runtime.getRuntime().availableProcessors();
+        boolean verify = false;
+        String paymentsUrl = null;
+        for (int i = 1; i < args.length; i++) {
+            if (args[i].equals("--threads") && i + 1 < args.length) {
+                threads = Integer.parseInt(args[++i]);
+            } else if (args[i].equals("--verify")) {
+                verify = true;
+            } else if (args[i].equals("--write-payments") && i + 1 < args.length) {
+                paymentsUrl = args[++i];
+            } else {
+                positional.add(args[i]);
+            }
+        }
+        if (positional.size() < 3) {
+            usage();
+            return 1;
+        }
+
+        Path exportPath = Path.of(positional.get(0));
+        YearMonth month;
+        try {
+            month = YearMonth.parse(positional.get(1));
+        } catch (DateTimeParseException e) {
+            System.err.println("Bad month: " + positional.get(1) + " (expected yyyy-MM)");
+            return 1;
+        }
+        long bazaarPaisa = Math.round(Double.parseDouble(positional.get(2)) * 100);
+        Path outPath = positional.size() > 3 ? Path.of(positional.get(3)) : null;
+
+        long start = System.nanoTime();
+        List<Resident> residents;
+        try (Reader reader = SnapshotTransfer.openReader(exportPath)) {
+            residents = readSnapshot(new JsonStreamReader(reader), month.toString());
+        }
+        long parsed = System.nanoTime();
+
+        MonthBills bills = computeBills(residents, month, bazaarPaisa, new ForkJoinPool(threads));
+        String csv = toCsv(residents, bills, month.toString());
+        long computed = System.nanoTime();
+
+        if (outPath != null) {
+            try (Writer out = Files.newBufferedWriter(outPath, StandardCharsets.UTF_8)) {
+                out.write(csv);
+            }
+        } else {
+            System.out.print(csv);
+        }
+
+        System.err.printf("Billed %d residents, %d hall meals, %s per meal: read %d ms, compute %d ms on %d threads%n",
+                residents.size(), bills.hallMeals, formatPaisa(bills.hallMeals > 0 ? bazaarPaisa / bills.hallMeals : 0),
+                (parsed - start) / 1_000_000, (computed - parsed) / 1_000_000, threads);
+
+        if (verify) {
+            String sequential = toCsv(residents, computeBills(residents, month, bazaarPaisa, new ForkJoinPool(1)), month.toString());
+            if (!sequential.equals(csv)) {
+                System.err.println("verify: parallel output differs from the single-threaded run");
+                return 2;
+            }
+            System.err.println("verify: identical to the single-threaded run");
+        }
+
+        if (paymentsUrl != null) {
+            writePayments(paymentsUrl, residents, bills, month.toString());
+            System.err.printf("Stored %d bills under payments/*/%s%n", residents.size(), month);
+        }
+        return 0;
+    }
+
+    // Multi-path PATCHes to the root, PAYMENT_BATCH bills each. Amounts are in currency
+    // units with the field names of the app's PaymentRecord; a month already stored
+    // is overwritten.
+    private static void writePayments(String baseUrl, List<Resident> residents, MonthBills bills, String month)
+            throws IOException, InterruptedException {
+        String token = System.getenv("HALLDUES_DB_TOKEN");
+        HttpClient client = HttpClient.newHttpClient();
+        HttpRequest.Builder request = HttpRequest.newBuilder(SnapshotTransfer.nodeUri(baseUrl, ""))
+                .header("Authorization", "Bearer " + (token != null ? token : "owner"))
+                .header("Content-Type", "application/json");
+
+        for (int from = 0; from < residents.size(); from += PAYMENT_BATCH) {
+            StringWriter body = new StringWriter();
+            JsonStreamWriter batch = new JsonStreamWriter(body).beginObject();
+            for (int i = from; i < Math.min(from + PAYMENT_BATCH, residents.size()); i++) {
+                long[] charges = bills.charges[i];
+                batch.name("payments/" + residents.get(i).uid + "/" + month).beginObject()
+                        .name("messing").value(charges[0] / 100.0)
+                        .name("fine").value(charges[1] / 100.0)
+                        .name("generator").value(charges[2] / 100.0)
+                        .name("water").value(charges[3] / 100.0)
+                        .name("misc").value(charges[4] / 100.0)
+                        .name("total").value(charges[5] / 100.0)
+                        .endObject();
+            }
+            batch.endObject();
+
+            HttpResponse<String> response = client.send(
+                    request.method("PATCH", HttpRequest.BodyPublishers.ofString(body.toString())).build(),
+                    HttpResponse.BodyHandlers.ofString());
+            if (response.statusCode() / 100 != 2) {
+                throw new IOException("Writing payments failed: HTTP " + response.statusCode() + " " + response.body());
+            }
+        }
+    }
+
+    private static final class Resident {
+        final String uid;
+        String fullName = "";
+        String rollNumber = "";
+        String department = "";
+        // 2 bits per day as in the app's MonthMealBitmap: 0 unset, 1 ON, 2 OFF, 3 CLOSED.
+        long bits;
+
+        Resident(String uid) {
+            this.uid = uid;
+        }
+    }
+
+    private static final class MonthBills {
+        final int[] mealDays;
+        final int[] offDays;
+        final int[] closedDays;
+        final long[][] charges; // messing, fine, generator, water, misc, total
+        long hallMeals;
+
+        MonthBills(int size) {
+            mealDays = new int[size];
+            offDays = new int[size];
+            closedDays = new int[size];
+            charges = new long[size][];
+        }
+    }
+
+    private static MonthBills computeBills(List<Resident> residents, YearMonth month, long bazaarPaisa, ForkJoinPool pool) {
+        MonthBills bills = new MonthBills(residents.size());
+        int daysInMonth = month.lengthOfMonth();
+        try {
+            bills.hallMeals = pool.invoke(new CountTask(residents, bills, daysInMonth, 0, residents.size()));
+            pool.invoke(new ChargeTask(bills, daysInMonth, bazaarPaisa, 0, residents.size()));
+        } finally {
+            pool.shutdown();
+        }
+        return bills;
+    }
+
+    // Pass 1: per-resident day counts, summed into the hall-wide meal count.
+    private static final class CountTask extends RecursiveTask<Long> {
+        private static final long serialVersionUID = 1L;
+
+        private final List<Resident> residents;
+        private final MonthBills bills;
+        private final int daysInMonth;
+        private final int from;
+        private final int to;
+
+        CountTask(List<Resident> residents, MonthBills bills, int daysInMonth, int from, int to) {
+            this.residents = residents;
+            this.bills = bills;
+            this.daysInMonth = daysInMonth;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected Long compute() {
+            if (to - from <= LEAF_SIZE) {
+                long meals = 0;
+                for (int i = from; i < to; i++) {
+                    long bits = residents.get(i).bits;
+                    int off = 0;
+                    int closed = 0;
+                    for (int day = 0; day < daysInMonth; day++) {
+                        int code = MealTreeReader.dayCode(bits, day + 1);
+                        if (code == MealTreeReader.CODE_OFF) off++;
+                        else if (code == MealTreeReader.CODE_CLOSED) closed++;
+                    }
+                    bills.offDays[i] = off;
+                    bills.closedDays[i] = closed;
+                    bills.mealDays[i] = daysInMonth - off - closed;
+                    meals += bills.mealDays[i];
+                }
+                return meals;
+            }
+            int mid = (from + to) >>> 1;
+            CountTask left = new CountTask(residents, bills, daysInMonth, from, mid);
+            left.fork();
+            long right = new CountTask(residents, bills, daysInMonth, mid, to).compute();
+            return left.join() + right;
+        }
+    }
+
+    // Pass 2: charges. Messing is rounded down to the paisa, in integer arithmetic.
+    private static final class ChargeTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final MonthBills bills;
+        private final int daysInMonth;
+        private final long bazaarPaisa;
+        private final int from;
+        private final int to;
+
+        ChargeTask(MonthBills bills, int daysInMonth, long bazaarPaisa, int from, int to) {
+            this.bills = bills;
+            this.daysInMonth = daysInMonth;
+            this.bazaarPaisa = bazaarPaisa;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= LEAF_SIZE) {
+                for (int i = from; i < to; i++) {
+                    long messing = bills.hallMeals > 0 ? bazaarPaisa * bills.mealDays[i] / bills.hallMeals : 0;
+                    long fine = RATES.fineFor(bills.offDays[i]);
+                    boolean hallOpen = bills.closedDays[i] < daysInMonth;
+                    long generator = hallOpen ? RATES.generatorCharge : 0;
+                    long water = hallOpen ? RATES.waterCharge : 0;
+                    long misc = hallOpen ? RATES.miscCharge : 0;
+                    bills.charges[i] = new long[]{messing, fine, generator, water, misc,
+                            messing + fine + generator + water + misc};
+                }
+                return;
+            }
+            int mid = (from + to) >>> 1;
+            invokeAll(new ChargeTask(bills, daysInMonth, bazaarPaisa, from, mid),
+                    new ChargeTask(bills, daysInMonth, bazaarPaisa, mid, to));
+        }
+    }
+
+    // One buffer, one write.
+    private static String toCsv(List<Resident> residents, MonthBills bills, String month) {
+        StringBuilder sb = new StringBuilder(residents.size() * 96 + 128);
+        sb.append("uid,rollNumber,fullName,department,month,mealDays,offDays,closedDays,messing,fine,generator,water,misc,total\n");
+        for (int i = 0; i < residents.size(); i++) {
+            Resident r = residents.get(i);
+            sb.append(r.uid).append(',');
+            appendCsvField(sb, r.rollNumber).append(',');
+            appendCsvField(sb, r.fullName).append(',');
+            appendCsvField(sb, r.department).append(',');
+            sb.append(month).append(',')
+                    .append(bills.mealDays[i]).append(',')
+                    .append(bills.offDays[i]).append(',')
+                    .append(bills.closedDays[i]);
+            for (long charge : bills.charges[i]) {
+                sb.append(',').append(formatPaisa(charge));
+            }
+            sb.append('\n');
+        }
+        return sb.toString();
+    }
+
+    private static StringBuilder appendCsvField(StringBuilder sb, String value) {
+        if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0) {
+            return sb.append(value);
+        }
+        return sb.append('"').append(value.replace("\"", "\"\"")).append('"');
+    }
+
+    // Locale-independent "123.45".
+    private static String formatPaisa(long paisa) {
+        long abs = Math.abs(paisa);
+        long fraction = abs % 100;
+        return (paisa < 0 ? "-" : "") + abs / 100 + (fraction < 10 ? ".0" : ".") + fraction;
+    }
+
+    // ================= SNAPSHOT =================
+    // Streams the export once, keeping only profiles and the requested month. Month
+    // nodes win over legacy flat records, as in the app's migration; days a resident
+    // never set fall back to their meal rules, and hall closures win over everything.
+    private static List<Resident> readSnapshot(JsonStreamReader json, String yearMonth) throws IOException {
+        Map<String, Resident> users = new HashMap<>();
+        Map<String, Long> monthBits = new HashMap<>();
+        Map<String, Long> legacyBits = new HashMap<>();
+        long closedDays = 0;
+        Map<String, Long> ruleBits = new HashMap<>();
+
+        json.beginObject();
+        while (json.hasNext()) {
+            String section = json.nextName();
+            if (section.equals("users")) {
+                readUsers(json, users);
+            } else if (section.equals("meals")) {
+                MealTreeReader.read(json, new MealTreeReader.Visitor() {
+                    @Override
+                    public boolean acceptMonth(String month) {
+                        return month.equals(yearMonth);
+                    }
+
+                    @Override
+                    public void month(String userId, String month, long bits, long updatedAt) {
+                        monthBits.put(userId, bits);
+                    }
+
+                    @Override
+                    public void legacyRecord(String userId, String date, int code, long timestamp) {
+                        if (code == 0) return;
+                        int day = Integer.parseInt(date.substring(8));
+                        legacyBits.put(userId, MealTreeReader.withDay(legacyBits.getOrDefault(userId, 0L), day, code));
+                    }
+                });
+            } else if (section.equals("mealRules")) {
+                readRuleBits(json, YearMonth.parse(yearMonth), ruleBits);
+            } else if (section.equals("hallClosures")) {
+                closedDays = readClosedDays(json, yearMonth);
+            } else {
+                json.skipValue();
+            }
+        }
+        json.endObject();
+
+        // Hall closures win over whatever residents set, as in the app.
+        long closures = 0;
+        for (int day = 1; day <= 31; day++) {
+            if ((closedDays & (1L << (day - 1))) != 0) {
+                closures = MealTreeReader.withDay(closures, day, MealTreeReader.CODE_CLOSED);
+            }
+        }
+        List<Resident> residents = new ArrayList<>(users.values());
+        for (Resident r : residents) {
+            long legacy = legacyBits.getOrDefault(r.uid, 0L);
+            long set = MealTreeReader.overlay(legacy, monthBits.getOrDefault(r.uid, 0L));
+            r.bits = MealTreeReader.overlay(MealTreeReader.overlay(ruleBits.getOrDefault(r.uid, 0L), set), closures);
+        }
+        residents.sort(Comparator.comparing((Resident r) -> r.rollNumber).thenComparing(r -> r.uid));
+        return residents;
+    }
+
+    // mealRules/{uid}/{pushId} = {from, to, weekdays (bit 0 = Sunday), status}, expanded
+    // into the month in key (creation) order, later rules winning.
+    private static void readRuleBits(JsonStreamReader json, YearMonth month, Map<String, Long> ruleBits) throws IOException {
+        LocalDate first = month.atDay(1);
+        LocalDate last = month.atEndOfMonth();
+        json.beginObject();
+        while (json.hasNext()) {
+            String uid = json.nextName();
+            long bits = 0;
+            json.beginObject();
+            while (json.hasNext()) {
+                json.nextName();
+                String from = null;
+                String to = null;
+                long weekdays = 0;
+                int code = 0;
+                json.beginObject();
+                while (json.hasNext()) {
+                    String field = json.nextName();
+                    if (json.peek() == JsonStreamReader.Token.NULL) {
+                        json.nextNull();
+                    } else if (field.equals("from")) {
+                        from = json.nextString();
+                    } else if (field.equals("to")) {
+                        to = json.nextString();
+                    } else if (field.equals("weekdays")) {
+                        weekdays = json.nextLong();
+                    } else if (field.equals("status")) {
+                        code = MealTreeReader.statusCode(json.nextString());
+                    } else {
+                        json.skipValue();
+                    }
+                }
+                json.endObject();
+                if (from == null || to == null || code == 0) continue;
+
+                LocalDate start = LocalDate.parse(from).isAfter(first) ? LocalDate.parse(from) : first;
+                LocalDate end = LocalDate.parse(to).isBefore(last) ? LocalDate.parse(to) : last;
+                for (LocalDate d = start; !d.isAfter(end); d = d.plusDays(1)) {
+                    // DayOfWeek is 1 = Monday .. 7 = Sunday; the rules use 0 = Sunday.
+                    if ((weekdays & (1L << (d.getDayOfWeek().getValue() % 7))) != 0) {
+                        bits = MealTreeReader.withDay(bits, d.getDayOfMonth(), code);
+                    }
+                }
+            }
+            json.endObject();
+            if (bits != 0) ruleBits.put(uid, bits);
+        }
+        json.endObject();
+    }
+
+    // hallClosures/{yyyy-MM}/days: closed-day mask for the month, 0 if none.
+    private static long readClosedDays(JsonStreamReader json, String yearMonth) throws IOException {
+        long days = 0;
+        json.beginObject();
+        while (json.hasNext()) {
+            if (!json.nextName().equals(yearMonth)) {
+                json.skipValue();
+                continue;
+            }
+            json.beginObject();
+            while (json.hasNext()) {
+                if (json.nextName().equals("days")) days = json.nextLong();
+                else json.skipValue();
+            }
+            json.endObject();
+        }
+        json.endObject();
+        return days;
+    }
+
+    private static void readUsers(JsonStreamReader json, Map<String, Resident> users) throws IOException {
+        json.beginObject();
+        while (json.hasNext()) {
+            Resident r = new Resident(json.nextName());
+            json.beginObject();
+            while (json.hasNext()) {
+                String field = json.nextName();
+                if (json.peek() == JsonStreamReader.Token.NULL) {
+                    json.nextNull();
+                } else if (field.equals("fullName")) {
+                    r.fullName = json.nextString();
+                } else if (field.equals("rollNumber")) {
+                    r.rollNumber = json.nextString();
+                } else if (field.equals("department")) {
+                    r.department = json.nextString();
+                } else {
+                    json.skipValue();
+                }
+            }
+            json.endObject();
+            users.put(r.uid, r);
+        }
+        json.endObject();
     }
 }
@@ -0,0 +1,379 @@
+package com.example.halldues;
+
+import android.content.Context;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Paint;
+import android.graphics.Rect;
+import android.graphics.RectF;
+import android.os.Bundle;
+import android.util.AttributeSet;
+import android.view.GestureDetector;
+import android.view.KeyEvent;
+import android.view.MotionEvent;
+import android.view.View;
+import android.view.accessibility.AccessibilityEvent;
+
+import androidx.annotation.Nullable;
+import androidx.core.view.ViewCompat;
+import androidx.core.view.accessibility.AccessibilityNodeInfoCompat;
+import androidx.customview.widget.ExploreByTouchHelper;
+
+import java.util.List;
+
+// Month calendar drawn straight onto one canvas: a weekday header and up to six
+// rows of day cells coloured by meal status. Replaces the per-day CardView /
+// TextView trees, so a month change is one invalidate instead of ~40 inflated views.
+// With no child views to announce, DayAccessibility exposes each day as a virtual
+// view so TalkBack and keyboard users can reach, hear and toggle single days.
+public class MealCalendarView extends View {
+
+    public interface OnDayClickListener {
+        void onDayClick(int day);
+    }
+
+    public interface OnDayLongClickListener {
+        void onDayLongClick(int day);
+    }
+
+    private static final String[] WEEKDAYS = {"SUN", "MON", "TUE", "WED", "THU", "FRI", "SAT"};
+    private static final String[] DAY_LABELS = new String[32];
+
+    static {
+        for (int day = 1; day <= 31; day++) {
+            DAY_LABELS[day] = String.valueOf(day);
+        }
+    }
+
+    private static final int COLOR_MEAL_ON = Color.parseColor("#D1FAE5");
+    private static final int COLOR_MEAL_OFF = Color.parseColor("#FEE2E2");
+    private static final int COLOR_HALL_CLOSED = Color.parseColor("#E2E8F0");
+    private static final int COLOR_HEADER = Color.parseColor("#64748B");
+    private static final int COLOR_TEXT = Color.parseColor("#1E293B");
+
+    private final Paint cellPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+    private final Paint dayPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+    private final Paint labelPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+    private final Paint headerPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+    private final RectF cellRect = new RectF();
+    private final Rect virtualBounds = new Rect();
+    private final float density;
+
+    private int monthKey; // DateKeys month key
+    private int firstWeekday; // 0 = Sunday
+    private int daysInMonth;
+    private MonthMealBitmap statuses = MonthMealBitmap.EMPTY;
+
+    private boolean showStatusLabels = true;
+    private float cellHeightRatio = 1f;
+    private float cellWidth;
+    private float cellHeight;
+    private float headerHeight;
+    private int pressedDay;
+
+    private boolean longPressed;
+
+    @Nullable
+    private OnDayClickListener onDayClickListener;
+    @Nullable
+    private OnDayLongClickListener onDayLongClickListener;
+    private final GestureDetector longPressDetector;
+    private final DayAccessibility accessibility;
+
+    public MealCalendarView(Context context) {
+        this(context, null);
+    }
+
+    public MealCalendarView(Context context, @Nullable AttributeSet attrs) {
+        super(context, attrs);
+        density = context.getResources().getDisplayMetrics().density;
+
+        dayPaint.setColor(COLOR_TEXT);
+        dayPaint.setTextAlign(Paint.Align.CENTER);
+        dayPaint.setTextSize(16 * density);
+
+        labelPaint.setColor(COLOR_HEADER);
+        labelPaint.setTextAlign(Paint.Align.CENTER);
+        labelPaint.setTextSize(10 * density);
+
+        headerPaint.setColor(COLOR_HEADER);
+        headerPaint.setTextAlign(Paint.Align.CENTER);
+        headerPaint.setTextSize(12 * density);
+        headerHeight = 28 * density;
+
+        longPressDetector = new GestureDetector(context, new GestureDetector.SimpleOnGestureListener() {
+            @Override
+            public void onLongPress(MotionEvent e) {
+                int day = dayAt(e.getX(), e.getY());
+                if (onDayLongClickListener == null || day == 0 || day != pressedDay) return;
+                longPressed = true;
+                longClickDay(day);
+            }
+        });
+
+        accessibility = new DayAccessibility(this);
+        ViewCompat.setAccessibilityDelegate(this, accessibility);
+        setFocusable(true);
+
+        setMonthInternal(DateKeys.currentMonthKey());
+    }
+
+    public void setOnDayClickListener(@Nullable OnDayClickListener listener) {
+        onDayClickListener = listener;
+    }
+
+    public void setOnDayLongClickListener(@Nullable OnDayLongClickListener listener) {
+        onDayLongClickListener = listener;
+    }
+
+    public void setShowStatusLabels(boolean show) {
+        showStatusLabels = show;
+        invalidate();
+    }
+
+    // Cell height as a fraction of cell width (1 = square cells).
+    public void setCellHeightRatio(float ratio) {
+        cellHeightRatio = ratio;
+        requestLayout();
+        invalidate();
+    }
+
+    // Showing the month that is already on screen only redraws the cells whose
+    // status changed.
+    public void setMonth(int monthKey, MonthMealBitmap statuses) {
+        if (monthKey == this.monthKey) {
+            setStatuses(statuses);
+            return;
+        }
+        int oldRows = rowCount();
+        setMonthInternal(monthKey);
+        this.statuses = statuses;
+        if (rowCount() != oldRows) {
+            requestLayout();
+        }
+        invalidate();
+        accessibility.invalidateRoot();
+    }
+
+    public void setStatuses(MonthMealBitmap statuses) {
+        int changed = this.statuses.diff(statuses);
+        this.statuses = statuses;
+        // Only the changed cells are invalidated. Software layers honour the dirty
+        // rect; with hardware acceleration this re-records just this view's display
+        // list, with no layout pass either way.
+        while (changed != 0) {
+            int day = Integer.numberOfTrailingZeros(changed) + 1;
+            changed &= changed - 1;
+            if (day <= daysInMonth) {
+                computeCellRect(day);
+                invalidate((int) cellRect.left, (int) cellRect.top,
+                        (int) Math.ceil(cellRect.right), (int) Math.ceil(cellRect.bottom));
+                accessibility.invalidateVirtualView(day);
+            }
+        }
+    }
+
+    private void setMonthInternal(int monthKey) {
+        this.monthKey = monthKey;
+        firstWeekday = DateKeys.firstWeekday(monthKey);
+        daysInMonth = DateKeys.lengthOfMonth(monthKey);
+    }
+
+    private int rowCount() {
+        return (firstWeekday + daysInMonth + 6) / 7;
+    }
+
+    @Override
+    protected void onMeasure(int widthMeasureSpec, int heightMeasureSpec) {
+        int width = MeasureSpec.getSize(widthMeasureSpec);
+        float contentWidth = width - getPaddingLeft() - getPaddingRight();
+        float rowHeight = contentWidth / 7f * cellHeightRatio;
+        int height = (int) Math.ceil(headerHeight + rowCount() * rowHeight) + getPaddingTop() + getPaddingBottom();
+        setMeasuredDimension(width, resolveSize(height, heightMeasureSpec));
+    }
+
+    @Override
+    protected void onSizeChanged(int w, int h, int oldw, int oldh) {
+        super.onSizeChanged(w, h, oldw, oldh);
+        cellWidth = (w - getPaddingLeft() - getPaddingRight()) / 7f;
+        cellHeight = cellWidth * cellHeightRatio;
+    }
+
+    @Override
+    protected void onDraw(Canvas canvas) {
+        super.onDraw(canvas);
+        cellHeight = cellWidth * cellHeightRatio;
+
+        float headerBaseline = getPaddingTop() + headerHeight / 2f - (headerPaint.descent() + headerPaint.ascent()) / 2f;
+        for (int col = 0; col < 7; col++) {
+            float cx = getPaddingLeft() + cellWidth * col + cellWidth / 2f;
+            canvas.drawText(WEEKDAYS[col], cx, headerBaseline, headerPaint);
+        }
+
+        float radius = 8 * density;
+        for (int day = 1; day <= daysInMonth; day++) {
+            MealStatus status = statuses.getOrDefault(day);
+            computeCellRect(day);
+            cellPaint.setColor(colorFor(status));
+            canvas.drawRoundRect(cellRect, radius, radius, cellPaint);
+
+            float cx = cellRect.left + (cellRect.right - cellRect.left) / 2f;
+            float cy = cellRect.top + (cellRect.bottom - cellRect.top) / 2f;
+            if (showStatusLabels) {
+                canvas.drawText(DAY_LABELS[day], cx, cy - dayPaint.descent(), dayPaint);
+                canvas.drawText(labelFor(status), cx, cy - labelPaint.ascent(), labelPaint);
+            } else {
+                canvas.drawText(DAY_LABELS[day], cx, cy - (dayPaint.descent() + dayPaint.ascent()) / 2f, dayPaint);
+            }
+        }
+    }
+
+    @Override
+    public boolean onTouchEvent(MotionEvent event) {
+        if (onDayClickListener == null) return super.onTouchEvent(event);
+        if (onDayLongClickListener != null) longPressDetector.onTouchEvent(event);
+
+        switch (event.getActionMasked()) {
+            case MotionEvent.ACTION_DOWN:
+                pressedDay = dayAt(event.getX(), event.getY());
+                longPressed = false;
+                return pressedDay != 0;
+            case MotionEvent.ACTION_UP:
+                int day = dayAt(event.getX(), event.getY());
+                // A long press already went to the long-click listener.
+                if (day != 0 && day == pressedDay && !longPressed) {
+                    pressedDay = 0;
+                    clickDay(day);
+                }
+                return true;
+            default:
+                return true;
+        }
+    }
+
+    @Override
+    public boolean performClick() {
+        return super.performClick();
+    }
+
+    @Override
+    protected boolean dispatchHoverEvent(MotionEvent event) {
+        return accessibility.dispatchHoverEvent(event) || super.dispatchHoverEvent(event);
+    }
+
+    @Override
+    public boolean dispatchKeyEvent(KeyEvent event) {
+        return accessibility.dispatchKeyEvent(event) || super.dispatchKeyEvent(event);
+    }
+
+    @Override
+    protected void onFocusChanged(boolean gainFocus, int direction, @Nullable Rect previouslyFocusedRect) {
+        super.onFocusChanged(gainFocus, direction, previouslyFocusedRect);
+        accessibility.onFocusChanged(gainFocus, direction, previouslyFocusedRect);
+    }
+
+    // Touch and accessibility actions both end here.
+    private boolean clickDay(int day) {
+        if (onDayClickListener == null) return false;
+        performClick();
+        onDayClickListener.onDayClick(day);
+        accessibility.sendEventForVirtualView(day, AccessibilityEvent.TYPE_VIEW_CLICKED);
+        return true;
+    }
+
+    private boolean longClickDay(int day) {
+        if (onDayLongClickListener == null) return false;
+        performLongClick();
+        onDayLongClickListener.onDayLongClick(day);
+        accessibility.sendEventForVirtualView(day, AccessibilityEvent.TYPE_VIEW_LONG_CLICKED);
+        return true;
+    }
+
+    // Day under (x, y), or 0 for the header, blank leading cells and padding.
+    private int dayAt(float x, float y) {
+        float gridX = x - getPaddingLeft();
+        float gridY = y - getPaddingTop() - headerHeight;
+        if (gridX < 0 || gridY < 0 || cellWidth <= 0) return 0;
+
+        int col = (int) (gridX / cellWidth);
+        int row = (int) (gridY / cellHeight);
+        if (col > 6) return 0;
+        int day = row * 7 + col - firstWeekday + 1;
+        return day >= 1 && day <= daysInMonth ? day : 0;
+    }
+
+    private void computeCellRect(int day) {
+        int index = firstWeekday + day - 1;
+        float left = getPaddingLeft() + (index % 7) * cellWidth;
+        float top = getPaddingTop() + headerHeight + (index / 7) * cellHeight;
+        cellRect.set(left, top, left + cellWidth, top + cellHeight);
+        cellRect.inset(2 * density, 2 * density);
+    }
+
+    private static int colorFor(MealStatus status) {
+        switch (status) {
+            case MEAL_OFF: return COLOR_MEAL_OFF;
+            case HALL_CLOSED: return COLOR_HALL_CLOSED;
+            default: return COLOR_MEAL_ON;
+        }
+    }
+
+    private static String labelFor(MealStatus status) {
+        switch (status) {
+            case MEAL_OFF: return "OFF";
+            case HALL_CLOSED: return "CLOSED";
+            default: return "ON";
+        }
+    }
+
+    // One virtual view per day, id = day of month, read as "day N, ON/OFF/CLOSED".
+    private final class DayAccessibility extends ExploreByTouchHelper {
+
+        DayAccessibility(View host) {
+            super(host);
+        }
+
+        @Override
+        protected int getVirtualViewAt(float x, float y) {
+            int day = dayAt(x, y);
+            return day != 0 ? day : INVALID_ID;
+        }
+
+        @Override
+        protected void getVisibleVirtualViews(List<Integer> virtualViewIds) {
+            for (int day = 1; day <= daysInMonth; day++) {
+                virtualViewIds.add(day);
+            }
+        }
+
+        @Override
+        protected void onPopulateNodeForVirtualView(int day, AccessibilityNodeInfoCompat node) {
+            node.setContentDescription("day " + day + ", " + labelFor(statuses.getOrDefault(day)));
+            computeCellRect(day);
+            virtualBounds.set((int) cellRect.left, (int) cellRect.top,
+                    (int) Math.ceil(cellRect.right), (int) Math.ceil(cellRect.bottom));
+            node.setBoundsInParent(virtualBounds);
+            if (onDayClickListener != null) {
+                node.setClickable(true);
+                node.addAction(AccessibilityNodeInfoCompat.ACTION_CLICK);
+            }
+            if (onDayLongClickListener != null) {
+                node.setLongClickable(true);
+                node.addAction(AccessibilityNodeInfoCompat.ACTION_LONG_CLICK);
+            }
+        }
+
+        @Override
+        protected boolean onPerformActionForVirtualView(int day, int action, @Nullable Bundle arguments) {
+            if (day < 1 || day > daysInMonth) return false;
+            switch (action) {
+                case AccessibilityNodeInfoCompat.ACTION_CLICK:
+                    return clickDay(day);
+                case AccessibilityNodeInfoCompat.ACTION_LONG_CLICK:
+                    return longClickDay(day);
+                default:
+                    return false;
+            }
+        }
+    }
+}
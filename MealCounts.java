@@ -0,0 +1,70 @@
+package com.example.halldues;
+
+// Day counts per status over a range of days. Days without an explicit status are
+// meal days and are counted in mealsOn; knownDays is how many days of the range
+// the counts cover.
+public final class MealCounts {
+
+    public static final MealCounts EMPTY = new MealCounts(0, 0, 0, 0);
+
+    public final int mealsOn;
+    public final int mealsOff;
+    public final int hallClosed;
+    public final int knownDays;
+
+    public MealCounts(int mealsOn, int mealsOff, int hallClosed, int knownDays) {
+        this.mealsOn = mealsOn;
+        this.mealsOff = mealsOff;
+        this.hallClosed = hallClosed;
+        this.knownDays = knownDays;
+    }
+
+    // The days of month (a DateKeys month key) that fall in fromDayKey..toDayKey.
+    public static MealCounts ofMonth(int monthKey, MonthMealBitmap month, int fromDayKey, int toDayKey) {
+        // Day keys are yyyyMMdd, so plain integer order is date order.
+        int firstKey = Math.max(fromDayKey, DateKeys.dayKey(monthKey, 1));
+        int lastKey = Math.min(toDayKey, DateKeys.dayKey(monthKey, DateKeys.lengthOfMonth(monthKey)));
+        if (firstKey > lastKey) return EMPTY;
+        int first = DateKeys.dayOfMonth(firstKey);
+        int last = DateKeys.dayOfMonth(lastKey);
+
+        int off = 0;
+        int closed = 0;
+        for (int day = first; day <= last; day++) {
+            MealStatus status = month.get(day);
+            if (status == MealStatus.MEAL_OFF) off++;
+            else if (status == MealStatus.HALL_CLOSED) closed++;
+        }
+        int known = last - first + 1;
+        return new MealCounts(known - off - closed, off, closed, known);
+    }
+
+    public MealCounts plus(MealCounts other) {
+        return new MealCounts(mealsOn + other.mealsOn, mealsOff + other.mealsOff,
+                hallClosed + other.hallClosed, knownDays + other.knownDays);
+    }
+
+    public MealCounts minus(MealCounts other) {
+        return new MealCounts(mealsOn - other.mealsOn, mealsOff - other.mealsOff,
+                hallClosed - other.hallClosed, knownDays - other.knownDays);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (!(o instanceof MealCounts)) return false;
+        MealCounts other = (MealCounts) o;
+        return mealsOn == other.mealsOn && mealsOff == other.mealsOff
+                && hallClosed == other.hallClosed && knownDays == other.knownDays;
+    }
+
+    @Override
+    public int hashCode() {
+        return ((mealsOn * 31 + mealsOff) * 31 + hallClosed) * 31 + knownDays;
+    }
+
+    @Override
+    public String toString() {
+        return "MealCounts{on=" + mealsOn + ", off=" + mealsOff + ", closed=" + hallClosed
+                + ", known=" + knownDays + "}";
+    }
+}
@@ -0,0 +1,76 @@
+package com.example.halldues;
+
+import org.junit.Test;
+
+import java.util.Collections;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for MealCounts.
+ */
+public class MealCountsTest {
+
+    private static final int FEB_2024 = DateKeys.monthKey(2024, 2);
+
+    @Test
+    public void ofMonth_unsetDaysCountAsMeals() {
+        MonthMealBitmap month = MonthMealBitmap.EMPTY
+                .with(3, MealStatus.MEAL_OFF)
+                .with(4, MealStatus.MEAL_OFF)
+                .with(10, MealStatus.HALL_CLOSED)
+                .with(11, MealStatus.MEAL_ON);
+
+        MealCounts counts = MealCounts.ofMonth(FEB_2024, month, 20240101, 20241231);
+        assertEquals(new MealCounts(26, 2, 1, 29), counts);
+    }
+
+    @Test
+    public void ofMonth_clampsToRange() {
+        MonthMealBitmap month = MonthMealBitmap.EMPTY
+                .with(3, MealStatus.MEAL_OFF)
+                .with(20, MealStatus.MEAL_OFF);
+
+        assertEquals(new MealCounts(7, 1, 0, 8), MealCounts.ofMonth(FEB_2024, month, 20240101, 20240208));
+        assertEquals(new MealCounts(9, 1, 0, 10), MealCounts.ofMonth(FEB_2024, month, 20240220, 20240331));
+        assertEquals(MealCounts.EMPTY, MealCounts.ofMonth(FEB_2024, month, 20240301, 20240331));
+    }
+
+    @Test
+    public void plusAndMinus_areInverse() {
+        MealCounts a = new MealCounts(20, 5, 6, 31);
+        MealCounts b = new MealCounts(26, 2, 1, 29);
+        assertEquals(new MealCounts(46, 7, 7, 60), a.plus(b));
+        assertEquals(a, a.plus(b).minus(b));
+    }
+
+    @Test
+    public void rolledUpDays_agreeWithTheExpandedMonth() {
+        // Off every Saturday (3, 10, 17, 24 Feb 2024); by hand off on the 4th and on on
+        // the 10th, the 12th off still pending; hall closed on the 3rd and 4th; and
+        // everything after the 15th still ahead of "today".
+        MealRule saturdaysOff = new MealRule("a", 20240101, 20241231, MealRule.weekdayBit(6), MealStatus.MEAL_OFF);
+        MonthMealBitmap planned = MealRule.expand(Collections.singletonList(saturdaysOff), FEB_2024);
+        MonthMealBitmap server = MonthMealBitmap.EMPTY
+                .with(4, MealStatus.MEAL_OFF)
+                .with(10, MealStatus.MEAL_ON);
+        MonthMealBitmap pending = MonthMealBitmap.EMPTY.with(12, MealStatus.MEAL_OFF);
+        int closed = (1 << 2) | (1 << 3);
+        int today = 20240215;
+
+        MonthMealBitmap shown = MonthMealBitmap.present(planned, server, pending, closed);
+        int on = 0, off = 0, hallClosed = 0;
+        for (int day = 1; day <= 15; day++) {
+            MealStatus status = shown.getOrDefault(day);
+            if (status == MealStatus.MEAL_ON) on++;
+            else if (status == MealStatus.MEAL_OFF) off++;
+            else hallClosed++;
+        }
+        assertEquals(new MealCounts(12, 1, 2, 15), new MealCounts(on, off, hallClosed, 15));
+
+        // The rollup keeps the server month as hex; the stats present it the same way.
+        MonthMealBitmap rolledUp = MonthMealBitmap.fromHex(server.toHex());
+        assertEquals(new MealCounts(on, off, hallClosed, 15), MealCounts.ofMonth(FEB_2024,
+                MonthMealBitmap.present(planned, rolledUp, pending, closed), 20240101, today));
+    }
+}
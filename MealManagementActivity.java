@@ -1,45 +1,46 @@
 package com.example.halldues;
 
-import android.graphics.Color;
 import android.os.Bundle;
-import android.view.Gravity;
-import android.view.View;
 import android.widget.Button;
-import android.widget.GridLayout;
-import android.widget.LinearLayout;
 import android.widget.TextView;
 import android.widget.Toast;
 
+import androidx.appcompat.app.AlertDialog;
 import androidx.appcompat.app.AppCompatActivity;
-import androidx.cardview.widget.CardView;
 
+import com.google.android.gms.tasks.CancellationToken;
 import com.google.firebase.auth.FirebaseAuth;
 import com.google.firebase.auth.FirebaseUser;
 
-import java.text.SimpleDateFormat;
-import java.util.Calendar;
-import java.util.HashMap;
+import java.text.DateFormatSymbols;
 import java.util.List;
 import java.util.Locale;
-import java.util.Map;
 
 public class MealManagementActivity extends AppCompatActivity {
 
+    private static final String MONTH_REQUEST = "month";
+    private static final String YEAR_STATS_REQUEST = "yearStats";
+
     private FirebaseManager firebaseManager;
+    private LocalFirstMealRepository mealRepository;
+    private RequestScope requests;
     private User currentUser;
 
-    private Calendar currentCalendar;
-    private SimpleDateFormat dateFormat;
-    private SimpleDateFormat monthYearFormat;
+    private int currentMonthKey; // DateKeys month key
+    private String[] monthNames;
 
     private TextView tvStudentName, tvRollNo, tvDepartment;
     private TextView tvMealsOn, tvMealsOff, tvHallClosed;
+    private TextView tvYearMeals;
     private TextView tvMonthYear;
-    private GridLayout gridCalendar;
-    private Button btnPrev, btnNext, btnUpdateChanges;
+    private MealCalendarView calendarMeals;
+    private Button btnPrev, btnNext, btnUpdateChanges, btnMealRules;
 
-    private Map<String, MealRecord> mealRecordsMap;
-    private Map<String, CardView> dateCardMap;
+    private MonthMealBitmap mealMonth = MonthMealBitmap.EMPTY;
+    private boolean monthShown;
+    private int rangeStartDayKey; // 0 unless a long press started a range
+    private int statsYear; // year the year line shows, 0 before the first load
+    private FirebaseManager.MealSubscription mealSubscription;
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
@@ -47,13 +48,10 @@ public class MealManagementActivity extends AppCompatActivity {
         setContentView(R.layout.activity_meal_management);
 
         firebaseManager = FirebaseManager.getInstance();
-        currentCalendar = Calendar.getInstance();
-
-        dateFormat = new SimpleDateFormat("yyyy-MM-dd", Locale.getDefault());
-        monthYearFormat = new SimpleDateFormat("MMMM yyyy", Locale.getDefault());
-
-        mealRecordsMap = new HashMap<>();
-        dateCardMap = new HashMap<>();
+        mealRepository = LocalFirstMealRepository.getInstance(this);
+        requests = new RequestScope(this);
+        currentMonthKey = DateKeys.currentMonthKey();
+        monthNames = DateFormatSymbols.getInstance(Locale.getDefault()).getMonths();
 
         initializeViews();
         loadUserData();
@@ -67,29 +65,34 @@ public class MealManagementActivity extends AppCompatActivity {
         tvMealsOn = findViewById(R.id.tvMealsOn);
         tvMealsOff = findViewById(R.id.tvMealsOff);
         tvHallClosed = findViewById(R.id.tvHallClosed);
+        tvYearMeals = findViewById(R.id.tvYearMeals);
 
         tvMonthYear = findViewById(R.id.tvMonthYear);
-        gridCalendar = findViewById(R.id.gridCalendar);
+        calendarMeals = findViewById(R.id.calendarMeals);
+        calendarMeals.setOnDayClickListener(this::onDayTapped);
+        calendarMeals.setOnDayLongClickListener(this::startRange);
 
         btnPrev = findViewById(R.id.btnPrev);
         btnNext = findViewById(R.id.btnNext);
         btnUpdateChanges = findViewById(R.id.btnUpdateChanges);
+        btnMealRules = findViewById(R.id.btnMealRules);
 
         btnPrev.setEnabled(false);
         btnNext.setEnabled(false);
         btnUpdateChanges.setEnabled(false);
 
         btnPrev.setOnClickListener(v -> {
-            currentCalendar.add(Calendar.MONTH, -1);
+            currentMonthKey--;
             loadMealData();
         });
 
         btnNext.setOnClickListener(v -> {
-            currentCalendar.add(Calendar.MONTH, 1);
+            currentMonthKey++;
             loadMealData();
         });
 
         btnUpdateChanges.setOnClickListener(v -> saveAllChanges());
+        btnMealRules.setOnClickListener(v -> showMealRules());
     }
 
     private void loadUserData() {
@@ -102,161 +105,277 @@ public class MealManagementActivity extends AppCompatActivity {
 
         String userId = firebaseUser.getUid();
 
-        firebaseManager.getUserById(userId, new FirebaseManager.OnUserOperationListener() {
-            @Override
-            public void onSuccess(User user) {
-                runOnUiThread(() -> {
-                    currentUser = user;
+        User cached = firebaseManager.getCachedUser(userId);
+        if (cached != null) {
+            showUser(cached);
+            return;
+        }
 
-                    tvStudentName.setText(user.getFullName());
-                    tvRollNo.setText(user.getRollNumber());
-                    tvDepartment.setText(user.getDepartment());
+        firebaseManager.loadUser(userId, requests.token())
+                .addOnSuccessListener(this::showUser)
+                .addOnFailureListener(e -> {
+                    Toast.makeText(this, e.getMessage(), Toast.LENGTH_SHORT).show();
+                    finish();
+                });
+    }
 
-                    btnPrev.setEnabled(true);
-                    btnNext.setEnabled(true);
-                    btnUpdateChanges.setEnabled(true);
+    private void showUser(User user) {
+        currentUser = user;
 
-                    loadMealData();
-                });
-            }
+        tvStudentName.setText(user.getFullName());
+        tvRollNo.setText(user.getRollNumber());
+        tvDepartment.setText(user.getDepartment());
 
-            @Override
-            public void onFailure(String error) {
-                runOnUiThread(() -> {
-                    Toast.makeText(MealManagementActivity.this, error, Toast.LENGTH_SHORT).show();
-                    finish();
-                });
-            }
-        });
+        btnPrev.setEnabled(true);
+        btnNext.setEnabled(true);
+        btnUpdateChanges.setEnabled(true);
+
+        loadMealData();
+    }
+
+    @Override
+    protected void onStart() {
+        super.onStart();
+        if (currentUser != null && mealSubscription == null) {
+            loadMealData();
+        }
+    }
+
+    @Override
+    protected void onStop() {
+        super.onStop();
+        requests.cancel(MONTH_REQUEST);
+        mealSubscription = null;
     }
 
+    // Quick Prev/Next taps: each load supersedes the one before, whose listener is
+    // detached (undecoded if it had not arrived) and whose updates are dropped.
+    // The on-device copy is painted first unless the live listener beats it.
     private void loadMealData() {
         if (currentUser == null) return;
+        CancellationToken token = requests.latest(MONTH_REQUEST);
+        monthShown = false;
+        if (DateKeys.yearOf(currentMonthKey) != statsYear) {
+            loadYearStats();
+        }
 
-        String yearMonth = new SimpleDateFormat("yyyy-MM", Locale.getDefault())
-                .format(currentCalendar.getTime());
+        String yearMonth = DateKeys.formatMonth(currentMonthKey);
 
-        firebaseManager.getMealRecordsForMonth(
+        mealSubscription = firebaseManager.subscribeToMonth(
                 currentUser.getId(), // Always use the Firebase UID
                 yearMonth,
-                new FirebaseManager.OnMealListListener() {
+                token,
+                new FirebaseManager.OnMonthChangeListener() {
                     @Override
-                    public void onSuccess(List<MealRecord> records) {
+                    public void onMonthChanged(MonthMealBitmap month, int changedDays) {
                         runOnUiThread(() -> {
-                            mealRecordsMap.clear();
-                            for (MealRecord r : records) {
-                                mealRecordsMap.put(r.getDate(), r);
-                            }
-                            buildCalendar();
-                            updateStats();
+                            if (token.isCancellationRequested()) return;
+                            // Our own taps are already applied to mealMonth.
+                            if (monthShown && month.equals(mealMonth)) return;
+                            monthShown = true;
+                            mealMonth = month;
+                            showMonth();
                         });
                     }
 
                     @Override
                     public void onFailure(String error) {
                         runOnUiThread(() -> {
+                            if (token.isCancellationRequested()) return;
                             Toast.makeText(MealManagementActivity.this, "Failed to load meals: " + error, Toast.LENGTH_LONG).show();
-                            buildCalendar();
-                            updateStats();
+                            mealMonth = firebaseManager.presentMonth(currentUser.getId(), yearMonth, MonthMealBitmap.EMPTY);
+                            showMonth();
                         });
                     }
                 }
         );
-    }
-
-    private void buildCalendar() {
-        gridCalendar.removeAllViews();
-        dateCardMap.clear();
-
-        tvMonthYear.setText(monthYearFormat.format(currentCalendar.getTime()));
-
-        String[] days = {"SUN", "MON", "TUE", "WED", "THU", "FRI", "SAT"};
-        for (String d : days) {
-            TextView header = new TextView(this);
-            header.setText(d);
-            header.setGravity(Gravity.CENTER);
-            header.setTextColor(Color.parseColor("#64748B"));
-            gridCalendar.addView(header);
-        }
 
-        Calendar cal = (Calendar) currentCalendar.clone();
-        cal.set(Calendar.DAY_OF_MONTH, 1);
-
-        int firstDay = cal.get(Calendar.DAY_OF_WEEK) - 1;
-        int daysInMonth = cal.getActualMaximum(Calendar.DAY_OF_MONTH);
-
-        for (int i = 0; i < firstDay; i++) {
-            gridCalendar.addView(new View(this));
-        }
+        mealRepository.getStoredMonth(currentUser.getId(), currentMonthKey, token)
+                .addOnSuccessListener(month -> {
+                    if (month == null || monthShown || token.isCancellationRequested()) return;
+                    monthShown = true;
+                    mealMonth = month;
+                    showMonth();
+                });
+    }
 
-        for (int day = 1; day <= daysInMonth; day++) {
-            cal.set(Calendar.DAY_OF_MONTH, day);
-            String date = dateFormat.format(cal.getTime());
+    // Same month: the view diffs against what it shows and redraws only the changed cells.
+    private void showMonth() {
+        tvMonthYear.setText(monthNames[DateKeys.monthOf(currentMonthKey) - 1] + " " + DateKeys.yearOf(currentMonthKey));
+        calendarMeals.setMonth(currentMonthKey, mealMonth);
+        updateStats();
+    }
 
-            CardView card = createDayCard(day, date);
-            dateCardMap.put(date, card);
-            gridCalendar.addView(card);
+    private void onDayTapped(int day) {
+        if (rangeStartDayKey != 0) {
+            int from = rangeStartDayKey;
+            rangeStartDayKey = 0;
+            chooseRangeEdit(from, DateKeys.dayKey(currentMonthKey, day));
+            return;
         }
+        toggleDay(day);
     }
 
-    private CardView createDayCard(int day, String date) {
-        CardView card = new CardView(this);
-        card.setRadius(8);
-        card.setCardElevation(2);
+    // Long press marks the first day; the next tap, in this or another month, ends the range.
+    private void startRange(int day) {
+        if (currentUser == null) return;
+        rangeStartDayKey = DateKeys.dayKey(currentMonthKey, day);
+        Toast.makeText(this, "Tap the last day", Toast.LENGTH_SHORT).show();
+    }
 
-        LinearLayout layout = new LinearLayout(this);
-        layout.setOrientation(LinearLayout.VERTICAL);
-        layout.setGravity(Gravity.CENTER);
+    private void chooseRangeEdit(int startDayKey, int endDayKey) {
+        if (currentUser == null) return;
+        int from = Math.min(startDayKey, endDayKey);
+        int to = Math.max(startDayKey, endDayKey);
+        int startMonthKey = DateKeys.monthKeyOf(startDayKey);
+        int weekday = (DateKeys.firstWeekday(startMonthKey) + DateKeys.dayOfMonth(startDayKey) - 1) % 7;
+        String weekdayName = new DateFormatSymbols(Locale.getDefault()).getWeekdays()[weekday + 1];
+        String userId = currentUser.getId();
+
+        String[] choices = {"Meal off", "Meal on", "Meal off every " + weekdayName};
+        new AlertDialog.Builder(this)
+                .setTitle(DateKeys.formatDay(from) + " to " + DateKeys.formatDay(to))
+                .setItems(choices, (dialog, which) -> {
+                    if (which == 2) {
+                        MealRule rule = new MealRule(null, from, to, MealRule.weekdayBit(weekday), MealStatus.MEAL_OFF);
+                        firebaseManager.addMealRule(userId, rule, new FirebaseManager.OnBatchOperationListener() {
+                            @Override
+                            public void onSuccess(int savedCount) {
+                                runOnUiThread(() -> Toast.makeText(MealManagementActivity.this,
+                                        "Meals off every " + weekdayName, Toast.LENGTH_SHORT).show());
+                            }
 
-        TextView tvDay = new TextView(this);
-        tvDay.setText(String.valueOf(day));
-        tvDay.setTextSize(18);
+                            @Override
+                            public void onFailure(String error) {
+                                runOnUiThread(() -> Toast.makeText(MealManagementActivity.this,
+                                        error, Toast.LENGTH_LONG).show());
+                            }
+                        });
+                        return;
+                    }
+                    // Queued like single taps; the live month repaints from the outbox.
+                    firebaseManager.queueMealRange(userId, from, to, which == 0 ? MealStatus.MEAL_OFF : MealStatus.MEAL_ON);
+                })
+                .setNegativeButton("Cancel", null)
+                .show();
+    }
 
-        TextView tvStatus = new TextView(this);
-        tvStatus.setTextSize(11);
+    // The resident's standing plans, oldest first; tapping one offers to delete it.
+    // The live month repaints itself once the rules listener sees the change.
+    private void showMealRules() {
+        if (currentUser == null) return;
+        String userId = currentUser.getId();
+        firebaseManager.loadMealRules(userId).addOnCompleteListener(this, loaded -> {
+            List<MealRule> rules = firebaseManager.getMealRules(userId);
+            if (rules.isEmpty()) {
+                Toast.makeText(this, "No meal plans", Toast.LENGTH_SHORT).show();
+                return;
+            }
+            String[] items = new String[rules.size()];
+            for (int i = 0; i < items.length; i++) {
+                items[i] = describeRule(rules.get(i));
+            }
+            new AlertDialog.Builder(this)
+                    .setTitle("Meal plans")
+                    .setItems(items, (dialog, which) -> confirmDeleteRule(userId, rules.get(which), items[which]))
+                    .setNegativeButton("Close", null)
+                    .show();
+        });
+    }
 
-        MealRecord record = mealRecordsMap.get(date);
-        String status = (record != null) ? record.getStatus() : "MEAL_ON";
+    private void confirmDeleteRule(String userId, MealRule rule, String description) {
+        if (rule.id == null) return;
+        new AlertDialog.Builder(this)
+                .setTitle("Delete meal plan?")
+                .setMessage(description)
+                .setPositiveButton("Delete", (dialog, which) ->
+                        firebaseManager.removeMealRule(userId, rule.id, new FirebaseManager.OnBatchOperationListener() {
+                            @Override
+                            public void onSuccess(int savedCount) {
+                                runOnUiThread(() -> Toast.makeText(MealManagementActivity.this,
+                                        "Meal plan deleted", Toast.LENGTH_SHORT).show());
+                            }
 
-        updateCardAppearance(card, tvStatus, status);
+                            @Override
+                            public void onFailure(String error) {
+                                runOnUiThread(() -> Toast.makeText(MealManagementActivity.this,
+                                        error, Toast.LENGTH_LONG).show());
+                            }
+                        }))
+                .setNegativeButton("Cancel", null)
+                .show();
+    }
 
-        card.setOnClickListener(v -> {
-            String currentStatus = "MEAL_ON";
-            if (mealRecordsMap.containsKey(date)) {
-                currentStatus = mealRecordsMap.get(date).getStatus();
+    // "Meal off every Friday, 2025-04-01 to 2025-06-30"
+    private static String describeRule(MealRule rule) {
+        StringBuilder text = new StringBuilder(rule.status == MealStatus.MEAL_OFF ? "Meal off" : "Meal on");
+        if (rule.weekdays == MealRule.EVERY_DAY) {
+            text.append(" every day");
+        } else {
+            String[] names = new DateFormatSymbols(Locale.getDefault()).getWeekdays();
+            String separator = " every ";
+            for (int weekday = 0; weekday < 7; weekday++) {
+                if ((rule.weekdays & MealRule.weekdayBit(weekday)) == 0) continue;
+                text.append(separator).append(names[weekday + 1]);
+                separator = ", ";
             }
+        }
+        return text.append(", ").append(DateKeys.formatDay(rule.fromDayKey))
+                .append(" to ").append(DateKeys.formatDay(rule.toDayKey)).toString();
+    }
 
-            String newStatus = getNextStatus(currentStatus);
+    private void toggleDay(int day) {
+        if (currentUser == null) return;
+        if ((firebaseManager.getHallClosedDays(currentMonthKey) & (1 << (day - 1))) != 0) {
+            Toast.makeText(this, "The hall is closed that day", Toast.LENGTH_SHORT).show();
+            return;
+        }
 
-            // CORRECT: Always use the Firebase UID (currentUser.getId()) when creating a new record.
-            MealRecord newRecord = new MealRecord(currentUser.getId(), date, newStatus);
-            mealRecordsMap.put(date, newRecord);
+        MealStatus newStatus = mealMonth.getOrDefault(day).next();
+        mealMonth = mealMonth.with(day, newStatus);
 
-            updateCardAppearance(card, tvStatus, newStatus);
-            updateStats();
-        });
+        String date = DateKeys.formatDay(DateKeys.dayKey(currentMonthKey, day));
 
-        layout.addView(tvDay);
-        layout.addView(tvStatus);
-        card.addView(layout);
+        // CORRECT: Always use the Firebase UID (currentUser.getId()) when creating a new record.
+        MealRecord newRecord = new MealRecord(currentUser.getId(), date, newStatus.name());
+        // Persisted right away; the outbox pushes it in the background.
+        firebaseManager.queueMealRecord(newRecord);
 
-        return card;
+        calendarMeals.setStatuses(mealMonth);
+        updateStats();
     }
 
-    private String getNextStatus(String s) {
-        switch (s) {
-            case "MEAL_ON": return "MEAL_OFF";
-            case "MEAL_OFF": return "HALL_CLOSED";
-            default: return "MEAL_ON";
-        }
+    private void updateStats() {
+        int daysInMonth = DateKeys.lengthOfMonth(currentMonthKey);
+        tvMealsOn.setText(String.valueOf(mealMonth.countEffective(MealStatus.MEAL_ON, daysInMonth)));
+        tvMealsOff.setText(String.valueOf(mealMonth.count(MealStatus.MEAL_OFF)));
+        tvHallClosed.setText(String.valueOf(mealMonth.count(MealStatus.HALL_CLOSED)));
     }
 
-    private void updateCardAppearance(CardView card, TextView tv, String s) {
-        // ... (Appearance code is correct, no changes needed)
-    }
+    // 1 January through today (or 31 December for past years), read from the
+    // resident's rollup: one small node however long the history.
+    private void loadYearStats() {
+        if (currentUser == null) return;
+        int year = DateKeys.yearOf(currentMonthKey);
+        statsYear = year;
+        int firstDay = DateKeys.dayKey(DateKeys.monthKey(year, 1), 1);
+        int lastDay = Math.min(DateKeys.dayKey(DateKeys.monthKey(year, 12), 31), DateKeys.today());
+        if (lastDay < firstDay) {
+            requests.cancel(YEAR_STATS_REQUEST);
+            tvYearMeals.setText("");
+            return;
+        }
 
-    private void updateStats() {
-        // ... (Stats calculation is correct, no changes needed)
+        CancellationToken token = requests.latest(YEAR_STATS_REQUEST);
+        firebaseManager.getMealStats(currentUser.getId(), firstDay, lastDay, token)
+                .addOnSuccessListener(counts -> {
+                    if (token.isCancellationRequested()) return;
+                    tvYearMeals.setText("Meals in " + year + ": " + counts.mealsOn + " on, " + counts.mealsOff + " off");
+                })
+                .addOnFailureListener(e -> {
+                    if (token.isCancellationRequested()) return;
+                    tvYearMeals.setText("");
+                });
     }
 
     private void saveAllChanges() {
@@ -270,45 +389,34 @@ public class MealManagementActivity extends AppCompatActivity {
         btnUpdateChanges.setEnabled(false);
         btnUpdateChanges.setText("SAVING...");
 
-        if (mealRecordsMap.isEmpty()) {
+        if (firebaseManager.getPendingMealCount(firebaseUser.getUid()) == 0) {
             Toast.makeText(this, "No changes to save.", Toast.LENGTH_SHORT).show();
             btnUpdateChanges.setEnabled(true);
             btnUpdateChanges.setText("UPDATE CHANGES");
             return;
         }
 
-        final int totalRecords = mealRecordsMap.values().size();
-        final int[] successCount = {0};
-        final int[] errorCount = {0};
-
-        for (MealRecord record : mealRecordsMap.values()) {
-            firebaseManager.saveMealRecord(record, new FirebaseManager.OnMealOperationListener() {
-                @Override
-                public void onSuccess(MealRecord savedRecord) {
-                    handleSaveCallback(true);
-                }
-
-                @Override
-                public void onFailure(String error) {
-                    handleSaveCallback(false);
-                }
-
-                private void handleSaveCallback(boolean success) {
-                    if (success) successCount[0]++; else errorCount[0]++;
+        // Pushes the queued edits now instead of waiting for the scheduled flush.
+        firebaseManager.flushPendingMeals(new FirebaseManager.OnBatchOperationListener() {
+            @Override
+            public void onSuccess(int savedCount) {
+                runOnUiThread(() -> {
+                    Toast.makeText(MealManagementActivity.this, "All changes saved successfully!", Toast.LENGTH_SHORT).show();
+                    loadYearStats();
+                    btnUpdateChanges.setEnabled(true);
+                    btnUpdateChanges.setText("UPDATE CHANGES");
+                });
+            }
 
-                    if (successCount[0] + errorCount[0] == totalRecords) {
-                        runOnUiThread(() -> {
-                            if (errorCount[0] > 0) {
-                                Toast.makeText(MealManagementActivity.this, "Saved with " + errorCount[0] + " errors.", Toast.LENGTH_LONG).show();
-                            } else {
-                                Toast.makeText(MealManagementActivity.this, "All changes saved successfully!", Toast.LENGTH_SHORT).show();
-                            }
-                            btnUpdateChanges.setEnabled(true);
-                            btnUpdateChanges.setText("UPDATE CHANGES");
-                        });
-                    }
-                }
-            });
-        }
+            @Override
+            public void onFailure(String error) {
+                runOnUiThread(() -> {
+                    // Nothing is lost; queued edits are retried by the outbox.
+                    Toast.makeText(MealManagementActivity.this, error, Toast.LENGTH_LONG).show();
+                    btnUpdateChanges.setEnabled(true);
+                    btnUpdateChanges.setText("UPDATE CHANGES");
+                });
+            }
+        });
     }
 }
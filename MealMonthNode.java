@@ -0,0 +1,53 @@
+package com.example.halldues;
+
+import com.google.firebase.database.DataSnapshot;
+import com.google.firebase.database.MutableData;
+
+import java.util.HashMap;
+import java.util.Map;
+
+// Codec between a month node and a MonthMealBitmap.
+// Current shape: meals/{uid}/{yyyy-MM} = {"bits": "<hex>", "updatedAt": <millis>}
+// Day buckets written before the bitmap layout ({"01": {"status": ...}, ...}) are
+// still decoded, and get replaced by the compact shape on the next write.
+final class MealMonthNode {
+
+    static final String BITS = "bits";
+    static final String UPDATED_AT = "updatedAt";
+
+    private MealMonthNode() {
+    }
+
+    static MonthMealBitmap decode(DataSnapshot snapshot) {
+        MonthMealBitmap month = MonthMealBitmap.fromHex(snapshot.child(BITS).getValue(String.class));
+        for (DataSnapshot day : snapshot.getChildren()) {
+            month = withBucketDay(month, day.getKey(), day.child("status").getValue(String.class));
+        }
+        return month;
+    }
+
+    static MonthMealBitmap decode(MutableData data) {
+        MonthMealBitmap month = MonthMealBitmap.fromHex(data.child(BITS).getValue(String.class));
+        for (MutableData day : data.getChildren()) {
+            month = withBucketDay(month, day.getKey(), day.child("status").getValue(String.class));
+        }
+        return month;
+    }
+
+    static Map<String, Object> toMap(MonthMealBitmap month) {
+        Map<String, Object> node = new HashMap<>();
+        node.put(BITS, month.toHex());
+        node.put(UPDATED_AT, System.currentTimeMillis());
+        return node;
+    }
+
+    private static MonthMealBitmap withBucketDay(MonthMealBitmap month, String key, String status) {
+        // Bucket days are keyed "01".."31"; "bits" and "updatedAt" are skipped here.
+        if (key == null || key.length() != 2
+                || !Character.isDigit(key.charAt(0)) || !Character.isDigit(key.charAt(1))) return month;
+        MealStatus s = MealStatus.fromName(status);
+        int day = Integer.parseInt(key);
+        if (s == null || day < 1 || day > 31 || month.isSet(day)) return month;
+        return month.with(day, s);
+    }
+}
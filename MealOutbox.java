@@ -0,0 +1,146 @@
+package com.example.halldues;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.util.SparseArray;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// Disk-backed queue of meal edits that have not reached the server yet.
+// Entries are keyed by "userId_date", so toggling the same day again replaces
+// the queued edit instead of adding another write. In memory each user's edits
+// sit in a SparseArray keyed by DateKeys day key, which keeps them sorted by date
+// and turns a month lookup into a binary-searched range scan.
+public class MealOutbox {
+
+    private static final String PREFS_NAME = "HallDuesOutbox";
+
+    private final SharedPreferences prefs;
+    private final Map<String, SparseArray<MealRecord>> pending = new HashMap<>();
+    private int size;
+
+    public MealOutbox(Context context) {
+        prefs = context.getApplicationContext().getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+        restore();
+    }
+
+    public void put(MealRecord record) {
+        int dayKey = DateKeys.parseDay(record.getDate());
+        if (dayKey < 0) return;
+
+        String key = record.getUserId() + "_" + record.getDate();
+        record.setId(key);
+        putInMemory(record.getUserId(), dayKey, record);
+        prefs.edit().putString(key, record.getStatus() + "|" + record.getTimestamp()).apply();
+    }
+
+    // Drops an entry only if it is still the exact edit that was sent, so a
+    // toggle made while a flush was in flight is kept for the next one.
+    public void remove(MealRecord sent) {
+        SparseArray<MealRecord> days = pending.get(sent.getUserId());
+        int dayKey = DateKeys.parseDay(sent.getDate());
+        if (days != null && days.get(dayKey) == sent) {
+            days.remove(dayKey);
+            size--;
+            if (days.size() == 0) pending.remove(sent.getUserId());
+            prefs.edit().remove(sent.getId()).apply();
+        }
+    }
+
+    // Drops everything queued for userId; returns how many edits that was.
+    public int clearUser(String userId) {
+        SparseArray<MealRecord> days = pending.remove(userId);
+        if (days == null) return 0;
+        SharedPreferences.Editor editor = prefs.edit();
+        for (int i = 0; i < days.size(); i++) {
+            editor.remove(days.valueAt(i).getId());
+        }
+        editor.apply();
+        size -= days.size();
+        return days.size();
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public int sizeForUser(String userId) {
+        SparseArray<MealRecord> days = pending.get(userId);
+        return days != null ? days.size() : 0;
+    }
+
+    public List<MealRecord> getForUser(String userId) {
+        SparseArray<MealRecord> days = pending.get(userId);
+        List<MealRecord> list = new ArrayList<>(days != null ? days.size() : 0);
+        if (days == null) return list;
+        for (int i = 0; i < days.size(); i++) {
+            list.add(days.valueAt(i));
+        }
+        return list;
+    }
+
+    public MonthMealBitmap getMonth(String userId, int monthKey) {
+        SparseArray<MealRecord> days = pending.get(userId);
+        if (days == null) return MonthMealBitmap.EMPTY;
+
+        int first = DateKeys.dayKey(monthKey, 1);
+        int last = DateKeys.dayKey(monthKey, 31);
+        MonthMealBitmap month = MonthMealBitmap.EMPTY;
+        for (int i = lowerBound(days, first); i < days.size() && days.keyAt(i) <= last; i++) {
+            MealStatus status = MealStatus.fromName(days.valueAt(i).getStatus());
+            if (status != null) {
+                month = month.with(DateKeys.dayOfMonth(days.keyAt(i)), status);
+            }
+        }
+        return month;
+    }
+
+    // Index of the first key >= dayKey.
+    private static int lowerBound(SparseArray<MealRecord> days, int dayKey) {
+        int lo = 0;
+        int hi = days.size();
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (days.keyAt(mid) < dayKey) lo = mid + 1;
+            else hi = mid;
+        }
+        return lo;
+    }
+
+    private void putInMemory(String userId, int dayKey, MealRecord record) {
+        SparseArray<MealRecord> days = pending.get(userId);
+        if (days == null) {
+            days = new SparseArray<>();
+            pending.put(userId, days);
+        }
+        if (days.get(dayKey) == null) size++;
+        days.put(dayKey, record);
+    }
+
+    private void restore() {
+        for (Map.Entry<String, ?> e : prefs.getAll().entrySet()) {
+            String key = e.getKey();
+            Object value = e.getValue();
+            // key is "userId_yyyy-MM-dd", value is "STATUS|timestamp"
+            if (!(value instanceof String) || key.length() <= 11) continue;
+            int dayKey = DateKeys.parseDay(key.substring(key.length() - 10));
+            if (dayKey < 0) continue;
+            String[] parts = ((String) value).split("\\|");
+
+            MealRecord r = new MealRecord();
+            r.setId(key);
+            r.setUserId(key.substring(0, key.length() - 11));
+            r.setDate(key.substring(key.length() - 10));
+            r.setStatus(parts[0]);
+            r.setTimestamp(parts.length > 1 ? Long.parseLong(parts[1]) : 0L);
+            putInMemory(r.getUserId(), dayKey, r);
+        }
+    }
+}
@@ -0,0 +1,19 @@
+package com.example.halldues;
+
+import android.util.SparseArray;
+
+import com.google.android.gms.tasks.CancellationToken;
+import com.google.android.gms.tasks.Task;
+
+// Read side of a resident's meal history. Months are DateKeys month keys, days are
+// day keys; results include edits still waiting in the outbox. Tasks complete on
+// the main thread.
+public interface MealRepository {
+
+    Task<MonthMealBitmap> getMonth(String userId, int monthKey, CancellationToken token);
+
+    // fromMonthKey..toMonthKey inclusive, keyed by month key; a month that could not
+    // be loaded is left out.
+    Task<SparseArray<MonthMealBitmap>> getMonths(String userId, int fromMonthKey, int toMonthKey,
+                                                 CancellationToken token);
+}
@@ -0,0 +1,64 @@
+package com.example.halldues;
+
+import androidx.annotation.Nullable;
+
+import java.util.List;
+
+// A standing meal plan: status on the days from fromDayKey to toDayKey (day keys,
+// inclusive) whose weekday is in weekdays (bit 0 = Sunday ... bit 6 = Saturday).
+// "Every Friday off this semester" is one rule of a few bytes; it is expanded into
+// a month only when that month is read. Immutable.
+public final class MealRule {
+
+    public static final int EVERY_DAY = 0x7F;
+
+    @Nullable
+    public final String id; // database key; null until saved
+    public final int fromDayKey;
+    public final int toDayKey;
+    public final int weekdays;
+    public final MealStatus status;
+
+    public MealRule(@Nullable String id, int fromDayKey, int toDayKey, int weekdays, MealStatus status) {
+        this.id = id;
+        this.fromDayKey = fromDayKey;
+        this.toDayKey = toDayKey;
+        this.weekdays = weekdays & EVERY_DAY;
+        this.status = status;
+    }
+
+    public static int weekdayBit(int weekday) {
+        return 1 << weekday;
+    }
+
+    // Bit (day - 1) for each day of the month the rule covers.
+    public int daysIn(int monthKey) {
+        int first = Math.max(fromDayKey, DateKeys.dayKey(monthKey, 1));
+        int last = Math.min(toDayKey, DateKeys.dayKey(monthKey, DateKeys.lengthOfMonth(monthKey)));
+        if (first > last) return 0;
+
+        int weekday = (DateKeys.firstWeekday(monthKey) + DateKeys.dayOfMonth(first) - 1) % 7;
+        int mask = 0;
+        for (int day = DateKeys.dayOfMonth(first); day <= DateKeys.dayOfMonth(last); day++) {
+            if ((weekdays & (1 << weekday)) != 0) mask |= 1 << (day - 1);
+            weekday = weekday == 6 ? 0 : weekday + 1;
+        }
+        return mask;
+    }
+
+    // The month as the rules alone would have it; rules are in creation order and a
+    // later rule wins where two cover the same day.
+    public static MonthMealBitmap expand(List<MealRule> rules, int monthKey) {
+        MonthMealBitmap month = MonthMealBitmap.EMPTY;
+        for (MealRule rule : rules) {
+            month = month.withDays(rule.daysIn(monthKey), rule.status);
+        }
+        return month;
+    }
+
+    @Override
+    public String toString() {
+        return "MealRule{" + id + " " + fromDayKey + ".." + toDayKey
+                + " weekdays=" + Integer.toBinaryString(weekdays) + " " + status + "}";
+    }
+}
@@ -0,0 +1,58 @@
+package com.example.halldues;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for MealRule.
+ */
+public class MealRuleTest {
+
+    private static final int MAY_2025 = DateKeys.monthKey(2025, 5); // 1 May 2025 was a Thursday
+    private static final int FRIDAY = MealRule.weekdayBit(5);
+
+    @Test
+    public void daysIn_everyFridayOfTheMonth() {
+        MealRule rule = new MealRule(null, 20250101, 20251231, FRIDAY, MealStatus.MEAL_OFF);
+        int fridays = (1 << 1) | (1 << 8) | (1 << 15) | (1 << 22) | (1 << 29); // 2, 9, 16, 23, 30
+        assertEquals(fridays, rule.daysIn(MAY_2025));
+    }
+
+    @Test
+    public void daysIn_clampsToTheRuleSpan() {
+        MealRule exams = new MealRule(null, 20250428, 20250510, MealRule.EVERY_DAY, MealStatus.MEAL_OFF);
+        assertEquals((1 << 10) - 1, exams.daysIn(MAY_2025));
+        assertEquals(0, exams.daysIn(MAY_2025 + 1));
+        assertEquals(0b111 << 27, exams.daysIn(MAY_2025 - 1));
+    }
+
+    @Test
+    public void expand_laterRuleWins() {
+        MealRule off = new MealRule("a", 20250501, 20250531, MealRule.EVERY_DAY, MealStatus.MEAL_OFF);
+        MealRule fridaysOn = new MealRule("b", 20250501, 20250531, FRIDAY, MealStatus.MEAL_ON);
+
+        MonthMealBitmap month = MealRule.expand(Arrays.asList(off, fridaysOn), MAY_2025);
+        assertEquals(MealStatus.MEAL_OFF, month.get(1));
+        assertEquals(MealStatus.MEAL_ON, month.get(2));
+        assertEquals(26, month.count(MealStatus.MEAL_OFF));
+        assertEquals(5, month.count(MealStatus.MEAL_ON));
+
+        assertEquals(MonthMealBitmap.EMPTY, MealRule.expand(Collections.emptyList(), MAY_2025));
+    }
+
+    @Test
+    public void withDays_replacesOnlyTheMaskedDays() {
+        MonthMealBitmap month = MonthMealBitmap.EMPTY
+                .with(1, MealStatus.HALL_CLOSED)
+                .with(2, MealStatus.MEAL_OFF);
+        MonthMealBitmap updated = month.withDays(0b110, MealStatus.MEAL_ON);
+        assertEquals(MealStatus.HALL_CLOSED, updated.get(1));
+        assertEquals(MealStatus.MEAL_ON, updated.get(2));
+        assertEquals(MealStatus.MEAL_ON, updated.get(3));
+        assertNull(updated.get(4));
+    }
+}
@@ -0,0 +1,40 @@
+package com.example.halldues;
+
+import androidx.annotation.Nullable;
+
+public enum MealStatus {
+    MEAL_ON(1),
+    MEAL_OFF(2),
+    HALL_CLOSED(3);
+
+    // 2-bit code used by MonthMealBitmap; 0 means "not set".
+    final int code;
+
+    MealStatus(int code) {
+        this.code = code;
+    }
+
+    private static final MealStatus[] BY_CODE = {null, MEAL_ON, MEAL_OFF, HALL_CLOSED};
+
+    @Nullable
+    public static MealStatus fromCode(int code) {
+        return BY_CODE[code & 0b11];
+    }
+
+    @Nullable
+    public static MealStatus fromName(@Nullable String name) {
+        if (name == null) return null;
+        switch (name) {
+            case "MEAL_ON": return MEAL_ON;
+            case "MEAL_OFF": return MEAL_OFF;
+            case "HALL_CLOSED": return HALL_CLOSED;
+            default: return null;
+        }
+    }
+
+    // Tap cycle on the calendar: ON <-> OFF. Closures come from the hall calendar;
+    // a day a resident marked closed before that goes back to ON.
+    public MealStatus next() {
+        return this == MEAL_ON ? MEAL_OFF : MEAL_ON;
+    }
+}
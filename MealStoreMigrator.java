@@ -0,0 +1,132 @@
+package com.example.halldues;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.google.firebase.database.DataSnapshot;
+import com.google.firebase.database.DatabaseError;
+import com.google.firebase.database.DatabaseReference;
+import com.google.firebase.database.FirebaseDatabase;
+import com.google.firebase.database.MutableData;
+import com.google.firebase.database.Transaction;
+import com.google.firebase.database.ValueEventListener;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+// One-shot move of a user's legacy flat records (meals/{userId_yyyy-MM-dd})
+// into the per-month bitmap nodes (meals/{uid}/{yyyy-MM}). Day buckets from the
+// intermediate meals/{uid}/{yyyy-MM}/{dd} layout are converted by MealMonthNode
+// on their next read/write and need no separate pass.
+public class MealStoreMigrator {
+
+    private static final String PREFS_NAME = "HallDuesMigrations";
+    private static final String KEY_PREFIX = "mealBitmaps_";
+
+    private final SharedPreferences prefs;
+    private final DatabaseReference mealsRef;
+
+    public interface OnMigrationListener {
+        void onComplete(int migratedCount);
+        void onFailure(String error);
+    }
+
+    public MealStoreMigrator(Context context) {
+        // Kept apart from the session prefs so logout does not re-arm the migration.
+        prefs = context.getApplicationContext().getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+        mealsRef = FirebaseDatabase.getInstance().getReference("meals");
+    }
+
+    public void migrateIfNeeded(String userId, OnMigrationListener listener) {
+        if (prefs.getBoolean(KEY_PREFIX + userId, false)) {
+            listener.onComplete(0);
+            return;
+        }
+
+        // Legacy records carry a userId field; month nodes sit under meals/{uid} and never match.
+        mealsRef.orderByChild("userId").equalTo(userId).addListenerForSingleValueEvent(new ValueEventListener() {
+            @Override
+            public void onDataChange(@NonNull DataSnapshot snapshot) {
+                Map<String, List<MealRecord>> byMonth = new TreeMap<>();
+                Map<String, Object> deletes = new HashMap<>();
+                for (DataSnapshot s : snapshot.getChildren()) {
+                    MealRecord r = SnapshotMappers.mealRecordFromSnapshot(s);
+                    String date = r != null ? r.getDate() : null;
+                    if (date == null || date.length() != 10) continue;
+
+                    String yearMonth = date.substring(0, 7);
+                    List<MealRecord> monthRecords = byMonth.get(yearMonth);
+                    if (monthRecords == null) {
+                        monthRecords = new ArrayList<>();
+                        byMonth.put(yearMonth, monthRecords);
+                    }
+                    monthRecords.add(r);
+                    deletes.put(s.getKey(), null);
+                }
+
+                if (deletes.isEmpty()) {
+                    markDone(userId);
+                    listener.onComplete(0);
+                    return;
+                }
+                mergeMonths(userId, new ArrayList<>(byMonth.entrySet()), 0, deletes, listener);
+            }
+
+            @Override
+            public void onCancelled(@NonNull DatabaseError error) {
+                listener.onFailure("Database error: " + error.getMessage());
+            }
+        });
+    }
+
+    // Folds each month of legacy records into its bitmap node, then deletes the legacy
+    // records in one update. Days already in the node are newer and win, so a run
+    // interrupted between the two steps can simply be repeated.
+    private void mergeMonths(String userId, List<Map.Entry<String, List<MealRecord>>> months, int index,
+                             Map<String, Object> deletes, OnMigrationListener listener) {
+        if (index == months.size()) {
+            mealsRef.updateChildren(deletes)
+                    .addOnSuccessListener(v -> {
+                        markDone(userId);
+                        listener.onComplete(deletes.size());
+                    })
+                    .addOnFailureListener(e -> listener.onFailure("Migration failed: " + e.getMessage()));
+            return;
+        }
+
+        MonthMealBitmap legacy = MonthMealBitmap.fromRecords(months.get(index).getValue());
+        mealsRef.child(userId).child(months.get(index).getKey()).runTransaction(new Transaction.Handler() {
+            @NonNull
+            @Override
+            public Transaction.Result doTransaction(@NonNull MutableData data) {
+                data.setValue(MealMonthNode.toMap(legacy.overlay(MealMonthNode.decode(data))));
+                return Transaction.success(data);
+            }
+
+            @Override
+            public void onComplete(@Nullable DatabaseError error, boolean committed, @Nullable DataSnapshot snapshot) {
+                if (error != null || !committed) {
+                    listener.onFailure("Migration failed: " + (error != null ? error.getMessage() : "transaction aborted"));
+                } else {
+                    // The month cache and the on-device store may hold this month as it
+                    // was before the merge (the startup prefetch reads it early).
+                    if (snapshot != null) {
+                        FirebaseManager.getInstance().replaceCachedMonth(userId, months.get(index).getKey(),
+                                MealMonthNode.decode(snapshot));
+                    }
+                    mergeMonths(userId, months, index + 1, deletes, listener);
+                }
+            }
+        });
+    }
+
+    private void markDone(String userId) {
+        prefs.edit().putBoolean(KEY_PREFIX + userId, true).apply();
+    }
+}
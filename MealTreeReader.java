@@ -0,0 +1,160 @@
+import java.io.IOException;
+
+// Walks a meals/ tree from an export in every shape the app has stored:
+//   meals/{uid}/{yyyy-MM} = {bits, updatedAt}, possibly with leftover "01".."31" day
+//                           buckets ({status}); bits win over buckets
+//   meals/{uid}_{yyyy-MM-dd} = legacy flat MealRecord
+// Keys come in sorted order, and uids have a fixed length, so each user's month
+// nodes and legacy records are contiguous.
+final class MealTreeReader {
+
+    static final int CODE_ON = 1;
+    static final int CODE_OFF = 2;
+    static final int CODE_CLOSED = 3;
+
+    interface Visitor {
+        // Months not accepted are skipped without decoding.
+        boolean acceptMonth(String yearMonth);
+
+        void month(String userId, String yearMonth, long bits, long updatedAt) throws IOException;
+
+        // code is 0 for a missing or unknown status.
+        void legacyRecord(String userId, String date, int code, long timestamp) throws IOException;
+    }
+
+    private MealTreeReader() {
+    }
+
+    // json is positioned at the meals object.
+    static void read(JsonStreamReader json, Visitor visitor) throws IOException {
+        json.beginObject();
+        while (json.hasNext()) {
+            String key = json.nextName();
+            if (isLegacyKey(key)) {
+                readLegacyRecord(json, key, visitor);
+                continue;
+            }
+
+            json.beginObject();
+            while (json.hasNext()) {
+                String yearMonth = json.nextName();
+                if (visitor.acceptMonth(yearMonth) && json.peek() == JsonStreamReader.Token.BEGIN_OBJECT) {
+                    readMonthNode(json, key, yearMonth, visitor);
+                } else {
+                    json.skipValue();
+                }
+            }
+            json.endObject();
+        }
+        json.endObject();
+    }
+
+    // "{uid}_yyyy-MM-dd"
+    private static boolean isLegacyKey(String key) {
+        int n = key.length();
+        return n > 11 && key.charAt(n - 11) == '_' && key.charAt(n - 6) == '-' && key.charAt(n - 3) == '-';
+    }
+
+    private static void readLegacyRecord(JsonStreamReader json, String key, Visitor visitor) throws IOException {
+        String date = key.substring(key.length() - 10);
+        if (!visitor.acceptMonth(date.substring(0, 7))) {
+            json.skipValue();
+            return;
+        }
+        int code = 0;
+        long timestamp = 0;
+        json.beginObject();
+        while (json.hasNext()) {
+            String field = json.nextName();
+            JsonStreamReader.Token token = json.peek();
+            if (field.equals("status") && token == JsonStreamReader.Token.STRING) {
+                code = statusCode(json.nextString());
+            } else if (field.equals("timestamp") && token == JsonStreamReader.Token.NUMBER) {
+                timestamp = json.nextLong();
+            } else {
+                json.skipValue();
+            }
+        }
+        json.endObject();
+        visitor.legacyRecord(key.substring(0, key.length() - 11), date, code, timestamp);
+    }
+
+    private static void readMonthNode(JsonStreamReader json, String userId, String yearMonth,
+                                      Visitor visitor) throws IOException {
+        long bits = 0;
+        long buckets = 0;
+        long updatedAt = 0;
+        json.beginObject();
+        while (json.hasNext()) {
+            String field = json.nextName();
+            JsonStreamReader.Token token = json.peek();
+            if (field.equals("bits") && token == JsonStreamReader.Token.STRING) {
+                bits = Long.parseUnsignedLong(json.nextString(), 16);
+            } else if (field.equals("updatedAt") && token == JsonStreamReader.Token.NUMBER) {
+                updatedAt = json.nextLong();
+            } else if (isDayBucket(field) && token == JsonStreamReader.Token.BEGIN_OBJECT) {
+                int code = readBucketStatus(json);
+                int day = Integer.parseInt(field);
+                if (code != 0 && day >= 1 && day <= 31) buckets = withDay(buckets, day, code);
+            } else {
+                json.skipValue();
+            }
+        }
+        json.endObject();
+        visitor.month(userId, yearMonth, overlay(buckets, bits), updatedAt);
+    }
+
+    private static boolean isDayBucket(String field) {
+        return field.length() == 2 && field.charAt(0) >= '0' && field.charAt(0) <= '9'
+                && field.charAt(1) >= '0' && field.charAt(1) <= '9';
+    }
+
+    private static int readBucketStatus(JsonStreamReader json) throws IOException {
+        int code = 0;
+        json.beginObject();
+        while (json.hasNext()) {
+            if (json.nextName().equals("status") && json.peek() == JsonStreamReader.Token.STRING) {
+                code = statusCode(json.nextString());
+            } else {
+                json.skipValue();
+            }
+        }
+        json.endObject();
+        return code;
+    }
+
+    // ================= 2-BIT DAY CODES =================
+    // Same layout as the app's MonthMealBitmap: day 1 in the lowest two bits.
+    static int statusCode(String status) {
+        switch (status) {
+            case "MEAL_ON": return CODE_ON;
+            case "MEAL_OFF": return CODE_OFF;
+            case "HALL_CLOSED": return CODE_CLOSED;
+            default: return 0;
+        }
+    }
+
+    static String statusName(int code) {
+        switch (code) {
+            case CODE_ON: return "MEAL_ON";
+            case CODE_OFF: return "MEAL_OFF";
+            case CODE_CLOSED: return "HALL_CLOSED";
+            default: return null;
+        }
+    }
+
+    static int dayCode(long bits, int day) {
+        return (int) (bits >>> ((day - 1) * 2)) & 0b11;
+    }
+
+    static long withDay(long bits, int day, int code) {
+        int shift = (day - 1) * 2;
+        return (bits & ~(0b11L << shift)) | ((long) code << shift);
+    }
+
+    // Days set in top win.
+    static long overlay(long base, long top) {
+        long low = (top | (top >>> 1)) & 0x5555555555555555L;
+        return (base & ~(low | (low << 1))) | top;
+    }
+}
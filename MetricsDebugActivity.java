@@ -0,0 +1,66 @@
+package com.example.halldues;
+
+import android.content.Intent;
+import android.os.Bundle;
+import android.util.Log;
+import android.widget.Button;
+import android.widget.TextView;
+
+import androidx.appcompat.app.AppCompatActivity;
+
+// Support screen (long-press the name on the dashboard): the operation metrics
+// and month cache counters, with a share button so a resident can send them along
+// with a report.
+public class MetricsDebugActivity extends AppCompatActivity {
+
+    private static final String TAG = "HallDuesMetrics";
+
+    private FirebaseManager firebaseManager;
+    private TextView tvMetrics;
+
+    @Override
+    protected void onCreate(Bundle savedInstanceState) {
+        super.onCreate(savedInstanceState);
+        setContentView(R.layout.activity_metrics_debug);
+
+        firebaseManager = FirebaseManager.getInstance();
+        tvMetrics = findViewById(R.id.tvMetrics);
+
+        Button btnDumpMetrics = findViewById(R.id.btnDumpMetrics);
+        btnDumpMetrics.setOnClickListener(v -> shareSnapshot());
+
+        Button btnResetMetrics = findViewById(R.id.btnResetMetrics);
+        btnResetMetrics.setOnClickListener(v -> {
+            firebaseManager.getMetrics().reset();
+            refresh();
+        });
+    }
+
+    @Override
+    protected void onResume() {
+        super.onResume();
+        refresh();
+    }
+
+    private void refresh() {
+        tvMetrics.setText(buildSnapshot());
+    }
+
+    private String buildSnapshot() {
+        return firebaseManager.getMetrics().dump()
+                + "\nMonth cache: " + firebaseManager.getMonthCacheStats() + "\n";
+    }
+
+    // Also written to logcat, so it turns up in bug reports.
+    private void shareSnapshot() {
+        String snapshot = buildSnapshot();
+        Log.i(TAG, snapshot);
+        tvMetrics.setText(snapshot);
+
+        Intent send = new Intent(Intent.ACTION_SEND);
+        send.setType("text/plain");
+        send.putExtra(Intent.EXTRA_SUBJECT, "Hall Dues metrics");
+        send.putExtra(Intent.EXTRA_TEXT, snapshot);
+        startActivity(Intent.createChooser(send, "Send metrics"));
+    }
+}
@@ -0,0 +1,84 @@
+package com.example.halldues;
+
+import androidx.annotation.Nullable;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+// Bounded LRU of server-side month bitmaps keyed by (uid, yyyy-MM).
+// A cached month is 8 bytes of payload, so a year of navigation fits easily.
+public class MonthCache {
+
+    private final int capacity;
+    private final LinkedHashMap<String, MonthMealBitmap> months;
+
+    private long hits;
+    private long misses;
+    private long evictions;
+
+    public MonthCache(int capacity) {
+        this.capacity = capacity;
+        // accessOrder = true turns the map into an LRU list
+        this.months = new LinkedHashMap<String, MonthMealBitmap>(capacity, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, MonthMealBitmap> eldest) {
+                if (size() > MonthCache.this.capacity) {
+                    evictions++;
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    @Nullable
+    public synchronized MonthMealBitmap get(String userId, String yearMonth) {
+        MonthMealBitmap month = months.get(key(userId, yearMonth));
+        if (month != null) hits++;
+        else misses++;
+        return month;
+    }
+
+    // Lookup that does not count towards the stats or refresh recency (used by prefetch).
+    public synchronized boolean contains(String userId, String yearMonth) {
+        return months.containsKey(key(userId, yearMonth));
+    }
+
+    public synchronized void put(String userId, String yearMonth, MonthMealBitmap month) {
+        months.put(key(userId, yearMonth), month);
+    }
+
+    public synchronized void clear() {
+        months.clear();
+    }
+
+    public synchronized Stats getStats() {
+        return new Stats(hits, misses, evictions, months.size(), capacity);
+    }
+
+    private static String key(String userId, String yearMonth) {
+        return userId + "/" + yearMonth;
+    }
+
+    public static class Stats {
+        public final long hits;
+        public final long misses;
+        public final long evictions;
+        public final int size;
+        public final int capacity;
+
+        Stats(long hits, long misses, long evictions, int size, int capacity) {
+            this.hits = hits;
+            this.misses = misses;
+            this.evictions = evictions;
+            this.size = size;
+            this.capacity = capacity;
+        }
+
+        @Override
+        public String toString() {
+            return "hits=" + hits + " misses=" + misses + " evictions=" + evictions
+                    + " size=" + size + "/" + capacity;
+        }
+    }
+}
@@ -0,0 +1,207 @@
+package com.example.halldues;
+
+import androidx.annotation.Nullable;
+
+import java.util.ArrayList;
+import java.util.List;
+
+// A whole month of meal statuses packed into one long: 2 bits per day, day 1 in
+// the lowest bits. Code 0 means the resident never set that day (shown as MEAL_ON).
+// Instances are immutable; with() returns a new bitmap.
+public final class MonthMealBitmap {
+
+    public static final MonthMealBitmap EMPTY = new MonthMealBitmap(0L);
+
+    private static final long LOW_BITS = 0x5555555555555555L;
+    private static final int MAX_DAYS = 31;
+
+    private final long bits;
+
+    private MonthMealBitmap(long bits) {
+        this.bits = bits;
+    }
+
+    public static MonthMealBitmap of(long bits) {
+        return bits == 0L ? EMPTY : new MonthMealBitmap(bits);
+    }
+
+    public long getBits() {
+        return bits;
+    }
+
+    @Nullable
+    public MealStatus get(int day) {
+        return MealStatus.fromCode((int) (bits >>> shift(day)));
+    }
+
+    public MealStatus getOrDefault(int day) {
+        MealStatus status = get(day);
+        return status != null ? status : MealStatus.MEAL_ON;
+    }
+
+    public boolean isSet(int day) {
+        return ((bits >>> shift(day)) & 0b11L) != 0;
+    }
+
+    // Passing null clears the day back to "not set".
+    public MonthMealBitmap with(int day, @Nullable MealStatus status) {
+        int s = shift(day);
+        long code = status != null ? status.code : 0;
+        return of((bits & ~(0b11L << s)) | (code << s));
+    }
+
+    // Days set in top win; every other day keeps this bitmap's value.
+    public MonthMealBitmap overlay(MonthMealBitmap top) {
+        long setPairs = pairMask(top.bits);
+        return of((bits & ~setPairs) | top.bits);
+    }
+
+    // Every day in dayMask (bit day - 1) set to status.
+    public MonthMealBitmap withDays(int dayMask, MealStatus status) {
+        if (dayMask == 0) return this;
+        long low = expand(dayMask);
+        long pairs = low | (low << 1);
+        return of((bits & ~pairs) | (low * status.code));
+    }
+
+    // Days in dayMask (bit day - 1) read as HALL_CLOSED whatever the resident set.
+    public MonthMealBitmap withClosedDays(int dayMask) {
+        return withDays(dayMask, MealStatus.HALL_CLOSED);
+    }
+
+    // A month as screens show it: days set on the server or still pending (newer)
+    // win over the planned (rule) days, and closed days (bit day - 1) win over all.
+    public static MonthMealBitmap present(MonthMealBitmap planned, MonthMealBitmap server,
+                                          MonthMealBitmap pending, int closedDays) {
+        return planned.overlay(server.overlay(pending)).withClosedDays(closedDays);
+    }
+
+    // Number of days explicitly set to the given status.
+    public int count(MealStatus status) {
+        return Long.bitCount(matchLowBits(status));
+    }
+
+    // Same as count(), but unset days up to daysInMonth are counted as MEAL_ON.
+    public int countEffective(MealStatus status, int daysInMonth) {
+        int explicit = count(status);
+        if (status != MealStatus.MEAL_ON) return explicit;
+        int setDays = Long.bitCount((bits | (bits >>> 1)) & LOW_BITS & monthMask(daysInMonth));
+        return explicit + (daysInMonth - setDays);
+    }
+
+    // Bit (day - 1) is set for every day that has an explicit status.
+    public int setDays() {
+        return compress((bits | (bits >>> 1)) & LOW_BITS);
+    }
+
+    // Bit (day - 1) is set for every day whose value differs from other.
+    public int diff(MonthMealBitmap other) {
+        long x = bits ^ other.bits;
+        return compress((x | (x >>> 1)) & LOW_BITS);
+    }
+
+    // ================= WIRE FORMAT =================
+    // Firebase stores numbers as doubles (53-bit mantissa), so the 62 used bits
+    // travel as a lowercase hex string instead of a number.
+    public String toHex() {
+        return Long.toHexString(bits);
+    }
+
+    public static MonthMealBitmap fromHex(@Nullable String hex) {
+        if (hex == null || hex.isEmpty()) return EMPTY;
+        return of(Long.parseUnsignedLong(hex, 16));
+    }
+
+    // ================= MealRecord CODECS =================
+    // records must all belong to the same month; dates are "yyyy-MM-dd".
+    public static MonthMealBitmap fromRecords(Iterable<MealRecord> records) {
+        MonthMealBitmap month = EMPTY;
+        for (MealRecord r : records) {
+            MealStatus status = MealStatus.fromName(r.getStatus());
+            int dayKey = DateKeys.parseDay(r.getDate());
+            if (status == null || dayKey < 0) continue;
+            month = month.with(DateKeys.dayOfMonth(dayKey), status);
+        }
+        return month;
+    }
+
+    // Only days with an explicit status produce a record, as in the old layout.
+    public List<MealRecord> toRecords(String userId, String yearMonth) {
+        int monthKey = DateKeys.parseMonth(yearMonth);
+        List<MealRecord> list = new ArrayList<>();
+        for (int day = 1; day <= MAX_DAYS; day++) {
+            MealStatus status = get(day);
+            if (status == null) continue;
+
+            MealRecord r = new MealRecord();
+            r.setUserId(userId);
+            r.setDate(DateKeys.formatDay(DateKeys.dayKey(monthKey, day)));
+            r.setId(userId + "_" + r.getDate());
+            r.setStatus(status.name());
+            list.add(r);
+        }
+        return list;
+    }
+
+    private long matchLowBits(MealStatus status) {
+        long lo = bits & LOW_BITS;
+        long hi = (bits >>> 1) & LOW_BITS;
+        switch (status) {
+            case MEAL_ON: return lo & ~hi;
+            case MEAL_OFF: return hi & ~lo;
+            default: return lo & hi;
+        }
+    }
+
+    private static long pairMask(long bits) {
+        long low = (bits | (bits >>> 1)) & LOW_BITS;
+        return low | (low << 1);
+    }
+
+    private static long monthMask(int daysInMonth) {
+        return daysInMonth >= 32 ? -1L : (1L << (daysInMonth * 2)) - 1;
+    }
+
+    // Packs every other bit (one per day) into an int.
+    private static int compress(long lowBits) {
+        int mask = 0;
+        while (lowBits != 0) {
+            int bit = Long.numberOfTrailingZeros(lowBits);
+            mask |= 1 << (bit >>> 1);
+            lowBits &= lowBits - 1;
+        }
+        return mask;
+    }
+
+    // Inverse of compress(): bit n of mask becomes bit 2n.
+    private static long expand(int mask) {
+        long low = 0;
+        while (mask != 0) {
+            low |= 1L << (Integer.numberOfTrailingZeros(mask) * 2);
+            mask &= mask - 1;
+        }
+        return low;
+    }
+
+    private static int shift(int day) {
+        if (day < 1 || day > MAX_DAYS) {
+            throw new IllegalArgumentException("Day out of range: " + day);
+        }
+        return (day - 1) * 2;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return o instanceof MonthMealBitmap && ((MonthMealBitmap) o).bits == bits;
+    }
+
+    @Override
+    public int hashCode() {
+        return Long.hashCode(bits);
+    }
+
+    @Override
+    public String toString() {
+        return "MonthMealBitmap{" + toHex() + "}";
+    }
+}
@@ -0,0 +1,136 @@
+package com.example.halldues;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for the 2-bit-per-day month encoding.
+ */
+public class MonthMealBitmapTest {
+
+    @Test
+    public void unsetDays_defaultToMealOn() {
+        MonthMealBitmap month = MonthMealBitmap.EMPTY;
+        assertNull(month.get(1));
+        assertFalse(month.isSet(31));
+        assertEquals(MealStatus.MEAL_ON, month.getOrDefault(15));
+    }
+
+    @Test
+    public void with_setsAndClearsSingleDay() {
+        MonthMealBitmap month = MonthMealBitmap.EMPTY
+                .with(1, MealStatus.MEAL_OFF)
+                .with(31, MealStatus.HALL_CLOSED)
+                .with(2, MealStatus.MEAL_ON);
+
+        assertEquals(MealStatus.MEAL_OFF, month.get(1));
+        assertEquals(MealStatus.MEAL_ON, month.get(2));
+        assertEquals(MealStatus.HALL_CLOSED, month.get(31));
+        assertNull(month.get(3));
+
+        MonthMealBitmap cleared = month.with(1, null);
+        assertNull(cleared.get(1));
+        assertEquals(MealStatus.HALL_CLOSED, cleared.get(31));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void dayOutOfRange_throws() {
+        MonthMealBitmap.EMPTY.get(32);
+    }
+
+    @Test
+    public void counts_treatUnsetAsMealOn() {
+        MonthMealBitmap month = MonthMealBitmap.EMPTY
+                .with(3, MealStatus.MEAL_OFF)
+                .with(4, MealStatus.MEAL_OFF)
+                .with(5, MealStatus.HALL_CLOSED)
+                .with(6, MealStatus.MEAL_ON);
+
+        assertEquals(1, month.count(MealStatus.MEAL_ON));
+        assertEquals(2, month.count(MealStatus.MEAL_OFF));
+        assertEquals(1, month.count(MealStatus.HALL_CLOSED));
+        assertEquals(27, month.countEffective(MealStatus.MEAL_ON, 30));
+        assertEquals(28, month.countEffective(MealStatus.MEAL_ON, 31));
+    }
+
+    @Test
+    public void overlay_topSetDaysWin() {
+        MonthMealBitmap base = MonthMealBitmap.EMPTY
+                .with(1, MealStatus.MEAL_OFF)
+                .with(2, MealStatus.HALL_CLOSED);
+        MonthMealBitmap top = MonthMealBitmap.EMPTY
+                .with(2, MealStatus.MEAL_ON)
+                .with(3, MealStatus.MEAL_OFF);
+
+        MonthMealBitmap merged = base.overlay(top);
+        assertEquals(MealStatus.MEAL_OFF, merged.get(1));
+        assertEquals(MealStatus.MEAL_ON, merged.get(2));
+        assertEquals(MealStatus.MEAL_OFF, merged.get(3));
+    }
+
+    @Test
+    public void diffAndSetDays_areDayMasks() {
+        MonthMealBitmap a = MonthMealBitmap.EMPTY.with(1, MealStatus.MEAL_OFF).with(31, MealStatus.MEAL_ON);
+        MonthMealBitmap b = a.with(31, MealStatus.HALL_CLOSED).with(10, MealStatus.MEAL_ON);
+
+        assertEquals((1 << 9) | (1 << 30), a.diff(b));
+        assertEquals(0, a.diff(a));
+        assertEquals(1 | (1 << 30), a.setDays());
+    }
+
+    @Test
+    public void hex_roundTripsAllDays() {
+        MonthMealBitmap month = MonthMealBitmap.EMPTY;
+        for (int day = 1; day <= 31; day++) {
+            month = month.with(day, MealStatus.HALL_CLOSED);
+        }
+        assertEquals("3fffffffffffffff", month.toHex());
+        assertEquals(month, MonthMealBitmap.fromHex(month.toHex()));
+        assertEquals(MonthMealBitmap.EMPTY, MonthMealBitmap.fromHex(null));
+    }
+
+    @Test
+    public void records_roundTrip() {
+        MealRecord off = new MealRecord("uid1", "2025-02-07", "MEAL_OFF");
+        MealRecord closed = new MealRecord("uid1", "2025-02-28", "HALL_CLOSED");
+
+        MonthMealBitmap month = MonthMealBitmap.fromRecords(Arrays.asList(off, closed));
+        List<MealRecord> records = month.toRecords("uid1", "2025-02");
+
+        assertEquals(2, records.size());
+        assertEquals("2025-02-07", records.get(0).getDate());
+        assertEquals("MEAL_OFF", records.get(0).getStatus());
+        assertEquals("uid1_2025-02-07", records.get(0).getId());
+        assertEquals("2025-02-28", records.get(1).getDate());
+        assertEquals("HALL_CLOSED", records.get(1).getStatus());
+    }
+
+    @Test
+    public void statusCycle_matchesCalendarTaps() {
+        assertEquals(MealStatus.MEAL_OFF, MealStatus.MEAL_ON.next());
+        assertEquals(MealStatus.MEAL_ON, MealStatus.MEAL_OFF.next());
+        assertEquals(MealStatus.MEAL_ON, MealStatus.HALL_CLOSED.next());
+    }
+
+    @Test
+    public void withClosedDays_overridesResidentStatuses() {
+        MonthMealBitmap month = MonthMealBitmap.EMPTY
+                .with(1, MealStatus.MEAL_OFF)
+                .with(2, MealStatus.MEAL_ON)
+                .with(31, MealStatus.MEAL_OFF);
+        int closures = (1 << 1) | (1 << 9) | (1 << 30); // days 2, 10, 31
+
+        MonthMealBitmap shown = month.withClosedDays(closures);
+        assertEquals(MealStatus.MEAL_OFF, shown.get(1));
+        assertEquals(MealStatus.HALL_CLOSED, shown.get(2));
+        assertEquals(MealStatus.HALL_CLOSED, shown.get(10));
+        assertEquals(MealStatus.HALL_CLOSED, shown.get(31));
+        assertNull(shown.get(3));
+        assertEquals(3, shown.count(MealStatus.HALL_CLOSED));
+        assertSame(month, month.withClosedDays(0));
+    }
+}
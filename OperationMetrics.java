@@ -0,0 +1,212 @@
+package com.example.halldues;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+// Latency, outcome and payload counters for FirebaseManager operations, kept in
+// memory for the life of the process. Each latency lands in one of a fixed set of
+// log-spaced buckets, so recording is a couple of increments and percentiles are
+// read off the bucket bounds (exact to the bucket). Byte counts estimate the JSON
+// size of what was read or written; the database SDK does not expose wire sizes.
+public class OperationMetrics {
+
+    // Upper bounds in ms; one more bucket past the last bound catches the rest.
+    static final long[] BUCKET_BOUNDS_MS = {1, 2, 5, 10, 20, 50, 100, 200, 500, 1000, 2000, 5000, 10000, 30000};
+
+    private final Map<String, Counters> operations = new LinkedHashMap<>();
+    private long startedAt = System.currentTimeMillis();
+
+    public Timer start(String operation) {
+        return new Timer(operation, System.nanoTime());
+    }
+
+    synchronized void record(String operation, long latencyNanos, boolean success, long records, long bytes) {
+        Counters c = operations.get(operation);
+        if (c == null) {
+            c = new Counters();
+            operations.put(operation, c);
+        }
+        long ms = latencyNanos / 1_000_000;
+        c.buckets[bucketOf(ms)]++;
+        c.totalNanos += latencyNanos;
+        c.maxNanos = Math.max(c.maxNanos, latencyNanos);
+        if (success) c.successes++;
+        else c.failures++;
+        c.records += records;
+        c.bytes += bytes;
+    }
+
+    public synchronized List<OperationStats> getStats() {
+        List<OperationStats> list = new ArrayList<>(operations.size());
+        for (Map.Entry<String, Counters> e : operations.entrySet()) {
+            Counters c = e.getValue();
+            list.add(new OperationStats(e.getKey(), c.successes, c.failures, c.records, c.bytes,
+                    c.totalNanos, c.maxNanos, c.buckets.clone()));
+        }
+        return list;
+    }
+
+    public synchronized void reset() {
+        operations.clear();
+        startedAt = System.currentTimeMillis();
+    }
+
+    public synchronized long getStartedAt() {
+        return startedAt;
+    }
+
+    // Plain-text table, one operation per line; what the debug screen shows and shares.
+    public String dump() {
+        List<OperationStats> stats = getStats();
+        long seconds = (System.currentTimeMillis() - getStartedAt()) / 1000;
+        StringBuilder sb = new StringBuilder();
+        sb.append(String.format(Locale.US, "Operation metrics over the last %ds%n", seconds));
+        sb.append(String.format(Locale.US, "%-22s %5s %5s %6s %6s %6s %7s %7s %8s%n",
+                "operation", "ok", "fail", "p50ms", "p90ms", "p99ms", "maxms", "records", "bytes"));
+        for (OperationStats s : stats) {
+            sb.append(String.format(Locale.US, "%-22s %5d %5d %6s %6s %6s %7d %7d %8d%n",
+                    s.name, s.successes, s.failures,
+                    formatBound(s.percentileMs(0.50)), formatBound(s.percentileMs(0.90)),
+                    formatBound(s.percentileMs(0.99)), s.maxNanos / 1_000_000, s.records, s.bytes));
+        }
+        if (stats.isEmpty()) sb.append("(no operations yet)\n");
+        return sb.toString();
+    }
+
+    private static String formatBound(long ms) {
+        return ms < 0 ? "-" : ms == Long.MAX_VALUE ? ">" + BUCKET_BOUNDS_MS[BUCKET_BOUNDS_MS.length - 1] : "<" + ms;
+    }
+
+    static int bucketOf(long ms) {
+        for (int i = 0; i < BUCKET_BOUNDS_MS.length; i++) {
+            if (ms < BUCKET_BOUNDS_MS[i]) return i;
+        }
+        return BUCKET_BOUNDS_MS.length;
+    }
+
+    // ================= PAYLOAD SIZE =================
+    // Approximate JSON size of a value as DataSnapshot.getValue() returns it
+    // (Map, List, String, Number, Boolean or null).
+    public static long estimateBytes(Object value) {
+        if (value == null) return 4;
+        if (value instanceof String) return ((String) value).length() + 2;
+        if (value instanceof Boolean) return (Boolean) value ? 4 : 5;
+        if (value instanceof Number) return String.valueOf(value).length();
+        if (value instanceof Map) {
+            long size = 2;
+            for (Map.Entry<?, ?> e : ((Map<?, ?>) value).entrySet()) {
+                size += String.valueOf(e.getKey()).length() + 4 + estimateBytes(e.getValue());
+            }
+            return size;
+        }
+        if (value instanceof List) {
+            long size = 2;
+            for (Object item : (List<?>) value) {
+                size += estimateBytes(item) + 1;
+            }
+            return size;
+        }
+        return String.valueOf(value).length() + 2;
+    }
+
+    private static final class Counters {
+        final long[] buckets = new long[BUCKET_BOUNDS_MS.length + 1];
+        long successes;
+        long failures;
+        long records;
+        long bytes;
+        long totalNanos;
+        long maxNanos;
+    }
+
+    // One call in flight. Reports once; later calls to success()/failure() are ignored.
+    public final class Timer {
+        private final String operation;
+        private final long startNanos;
+        private long records;
+        private long bytes;
+        private boolean done;
+
+        private Timer(String operation, long startNanos) {
+            this.operation = operation;
+            this.startNanos = startNanos;
+        }
+
+        public Timer addRecords(long count) {
+            records += count;
+            return this;
+        }
+
+        public Timer addBytes(long count) {
+            bytes += count;
+            return this;
+        }
+
+        public void success() {
+            finish(true);
+        }
+
+        public void failure() {
+            finish(false);
+        }
+
+        private void finish(boolean success) {
+            if (done) return;
+            done = true;
+            record(operation, System.nanoTime() - startNanos, success, records, bytes);
+        }
+    }
+
+    public static class OperationStats {
+        public final String name;
+        public final long successes;
+        public final long failures;
+        public final long records;
+        public final long bytes;
+        public final long totalNanos;
+        public final long maxNanos;
+        private final long[] buckets;
+
+        OperationStats(String name, long successes, long failures, long records, long bytes,
+                       long totalNanos, long maxNanos, long[] buckets) {
+            this.name = name;
+            this.successes = successes;
+            this.failures = failures;
+            this.records = records;
+            this.bytes = bytes;
+            this.totalNanos = totalNanos;
+            this.maxNanos = maxNanos;
+            this.buckets = buckets;
+        }
+
+        public long getCount() {
+            return successes + failures;
+        }
+
+        public long getBucketCount(int bucket) {
+            return buckets[bucket];
+        }
+
+        // Upper bound (ms) of the bucket holding the q-quantile, Long.MAX_VALUE for
+        // the open-ended last bucket, or -1 if nothing was recorded.
+        public long percentileMs(double q) {
+            long count = getCount();
+            if (count == 0) return -1;
+            long rank = Math.max(1, (long) Math.ceil(q * count));
+            long seen = 0;
+            for (int i = 0; i < buckets.length; i++) {
+                seen += buckets[i];
+                if (seen >= rank) return i < BUCKET_BOUNDS_MS.length ? BUCKET_BOUNDS_MS[i] : Long.MAX_VALUE;
+            }
+            return Long.MAX_VALUE;
+        }
+
+        public double getMeanMs() {
+            long count = getCount();
+            return count == 0 ? 0 : totalNanos / 1e6 / count;
+        }
+    }
+}
@@ -0,0 +1,85 @@
+package com.example.halldues;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for OperationMetrics.
+ */
+public class OperationMetricsTest {
+
+    private static final long MS = 1_000_000L;
+
+    @Test
+    public void bucketOf_boundIsExclusive() {
+        assertEquals(0, OperationMetrics.bucketOf(0));
+        assertEquals(1, OperationMetrics.bucketOf(1));
+        assertEquals(6, OperationMetrics.bucketOf(99));
+        assertEquals(7, OperationMetrics.bucketOf(100));
+        assertEquals(OperationMetrics.BUCKET_BOUNDS_MS.length, OperationMetrics.bucketOf(60_000));
+    }
+
+    @Test
+    public void percentiles_reportBucketUpperBounds() {
+        OperationMetrics metrics = new OperationMetrics();
+        for (int i = 0; i < 98; i++) {
+            metrics.record("getMealMonth", 30 * MS, true, 0, 0);
+        }
+        metrics.record("getMealMonth", 700 * MS, true, 0, 0);
+        metrics.record("getMealMonth", 40_000 * MS, false, 0, 0);
+
+        OperationMetrics.OperationStats stats = metrics.getStats().get(0);
+        assertEquals(100, stats.getCount());
+        assertEquals(99, stats.successes);
+        assertEquals(1, stats.failures);
+        assertEquals(50, stats.percentileMs(0.50));
+        assertEquals(1000, stats.percentileMs(0.99));
+        assertEquals(Long.MAX_VALUE, stats.percentileMs(1.0));
+        assertEquals(40_000, stats.maxNanos / MS);
+    }
+
+    @Test
+    public void timer_reportsOnceWithRecordsAndBytes() {
+        OperationMetrics metrics = new OperationMetrics();
+        OperationMetrics.Timer timer = metrics.start("saveMealRecords").addRecords(3);
+        timer.addBytes(40).addBytes(2);
+        timer.success();
+        timer.failure();
+
+        List<OperationMetrics.OperationStats> all = metrics.getStats();
+        assertEquals(1, all.size());
+        assertEquals("saveMealRecords", all.get(0).name);
+        assertEquals(1, all.get(0).successes);
+        assertEquals(0, all.get(0).failures);
+        assertEquals(3, all.get(0).records);
+        assertEquals(42, all.get(0).bytes);
+    }
+
+    @Test
+    public void estimateBytes_approximatesCompactJson() {
+        Map<String, Object> node = new HashMap<>();
+        node.put("bits", "5a");
+        node.put("updatedAt", 1700000000000L);
+        // {"bits":"5a","updatedAt":1700000000000}
+        assertEquals(40, OperationMetrics.estimateBytes(node));
+        // [true,null], counting one separator per element
+        assertEquals(12, OperationMetrics.estimateBytes(Arrays.asList(true, null)));
+    }
+
+    @Test
+    public void reset_clearsEveryOperation() {
+        OperationMetrics metrics = new OperationMetrics();
+        metrics.record("loginUser", 250 * MS, true, 1, 80);
+        assertTrue(metrics.dump().contains("loginUser"));
+
+        metrics.reset();
+        assertTrue(metrics.getStats().isEmpty());
+        assertTrue(metrics.dump().contains("no operations yet"));
+    }
+}
@@ -7,16 +7,34 @@ import android.widget.ImageView;
 import android.widget.TextView;
 
 import androidx.annotation.NonNull;
+import androidx.recyclerview.widget.DiffUtil;
+import androidx.recyclerview.widget.ListAdapter;
 import androidx.recyclerview.widget.RecyclerView;
 
-import java.util.List;
+import java.text.DateFormatSymbols;
+import java.util.Locale;
 
-public class PaymentHistoryAdapter extends RecyclerView.Adapter<PaymentHistoryAdapter.PaymentViewHolder> {
+// Rows are matched by month, so submitting a list with a new page or an updated
+// current month only binds the rows that actually changed; the diff runs off the
+// main thread.
+public class PaymentHistoryAdapter extends ListAdapter<PaymentRecord, PaymentHistoryAdapter.PaymentViewHolder> {
 
-    private List<PaymentRecord> paymentRecords;
+    private static final DiffUtil.ItemCallback<PaymentRecord> DIFF = new DiffUtil.ItemCallback<PaymentRecord>() {
+        @Override
+        public boolean areItemsTheSame(@NonNull PaymentRecord a, @NonNull PaymentRecord b) {
+            return a.getMonth().equals(b.getMonth());
+        }
+
+        @Override
+        public boolean areContentsTheSame(@NonNull PaymentRecord a, @NonNull PaymentRecord b) {
+            return a.equals(b);
+        }
+    };
 
-    public PaymentHistoryAdapter(List<PaymentRecord> paymentRecords) {
-        this.paymentRecords = paymentRecords;
+    private final String[] shortMonthNames = DateFormatSymbols.getInstance(Locale.getDefault()).getShortMonths();
+
+    public PaymentHistoryAdapter() {
+        super(DIFF);
     }
 
     @NonNull
@@ -28,14 +46,15 @@ public class PaymentHistoryAdapter extends RecyclerView.Adapter<PaymentHistoryAd
 
     @Override
     public void onBindViewHolder(@NonNull PaymentViewHolder holder, int position) {
-        PaymentRecord record = paymentRecords.get(position);
-        holder.tvMonth.setText(record.getMonth());
+        PaymentRecord record = getItem(position);
+        holder.tvMonth.setText(monthLabel(record.getMonth()));
         holder.tvTotalAmount.setText(String.format("$%.2f", record.getTotal()));
     }
 
-    @Override
-    public int getItemCount() {
-        return paymentRecords.size();
+    private String monthLabel(String yearMonth) {
+        int monthKey = DateKeys.parseMonth(yearMonth);
+        if (monthKey < 0) return yearMonth;
+        return shortMonthNames[DateKeys.monthOf(monthKey) - 1] + " " + DateKeys.yearOf(monthKey);
     }
 
     public static class PaymentViewHolder extends RecyclerView.ViewHolder {
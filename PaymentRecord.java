@@ -1,5 +1,8 @@
 package com.example.halldues;
 
+import java.util.Objects;
+
+// One month's bill. month is the yyyy-MM key; amounts are whole units (paisa / 100).
 public class PaymentRecord {
     public String month;
     public double messing;
@@ -26,4 +29,18 @@ public class PaymentRecord {
     public double getTotal() {
         return total;
     }
+
+    @Override
+    public boolean equals(Object o) {
+        if (!(o instanceof PaymentRecord)) return false;
+        PaymentRecord other = (PaymentRecord) o;
+        return Objects.equals(month, other.month)
+                && messing == other.messing && fine == other.fine && generator == other.generator
+                && water == other.water && misc == other.misc && total == other.total;
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(month, messing, fine, generator, water, misc, total);
+    }
 }
@@ -0,0 +1,31 @@
+package com.example.halldues;
+
+// Hall charges in minor currency units (paisa), so running totals stay exact.
+// Messing is charged per day with the meal ON; generator, water and misc are
+// flat monthly charges; OFF days beyond the free allowance are fined.
+public final class RateTable {
+
+    public static final RateTable DEFAULT = new RateTable(6500, 500, 10, 5000, 1000, 2000);
+
+    public final long mealRate;
+    public final long offDayFine;
+    public final int freeOffDays;
+    public final long generatorCharge;
+    public final long waterCharge;
+    public final long miscCharge;
+
+    public RateTable(long mealRate, long offDayFine, int freeOffDays,
+                     long generatorCharge, long waterCharge, long miscCharge) {
+        this.mealRate = mealRate;
+        this.offDayFine = offDayFine;
+        this.freeOffDays = freeOffDays;
+        this.generatorCharge = generatorCharge;
+        this.waterCharge = waterCharge;
+        this.miscCharge = miscCharge;
+    }
+
+    // Fine for a month with offDays days OFF.
+    public long fineFor(int offDays) {
+        return Math.max(0, offDays - freeOffDays) * offDayFine;
+    }
+}
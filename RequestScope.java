@@ -0,0 +1,57 @@
+package com.example.halldues;
+
+import androidx.annotation.NonNull;
+import androidx.lifecycle.DefaultLifecycleObserver;
+import androidx.lifecycle.LifecycleOwner;
+
+import com.google.android.gms.tasks.CancellationToken;
+import com.google.android.gms.tasks.CancellationTokenSource;
+
+import java.util.HashMap;
+import java.util.Map;
+
+// Cancellation for one screen's requests, tied to its lifecycle. token() is
+// cancelled when the screen is destroyed. latest(slot) also cancels the token
+// previously issued for that slot, so of several loads into the same place (the
+// month on screen) only the last one requested can deliver.
+public class RequestScope implements DefaultLifecycleObserver {
+
+    private final CancellationTokenSource lifetime = new CancellationTokenSource();
+    private final Map<String, CancellationTokenSource> slots = new HashMap<>();
+    private boolean destroyed;
+
+    public RequestScope(LifecycleOwner owner) {
+        owner.getLifecycle().addObserver(this);
+    }
+
+    public CancellationToken token() {
+        return lifetime.getToken();
+    }
+
+    public CancellationToken latest(String slot) {
+        cancel(slot);
+        CancellationTokenSource source = new CancellationTokenSource();
+        if (destroyed) {
+            source.cancel();
+        } else {
+            slots.put(slot, source);
+        }
+        return source.getToken();
+    }
+
+    public void cancel(String slot) {
+        CancellationTokenSource previous = slots.remove(slot);
+        if (previous != null) previous.cancel();
+    }
+
+    @Override
+    public void onDestroy(@NonNull LifecycleOwner owner) {
+        destroyed = true;
+        lifetime.cancel();
+        for (CancellationTokenSource source : slots.values()) {
+            source.cancel();
+        }
+        slots.clear();
+        owner.getLifecycle().removeObserver(this);
+    }
+}
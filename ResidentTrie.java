@@ -0,0 +1,178 @@
+package com.example.halldues;
+
+import androidx.annotation.Nullable;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+// In-memory prefix index over residents for offline search. Every word of the
+// name and the roll number is a key, so "udd" finds "Rahim Uddin" and "1907"
+// finds roll 1907001. A lookup walks one path of the trie and collects the
+// subtree below it; cost depends on the query and the matches, not on how many
+// residents are indexed. Keys are compared in SnapshotMappers.nameKey form.
+public final class ResidentTrie {
+
+    // Results come back in the order of the users/ name index, then by uid.
+    private static final Comparator<User> BY_NAME = (a, b) -> {
+        int c = SnapshotMappers.nameKey(a.getFullName()).compareTo(SnapshotMappers.nameKey(b.getFullName()));
+        return c != 0 ? c : a.getId().compareTo(b.getId());
+    };
+
+    private final Node root = new Node();
+    private final Map<String, User> residents = new HashMap<>();
+
+    // Replaces any earlier copy of the same resident.
+    public synchronized void put(User user) {
+        if (user.getId() == null) return;
+        remove(user.getId());
+        residents.put(user.getId(), user);
+        for (String key : keysOf(user)) {
+            root.descend(key, true).add(user.getId());
+        }
+    }
+
+    public synchronized void remove(String userId) {
+        User old = residents.remove(userId);
+        if (old == null) return;
+        for (String key : keysOf(old)) {
+            Node node = root.descend(key, false);
+            if (node != null) node.ids.remove(userId);
+        }
+    }
+
+    public synchronized int size() {
+        return residents.size();
+    }
+
+    public synchronized void clear() {
+        root.keys = new char[0];
+        root.children = new Node[0];
+        root.ids = Collections.emptyList();
+        residents.clear();
+    }
+
+    @Nullable
+    public synchronized User findByRoll(String rollNumber) {
+        Node node = root.descend(SnapshotMappers.nameKey(rollNumber), false);
+        if (node == null) return null;
+        for (String id : node.ids) {
+            User user = residents.get(id);
+            if (user != null && rollNumber.trim().equalsIgnoreCase(user.getRollNumber())) return user;
+        }
+        return null;
+    }
+
+    // Residents with a key starting with each word of query, at most limit of them,
+    // continuing after the given resident (the last one of the previous page).
+    public synchronized List<User> search(String query, @Nullable User after, int limit) {
+        String[] words = splitKey(SnapshotMappers.nameKey(query));
+        if (words.length == 0 || limit <= 0) return new ArrayList<>();
+
+        // The longest word narrows the walk the most; the others filter.
+        String longest = words[0];
+        for (String word : words) {
+            if (word.length() > longest.length()) longest = word;
+        }
+        Node node = root.descend(longest, false);
+        if (node == null) return new ArrayList<>();
+
+        Set<String> ids = new HashSet<>();
+        node.collect(ids);
+        List<User> matches = new ArrayList<>(ids.size());
+        for (String id : ids) {
+            User user = residents.get(id);
+            if (user != null && matchesAll(user, words)) matches.add(user);
+        }
+        Collections.sort(matches, BY_NAME);
+
+        List<User> page = new ArrayList<>(Math.min(limit, matches.size()));
+        for (User user : matches) {
+            if (after != null && BY_NAME.compare(user, after) <= 0) continue;
+            page.add(user);
+            if (page.size() == limit) break;
+        }
+        return page;
+    }
+
+    private static boolean matchesAll(User user, String[] words) {
+        List<String> keys = keysOf(user);
+        for (String word : words) {
+            boolean found = false;
+            for (String key : keys) {
+                if (key.startsWith(word)) {
+                    found = true;
+                    break;
+                }
+            }
+            if (!found) return false;
+        }
+        return true;
+    }
+
+    private static List<String> keysOf(User user) {
+        List<String> keys = new ArrayList<>(Arrays.asList(splitKey(SnapshotMappers.nameKey(user.getFullName()))));
+        String roll = SnapshotMappers.nameKey(user.getRollNumber());
+        if (!roll.isEmpty()) keys.add(roll);
+        return keys;
+    }
+
+    private static String[] splitKey(String key) {
+        return key.isEmpty() ? new String[0] : key.split(" ");
+    }
+
+    // Children are kept in sorted parallel arrays and found by binary search.
+    private static final class Node {
+        char[] keys = new char[0];
+        Node[] children = new Node[0];
+        List<String> ids = Collections.emptyList();
+
+        @Nullable
+        Node descend(String key, boolean create) {
+            Node node = this;
+            for (int i = 0; i < key.length() && node != null; i++) {
+                node = node.child(key.charAt(i), create);
+            }
+            return node;
+        }
+
+        @Nullable
+        Node child(char c, boolean create) {
+            int index = Arrays.binarySearch(keys, c);
+            if (index >= 0) return children[index];
+            if (!create) return null;
+
+            int at = -index - 1;
+            Node child = new Node();
+            char[] nextKeys = new char[keys.length + 1];
+            Node[] nextChildren = new Node[children.length + 1];
+            System.arraycopy(keys, 0, nextKeys, 0, at);
+            System.arraycopy(children, 0, nextChildren, 0, at);
+            nextKeys[at] = c;
+            nextChildren[at] = child;
+            System.arraycopy(keys, at, nextKeys, at + 1, keys.length - at);
+            System.arraycopy(children, at, nextChildren, at + 1, children.length - at);
+            keys = nextKeys;
+            children = nextChildren;
+            return child;
+        }
+
+        void add(String id) {
+            if (ids.isEmpty()) ids = new ArrayList<>(1);
+            if (!ids.contains(id)) ids.add(id);
+        }
+
+        void collect(Set<String> out) {
+            out.addAll(ids);
+            for (Node child : children) {
+                child.collect(out);
+            }
+        }
+    }
+}
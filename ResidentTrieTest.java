@@ -0,0 +1,74 @@
+package com.example.halldues;
+
+import org.junit.Test;
+
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for ResidentTrie.
+ */
+public class ResidentTrieTest {
+
+    private static ResidentTrie hall() {
+        ResidentTrie trie = new ResidentTrie();
+        trie.put(new User("Rahim Uddin", "CSE", "1907001", "uidA"));
+        trie.put(new User("Karim Uddin", "EEE", "1903002", "uidB"));
+        trie.put(new User("Rahima Akter", "CSE", "1907003", "uidC"));
+        trie.put(new User("Nusrat Jahan", "ME", "2005004", "uidD"));
+        return trie;
+    }
+
+    private static String ids(List<User> users) {
+        StringBuilder sb = new StringBuilder();
+        for (User u : users) sb.append(u.getId()).append(' ');
+        return sb.toString().trim();
+    }
+
+    @Test
+    public void search_matchesAnyWordPrefixInNameOrder() {
+        ResidentTrie trie = hall();
+        assertEquals("uidA uidC", ids(trie.search("rahim", null, 10)));
+        assertEquals("uidB uidA", ids(trie.search("UDD", null, 10)));
+        assertEquals("uidA uidC", ids(trie.search("1907", null, 10)));
+        assertEquals("", ids(trie.search("zed", null, 10)));
+    }
+
+    @Test
+    public void search_everyWordMustMatch() {
+        ResidentTrie trie = hall();
+        assertEquals("uidA", ids(trie.search("uddin rah", null, 10)));
+        assertEquals("", ids(trie.search("uddin nus", null, 10)));
+    }
+
+    @Test
+    public void search_pagesAfterTheLastResult() {
+        ResidentTrie trie = hall();
+        List<User> first = trie.search("u", null, 1);
+        assertEquals("uidB", ids(first));
+        List<User> second = trie.search("u", first.get(0), 1);
+        assertEquals("uidA", ids(second));
+        assertEquals("", ids(trie.search("u", second.get(0), 1)));
+    }
+
+    @Test
+    public void put_replacesTheEarlierCopy() {
+        ResidentTrie trie = hall();
+        trie.put(new User("Rahim Chowdhury", "CSE", "1907001", "uidA"));
+
+        assertEquals(4, trie.size());
+        assertEquals("uidB", ids(trie.search("uddin", null, 10)));
+        assertEquals("uidA", ids(trie.search("chow", null, 10)));
+    }
+
+    @Test
+    public void findByRoll_isExact() {
+        ResidentTrie trie = hall();
+        assertEquals("uidC", trie.findByRoll("1907003").getId());
+        assertNull(trie.findByRoll("1907"));
+
+        trie.remove("uidC");
+        assertNull(trie.findByRoll("1907003"));
+    }
+}
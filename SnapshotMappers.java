@@ -0,0 +1,148 @@
+package com.example.halldues;
+
+import androidx.annotation.Nullable;
+
+import com.google.firebase.database.DataSnapshot;
+
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+// Hand-written conversions between database nodes and the model classes, used
+// instead of snapshot.getValue(X.class) and setValue(x). The SDK's class mapper
+// looks up bean properties by reflection on every call; these read the generic
+// value (maps of String, Long, Double, Boolean) field by field. Field names and
+// leniency match what the class mapper wrote and accepted: missing fields stay at
+// their defaults, unknown fields are ignored, and numbers convert between long
+// and double.
+public final class SnapshotMappers {
+
+    // users/{uid}/nameKey, the field the name index orders by.
+    public static final String NAME_KEY = "nameKey";
+    // Same pattern as rollIndex/$roll and users/$uid/rollNumber in database.rules.json.
+    private static final Pattern ROLL_PATTERN = Pattern.compile("^[A-Za-z0-9-]{1,32}$");
+
+    private SnapshotMappers() {
+    }
+
+    // ================= MEAL RECORD =================
+    @Nullable
+    public static MealRecord mealRecordFromSnapshot(DataSnapshot snapshot) {
+        return mealRecordFromMap(snapshot.getValue());
+    }
+
+    @Nullable
+    public static MealRecord mealRecordFromMap(@Nullable Object value) {
+        if (!(value instanceof Map)) return null;
+        Map<?, ?> map = (Map<?, ?>) value;
+        MealRecord record = new MealRecord();
+        record.setId(string(map, "id"));
+        record.setUserId(string(map, "userId"));
+        record.setDate(string(map, "date"));
+        record.setStatus(string(map, "status"));
+        record.setTimestamp(longValue(map, "timestamp"));
+        return record;
+    }
+
+    public static Map<String, Object> toMap(MealRecord record) {
+        Map<String, Object> map = new HashMap<>(8);
+        map.put("id", record.getId());
+        map.put("userId", record.getUserId());
+        map.put("date", record.getDate());
+        map.put("status", record.getStatus());
+        map.put("timestamp", record.getTimestamp());
+        return map;
+    }
+
+    // ================= USER =================
+    // The id is the node key (the Firebase UID), whatever the stored copy says.
+    @Nullable
+    public static User userFromSnapshot(DataSnapshot snapshot) {
+        return userFromMap(snapshot.getKey(), snapshot.getValue());
+    }
+
+    @Nullable
+    public static User userFromMap(String id, @Nullable Object value) {
+        if (!(value instanceof Map)) return null;
+        Map<?, ?> map = (Map<?, ?>) value;
+        return new User(string(map, "fullName"), string(map, "department"), string(map, "rollNumber"), id);
+    }
+
+    public static Map<String, Object> toMap(User user) {
+        Map<String, Object> map = new HashMap<>(8);
+        map.put("id", user.getId());
+        map.put("fullName", user.getFullName());
+        map.put("department", user.getDepartment());
+        map.put("rollNumber", user.getRollNumber());
+        map.put(NAME_KEY, nameKey(user.getFullName()));
+        return map;
+    }
+
+    // Lower case, words separated by single spaces: database ordering is by code
+    // point, so prefix queries need one spelling of every name.
+    public static String nameKey(@Nullable String name) {
+        if (name == null) return "";
+        StringBuilder sb = new StringBuilder(name.length());
+        for (String word : name.trim().toLowerCase(Locale.ROOT).split("\\s+")) {
+            if (word.isEmpty()) continue;
+            if (sb.length() > 0) sb.append(' ');
+            sb.append(word);
+        }
+        return sb.toString();
+    }
+
+    // The roll number as a rollIndex key: trimmed, and limited to the characters the
+    // rules accept (a '.', '/', '#', '$', '[' or ']' is not even a legal path). Null
+    // when the roll number cannot be used.
+    @Nullable
+    public static String rollKey(@Nullable String rollNumber) {
+        if (rollNumber == null) return null;
+        String roll = rollNumber.trim();
+        return ROLL_PATTERN.matcher(roll).matches() ? roll : null;
+    }
+
+    // ================= PAYMENT RECORD =================
+    // payments/{uid}/{yyyy-MM}; the month is the node key.
+    @Nullable
+    public static PaymentRecord paymentFromSnapshot(DataSnapshot snapshot) {
+        return paymentFromMap(snapshot.getKey(), snapshot.getValue());
+    }
+
+    @Nullable
+    public static PaymentRecord paymentFromMap(String month, @Nullable Object value) {
+        if (!(value instanceof Map)) return null;
+        Map<?, ?> map = (Map<?, ?>) value;
+        return new PaymentRecord(month, doubleValue(map, "messing"), doubleValue(map, "fine"),
+                doubleValue(map, "generator"), doubleValue(map, "water"), doubleValue(map, "misc"),
+                doubleValue(map, "total"));
+    }
+
+    public static Map<String, Object> toMap(PaymentRecord record) {
+        Map<String, Object> map = new HashMap<>(8);
+        map.put("messing", record.messing);
+        map.put("fine", record.fine);
+        map.put("generator", record.generator);
+        map.put("water", record.water);
+        map.put("misc", record.misc);
+        map.put("total", record.total);
+        return map;
+    }
+
+    // ================= FIELDS =================
+    @Nullable
+    private static String string(Map<?, ?> map, String field) {
+        Object value = map.get(field);
+        return value instanceof String ? (String) value : null;
+    }
+
+    private static long longValue(Map<?, ?> map, String field) {
+        Object value = map.get(field);
+        return value instanceof Number ? ((Number) value).longValue() : 0;
+    }
+
+    private static double doubleValue(Map<?, ?> map, String field) {
+        Object value = map.get(field);
+        return value instanceof Number ? ((Number) value).doubleValue() : 0;
+    }
+}
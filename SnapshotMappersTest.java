@@ -0,0 +1,96 @@
+package com.example.halldues;
+
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for SnapshotMappers.
+ */
+public class SnapshotMappersTest {
+
+    @Test
+    public void mealRecord_roundTrips() {
+        MealRecord record = new MealRecord("uid1", "2025-04-03", "MEAL_OFF");
+        record.setId("uid1_2025-04-03");
+        record.setTimestamp(1_700_000_000_123L);
+
+        MealRecord read = SnapshotMappers.mealRecordFromMap(SnapshotMappers.toMap(record));
+        assertNotNull(read);
+        assertEquals("uid1_2025-04-03", read.getId());
+        assertEquals("uid1", read.getUserId());
+        assertEquals("2025-04-03", read.getDate());
+        assertEquals("MEAL_OFF", read.getStatus());
+        assertEquals(1_700_000_000_123L, read.getTimestamp());
+    }
+
+    @Test
+    public void mealRecord_missingAndUnknownFieldsAreTolerated() {
+        Map<String, Object> row = new HashMap<>();
+        row.put("date", "2025-04-03");
+        row.put("timestamp", 12.0); // a double where a long is expected
+        row.put("note", "ignored");
+
+        MealRecord read = SnapshotMappers.mealRecordFromMap(row);
+        assertNotNull(read);
+        assertEquals("2025-04-03", read.getDate());
+        assertNull(read.getStatus());
+        assertEquals(12L, read.getTimestamp());
+    }
+
+    @Test
+    public void fromMap_nonObjectValueIsNull() {
+        assertNull(SnapshotMappers.mealRecordFromMap(null));
+        assertNull(SnapshotMappers.userFromMap("uid1", "MEAL_ON"));
+        assertNull(SnapshotMappers.paymentFromMap("2025-04", 5L));
+    }
+
+    @Test
+    public void user_idComesFromTheKey() {
+        User user = new User("Rahim Uddin", "CSE", "1907001", "stale");
+        Map<String, Object> node = SnapshotMappers.toMap(user);
+        assertEquals("stale", node.get("id"));
+        assertEquals("rahim uddin", node.get(SnapshotMappers.NAME_KEY));
+
+        User read = SnapshotMappers.userFromMap("uid1", node);
+        assertNotNull(read);
+        assertEquals("uid1", read.getId());
+        assertEquals("Rahim Uddin", read.getFullName());
+        assertEquals("CSE", read.getDepartment());
+        assertEquals("1907001", read.getRollNumber());
+    }
+
+    @Test
+    public void payment_roundTripsWithLongAmounts() {
+        PaymentRecord record = new PaymentRecord("2025-04", 2400, 50, 120, 60, 0, 2630);
+        assertEquals(record, SnapshotMappers.paymentFromMap("2025-04", SnapshotMappers.toMap(record)));
+
+        // Whole amounts come back from the database as Long.
+        Map<String, Object> node = new HashMap<>();
+        node.put("messing", 2400L);
+        node.put("total", 2400L);
+        assertEquals(new PaymentRecord("2025-04", 2400, 0, 0, 0, 0, 2400),
+                SnapshotMappers.paymentFromMap("2025-04", node));
+    }
+
+    @Test
+    public void nameKey_lowerCasesAndCollapsesSpaces() {
+        assertEquals("rahim uddin", SnapshotMappers.nameKey("  Rahim   Uddin "));
+        assertEquals("", SnapshotMappers.nameKey(null));
+        assertEquals("", SnapshotMappers.nameKey("   "));
+    }
+
+    @Test
+    public void rollKey_trimsAndRejectsPathCharacters() {
+        assertEquals("1907001", SnapshotMappers.rollKey(" 1907001 "));
+        assertEquals("CSE-19-07", SnapshotMappers.rollKey("CSE-19-07"));
+        assertNull(SnapshotMappers.rollKey("19.07"));
+        assertNull(SnapshotMappers.rollKey("19/07"));
+        assertNull(SnapshotMappers.rollKey("19 07"));
+        assertNull(SnapshotMappers.rollKey("   "));
+        assertNull(SnapshotMappers.rollKey(null));
+    }
+}
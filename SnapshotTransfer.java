@@ -0,0 +1,540 @@
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+// Streaming export/import of users/ and meals/ as one flat array of User and
+// MealRecord objects (same field names as the app's classes), one per line:
+//
+//   java Main export <dump.json[.gz] | emulator-url> <records.json[.gz]>
+//   java Main import <records.json[.gz]> <dump.json[.gz] | emulator-url>
+//
+//   {"type":"user","id":"..","fullName":"..","department":"..","rollNumber":".."}
+//   {"type":"meal","id":"uid_2025-04-03","userId":"..","date":"2025-04-03","status":"MEAL_OFF","timestamp":..}
+//
+// Both directions read and write token by token. The only state held is one
+// resident's meal months while their records go past, so memory stays flat however
+// many residents and years the database holds. That relies on the key order the
+// database exports in (one resident's data together); out-of-order input is
+// rejected. A .gz suffix means gzip. An http(s) URL such as
+// http://127.0.0.1:9000/?ns=halldues talks to the database emulator over REST with
+// its admin credentials.
+final class SnapshotTransfer {
+
+    private static final int IO_BUFFER = 64 * 1024;
+    private static final int EMULATOR_BATCH = 500;
+
+    private SnapshotTransfer() {
+    }
+
+    // ================= EXPORT =================
+    static int export(String[] args) throws IOException, InterruptedException {
+        if (args.length < 3) {
+            System.err.println("usage: java Main export <dump.json[.gz] | emulator-url> <records.json[.gz]>");
+            return 1;
+        }
+        String source = args[1];
+        Progress progress = new Progress("exported");
+
+        try (JsonStreamWriter out = new JsonStreamWriter(openWriter(Path.of(args[2])))) {
+            out.beginArray();
+            MealExporter meals = new MealExporter(out, progress);
+            if (isUrl(source)) {
+                try (JsonStreamReader json = new JsonStreamReader(openUrl(source, "users"))) {
+                    if (json.peek() != JsonStreamReader.Token.NULL) exportUsers(json, out, progress);
+                }
+                try (JsonStreamReader json = new JsonStreamReader(openUrl(source, "meals"))) {
+                    if (json.peek() != JsonStreamReader.Token.NULL) MealTreeReader.read(json, meals);
+                }
+                meals.finish();
+            } else {
+                try (JsonStreamReader json = new JsonStreamReader(openReader(Path.of(source)))) {
+                    json.beginObject();
+                    while (json.hasNext()) {
+                        String section = json.nextName();
+                        if (section.equals("users")) {
+                            exportUsers(json, out, progress);
+                        } else if (section.equals("meals")) {
+                            MealTreeReader.read(json, meals);
+                            meals.finish();
+                        } else {
+                            json.skipValue();
+                        }
+                    }
+                    json.endObject();
+                }
+            }
+            out.endArray();
+        }
+        progress.done();
+        return 0;
+    }
+
+    private static void exportUsers(JsonStreamReader json, JsonStreamWriter out, Progress progress) throws IOException {
+        json.beginObject();
+        while (json.hasNext()) {
+            String uid = json.nextName();
+            String fullName = null;
+            String department = null;
+            String rollNumber = null;
+            json.beginObject();
+            while (json.hasNext()) {
+                String field = json.nextName();
+                if (json.peek() != JsonStreamReader.Token.STRING) {
+                    json.skipValue();
+                } else if (field.equals("fullName")) {
+                    fullName = json.nextString();
+                } else if (field.equals("department")) {
+                    department = json.nextString();
+                } else if (field.equals("rollNumber")) {
+                    rollNumber = json.nextString();
+                } else {
+                    json.skipValue();
+                }
+            }
+            json.endObject();
+
+            out.beginObject()
+                    .name("type").value("user")
+                    .name("id").value(uid)
+                    .name("fullName").value(fullName)
+                    .name("department").value(department)
+                    .name("rollNumber").value(rollNumber)
+                    .endObject();
+            progress.tick();
+        }
+        json.endObject();
+    }
+
+    // Buffers one resident's months (month nodes and legacy records are contiguous
+    // per resident), then writes one MealRecord per day with a status, month nodes
+    // winning over legacy records as in the app's migration.
+    private static final class MealExporter implements MealTreeReader.Visitor {
+        private final JsonStreamWriter out;
+        private final Progress progress;
+        private final Map<String, long[]> months = new TreeMap<>(); // yyyy-MM -> {bits, updatedAt}
+        private final Map<String, long[]> legacy = new TreeMap<>(); // yyyy-MM -> {bits, latest timestamp}
+        private String userId;
+
+        MealExporter(JsonStreamWriter out, Progress progress) {
+            this.out = out;
+            this.progress = progress;
+        }
+
+        @Override
+        public boolean acceptMonth(String yearMonth) {
+            return true;
+        }
+
+        @Override
+        public void month(String userId, String yearMonth, long bits, long updatedAt) throws IOException {
+            switchUser(userId);
+            months.put(yearMonth, new long[]{bits, updatedAt});
+        }
+
+        @Override
+        public void legacyRecord(String userId, String date, int code, long timestamp) throws IOException {
+            switchUser(userId);
+            if (code == 0) return;
+            long[] month = legacy.computeIfAbsent(date.substring(0, 7), k -> new long[2]);
+            month[0] = MealTreeReader.withDay(month[0], Integer.parseInt(date.substring(8)), code);
+            month[1] = Math.max(month[1], timestamp);
+        }
+
+        void finish() throws IOException {
+            switchUser(null);
+        }
+
+        private void switchUser(String next) throws IOException {
+            if (next != null && userId != null && next.compareTo(userId) < 0) {
+                throw new IOException("meals keys are not sorted at " + next + "; export the tree as the database returns it");
+            }
+            if (userId != null && !userId.equals(next)) {
+                TreeMap<String, long[]> all = new TreeMap<>(legacy);
+                for (Map.Entry<String, long[]> e : months.entrySet()) {
+                    long[] old = all.get(e.getKey());
+                    long bits = old != null ? MealTreeReader.overlay(old[0], e.getValue()[0]) : e.getValue()[0];
+                    all.put(e.getKey(), new long[]{bits, e.getValue()[1]});
+                }
+                for (Map.Entry<String, long[]> e : all.entrySet()) {
+                    writeMonth(e.getKey(), e.getValue()[0], e.getValue()[1]);
+                }
+                months.clear();
+                legacy.clear();
+            }
+            userId = next;
+        }
+
+        private void writeMonth(String yearMonth, long bits, long timestamp) throws IOException {
+            for (int day = 1; day <= 31; day++) {
+                String status = MealTreeReader.statusName(MealTreeReader.dayCode(bits, day));
+                if (status == null) continue;
+                String date = yearMonth + (day < 10 ? "-0" : "-") + day;
+                out.beginObject()
+                        .name("type").value("meal")
+                        .name("id").value(userId + "_" + date)
+                        .name("userId").value(userId)
+                        .name("date").value(date)
+                        .name("status").value(status)
+                        .name("timestamp").value(timestamp)
+                        .endObject();
+                progress.tick();
+            }
+        }
+    }
+
+    // ================= IMPORT =================
+    static int importRecords(String[] args) throws IOException, InterruptedException {
+        if (args.length < 3) {
+            System.err.println("usage: java Main import <records.json[.gz]> <dump.json[.gz] | emulator-url>");
+            return 1;
+        }
+        String target = args[2];
+        Progress progress = new Progress("imported");
+        Record record = new Record();
+
+        try (JsonStreamReader json = new JsonStreamReader(openReader(Path.of(args[1])));
+             RecordSink sink = isUrl(target) ? new EmulatorSink(target) : new DumpSink(openWriter(Path.of(target)))) {
+            MonthAssembler assembler = new MonthAssembler(sink);
+            json.beginArray();
+            while (json.hasNext()) {
+                record.read(json);
+                if ("user".equals(record.type) && record.id != null) {
+                    assembler.flush();
+                    sink.user(record.id, record.fullName, record.department, record.rollNumber);
+                } else if ("meal".equals(record.type)) {
+                    assembler.add(record.userId, record.date, record.status, record.timestamp);
+                }
+                progress.tick();
+            }
+            json.endArray();
+            assembler.flush();
+        }
+        progress.done();
+        return 0;
+    }
+
+    // Reused for every record, so reading allocates only the field strings.
+    private static final class Record {
+        String type;
+        String id;
+        String fullName;
+        String department;
+        String rollNumber;
+        String userId;
+        String date;
+        String status;
+        long timestamp;
+
+        void read(JsonStreamReader json) throws IOException {
+            type = id = fullName = department = rollNumber = userId = date = status = null;
+            timestamp = 0;
+            json.beginObject();
+            while (json.hasNext()) {
+                String field = json.nextName();
+                JsonStreamReader.Token token = json.peek();
+                if (token == JsonStreamReader.Token.NUMBER && field.equals("timestamp")) {
+                    timestamp = json.nextLong();
+                    continue;
+                }
+                if (token != JsonStreamReader.Token.STRING) {
+                    json.skipValue();
+                    continue;
+                }
+                String value = json.nextString();
+                switch (field) {
+                    case "type": type = value; break;
+                    case "id": id = value; break;
+                    case "fullName": fullName = value; break;
+                    case "department": department = value; break;
+                    case "rollNumber": rollNumber = value; break;
+                    case "userId": userId = value; break;
+                    case "date": date = value; break;
+                    case "status": status = value; break;
+                    default: break;
+                }
+            }
+            json.endObject();
+        }
+    }
+
+    // Folds one resident's MealRecords back into month bitmaps.
+    private static final class MonthAssembler {
+        private final RecordSink sink;
+        private final Map<String, long[]> months = new TreeMap<>(); // yyyy-MM -> {bits, latest timestamp}
+        private String userId;
+
+        MonthAssembler(RecordSink sink) {
+            this.sink = sink;
+        }
+
+        void add(String recordUserId, String date, String status, long timestamp) throws IOException, InterruptedException {
+            int code = status != null ? MealTreeReader.statusCode(status) : 0;
+            if (recordUserId == null || date == null || date.length() != 10 || code == 0) return;
+            if (!recordUserId.equals(userId)) {
+                if (userId != null && recordUserId.compareTo(userId) < 0) {
+                    throw new IOException("Meal records for " + recordUserId + " are not grouped; input is not in export order");
+                }
+                flush();
+                userId = recordUserId;
+            }
+            long[] month = months.computeIfAbsent(date.substring(0, 7), k -> new long[2]);
+            month[0] = MealTreeReader.withDay(month[0], Integer.parseInt(date.substring(8)), code);
+            month[1] = Math.max(month[1], timestamp);
+        }
+
+        // Writes what has been folded so far; a resident's records may resume afterwards.
+        void flush() throws IOException, InterruptedException {
+            for (Map.Entry<String, long[]> e : months.entrySet()) {
+                sink.month(userId, e.getKey(), e.getValue()[0], e.getValue()[1]);
+            }
+            months.clear();
+        }
+    }
+
+    private interface RecordSink extends AutoCloseable {
+        void user(String uid, String fullName, String department, String rollNumber) throws IOException, InterruptedException;
+
+        void month(String uid, String yearMonth, long bits, long updatedAt) throws IOException, InterruptedException;
+
+        @Override
+        void close() throws IOException;
+    }
+
+    // Writes a database-shaped dump: {"users": {...}, "meals": {uid: {yyyy-MM: {bits, updatedAt}}}}.
+    // Expects the export order: each section in one run, each resident's meals together.
+    private static final class DumpSink implements RecordSink {
+        private static final int NONE = 0;
+        private static final int USERS = 1;
+        private static final int MEALS = 2;
+
+        private final JsonStreamWriter out;
+        private int section = NONE;
+        private boolean usersDone;
+        private boolean mealsDone;
+        private String mealUser;
+
+        DumpSink(Writer writer) throws IOException {
+            out = new JsonStreamWriter(writer).beginObject();
+        }
+
+        @Override
+        public void user(String uid, String fullName, String department, String rollNumber) throws IOException {
+            enter(USERS);
+            out.name(uid).beginObject()
+                    .name("id").value(uid)
+                    .name("fullName").value(fullName)
+                    .name("department").value(department)
+                    .name("rollNumber").value(rollNumber)
+                    .endObject();
+        }
+
+        @Override
+        public void month(String uid, String yearMonth, long bits, long updatedAt) throws IOException {
+            enter(MEALS);
+            if (!uid.equals(mealUser)) {
+                if (mealUser != null) out.endObject();
+                out.name(uid).beginObject();
+                mealUser = uid;
+            }
+            out.name(yearMonth).beginObject()
+                    .name("bits").value(Long.toHexString(bits))
+                    .name("updatedAt").value(updatedAt)
+                    .endObject();
+        }
+
+        private void enter(int next) throws IOException {
+            if (section == next) return;
+            if ((next == USERS && usersDone) || (next == MEALS && mealsDone)) {
+                throw new IOException("users and meal records are interleaved; input is not in export order");
+            }
+            leave();
+            out.name(next == USERS ? "users" : "meals").beginObject();
+            section = next;
+        }
+
+        private void leave() throws IOException {
+            if (section == MEALS && mealUser != null) out.endObject();
+            if (section != NONE) out.endObject();
+            usersDone |= section == USERS;
+            mealsDone |= section == MEALS;
+            section = NONE;
+        }
+
+        @Override
+        public void close() throws IOException {
+            leave();
+            out.endObject();
+            out.close();
+        }
+    }
+
+    // Sends multi-path updates of up to EMULATOR_BATCH nodes per PATCH to the root.
+    private static final class EmulatorSink implements RecordSink {
+        private final HttpClient client = HttpClient.newHttpClient();
+        private final URI rootUri;
+        private StringWriter body;
+        private JsonStreamWriter batch;
+        private int pending;
+
+        EmulatorSink(String baseUrl) {
+            rootUri = nodeUri(baseUrl, "");
+        }
+
+        @Override
+        public void user(String uid, String fullName, String department, String rollNumber) throws IOException, InterruptedException {
+            entry("users/" + uid).beginObject()
+                    .name("id").value(uid)
+                    .name("fullName").value(fullName)
+                    .name("department").value(department)
+                    .name("rollNumber").value(rollNumber)
+                    .endObject();
+            afterEntry();
+        }
+
+        @Override
+        public void month(String uid, String yearMonth, long bits, long updatedAt) throws IOException, InterruptedException {
+            entry("meals/" + uid + "/" + yearMonth).beginObject()
+                    .name("bits").value(Long.toHexString(bits))
+                    .name("updatedAt").value(updatedAt)
+                    .endObject();
+            afterEntry();
+        }
+
+        private JsonStreamWriter entry(String path) throws IOException {
+            if (batch == null) {
+                body = new StringWriter();
+                batch = new JsonStreamWriter(body).beginObject();
+            }
+            return batch.name(path);
+        }
+
+        private void afterEntry() throws IOException, InterruptedException {
+            if (++pending >= EMULATOR_BATCH) send();
+        }
+
+        private void send() throws IOException, InterruptedException {
+            if (batch == null) return;
+            batch.endObject();
+            HttpRequest request = HttpRequest.newBuilder(rootUri)
+                    .header("Authorization", "Bearer owner")
+                    .header("Content-Type", "application/json")
+                    .method("PATCH", HttpRequest.BodyPublishers.ofString(body.toString()))
+                    .build();
+            HttpResponse<String> response = client.send(request, HttpResponse.BodyHandlers.ofString());
+            if (response.statusCode() / 100 != 2) {
+                throw new IOException("Emulator PATCH failed: HTTP " + response.statusCode() + " " + response.body());
+            }
+            batch = null;
+            body = null;
+            pending = 0;
+        }
+
+        // try-with-resources would have to handle an InterruptedException from close();
+        // the interrupt is kept on the thread and reported as an IOException instead.
+        @Override
+        public void close() throws IOException {
+            try {
+                send();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while sending the last batch to the emulator");
+            }
+        }
+    }
+
+    // ================= PROGRESS =================
+    private static final class Progress {
+        private final String verb;
+        private final long start = System.nanoTime();
+        private long lastReport = start;
+        private long count;
+
+        Progress(String verb) {
+            this.verb = verb;
+        }
+
+        void tick() {
+            // Looking at the clock every 4096 records keeps this off the profile.
+            if ((++count & 0xFFF) != 0) return;
+            long now = System.nanoTime();
+            if (now - lastReport >= 1_000_000_000L) {
+                lastReport = now;
+                System.err.printf("%s %,d records (%,d records/s)%n", verb, count, rate(now));
+            }
+        }
+
+        void done() {
+            long now = System.nanoTime();
+            System.err.printf("%s %,d records in %,d ms (%,d records/s)%n", verb, count, (now - start) / 1_000_000, rate(now));
+        }
+
+        private long rate(long now) {
+            long elapsed = Math.max(1, now - start);
+            return count * 1_000_000_000L / elapsed;
+        }
+    }
+
+    // ================= I/O =================
+    static Reader openReader(Path path) throws IOException {
+        InputStream in = Files.newInputStream(path);
+        if (path.toString().endsWith(".gz")) in = new GZIPInputStream(in, IO_BUFFER);
+        return new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8), IO_BUFFER);
+    }
+
+    static Writer openWriter(Path path) throws IOException {
+        OutputStream out = Files.newOutputStream(path);
+        if (path.toString().endsWith(".gz")) out = new GZIPOutputStream(out, IO_BUFFER);
+        return new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), IO_BUFFER);
+    }
+
+    private static boolean isUrl(String s) {
+        return s.startsWith("http://") || s.startsWith("https://");
+    }
+
+    // The response body is parsed as it arrives; nothing is buffered beyond the reader.
+    private static Reader openUrl(String baseUrl, String node) throws IOException, InterruptedException {
+        HttpRequest request = HttpRequest.newBuilder(nodeUri(baseUrl, node))
+                .header("Authorization", "Bearer owner")
+                .GET()
+                .build();
+        HttpResponse<InputStream> response = HttpClient.newHttpClient()
+                .send(request, HttpResponse.BodyHandlers.ofInputStream());
+        if (response.statusCode() / 100 != 2) {
+            response.body().close();
+            throw new IOException("Emulator GET " + node + " failed: HTTP " + response.statusCode());
+        }
+        return new BufferedReader(new InputStreamReader(response.body(), StandardCharsets.UTF_8), IO_BUFFER);
+    }
+
+    // http://host:port/?ns=name + "users" -> http://host:port/users.json?ns=name
+    static URI nodeUri(String baseUrl, String node) {
+        URI base = URI.create(baseUrl);
+        String path = base.getPath() == null || base.getPath().isEmpty() ? "/" : base.getPath();
+        if (!path.endsWith("/")) path += "/";
+        try {
+            return new URI(base.getScheme(), base.getAuthority(), path + node + ".json", base.getQuery(), null);
+        } catch (URISyntaxException e) {
+            throw new IllegalArgumentException("Bad emulator URL: " + baseUrl, e);
+        }
+    }
+}
@@ -0,0 +1,121 @@
+package com.example.halldues;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.os.Process;
+import android.os.SystemClock;
+import android.os.Trace;
+import android.util.Log;
+
+import androidx.annotation.Nullable;
+
+import com.google.firebase.auth.FirebaseAuth;
+import com.google.firebase.auth.FirebaseUser;
+
+// Cold start. The saved session is read once, in HallDuesApplication.onCreate, and
+// when there is one the profile and the current month are requested together right
+// then, before any Activity exists. They land in FirebaseManager's session profile
+// and month cache, which DashboardActivity reads, so the dashboard (the launcher)
+// usually finds both ready or already in flight instead of fetching them one
+// after the other.
+//
+// Marks are logged as "startup <name> +<ms since process start>", emitted as trace
+// sections, and recorded in the operation metrics as "startup.<name>";
+// "firstCalendar" is the time to the first drawn calendar.
+public class StartupPipeline {
+
+    private static final String TAG = "HallDuesStartup";
+    private static final String PREFS_NAME = "HallDuesPrefs";
+    private static final String KEY_USER_ID = "userId";
+
+    private static StartupPipeline instance;
+
+    private final SharedPreferences prefs;
+    private String sessionUserId;
+    private boolean prefetched;
+    private boolean firstCalendarMarked;
+
+    private StartupPipeline(Context context) {
+        prefs = context.getApplicationContext().getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+        sessionUserId = prefs.getString(KEY_USER_ID, null);
+    }
+
+    public static synchronized StartupPipeline getInstance(Context context) {
+        if (instance == null) {
+            instance = new StartupPipeline(context);
+        }
+        return instance;
+    }
+
+    // Called from Application.onCreate; does nothing without a saved session.
+    public void start() {
+        mark("application");
+        String userId = getSessionUserId();
+        if (userId == null || prefetched) return;
+        prefetched = true;
+        mark("session");
+
+        FirebaseManager firebaseManager = FirebaseManager.getInstance();
+        firebaseManager.getUserById(userId, new FirebaseManager.OnUserOperationListener() {
+            @Override
+            public void onSuccess(User user) {
+                mark("profile");
+            }
+
+            @Override
+            public void onFailure(String error) {
+                mark("profileFailed");
+            }
+        });
+        firebaseManager.getMealMonth(userId, DateKeys.formatMonth(DateKeys.currentMonthKey()),
+                new FirebaseManager.OnMealMonthListener() {
+                    @Override
+                    public void onSuccess(MonthMealBitmap month) {
+                        mark("month");
+                    }
+
+                    @Override
+                    public void onFailure(String error) {
+                        mark("monthFailed");
+                    }
+                });
+    }
+
+    // ================= SESSION =================
+    // The saved user, if Firebase Auth still has them signed in.
+    @Nullable
+    public String getSessionUserId() {
+        FirebaseUser firebaseUser = FirebaseAuth.getInstance().getCurrentUser();
+        if (sessionUserId == null || firebaseUser == null) return null;
+        return sessionUserId;
+    }
+
+    public void saveSession(String userId) {
+        sessionUserId = userId;
+        prefs.edit().putString(KEY_USER_ID, userId).apply();
+    }
+
+    public void clearSession() {
+        sessionUserId = null;
+        prefetched = false;
+        prefs.edit().clear().apply();
+    }
+
+    // ================= TRACE MARKS =================
+    public void mark(String name) {
+        long sinceStart = SystemClock.elapsedRealtime() - Process.getStartElapsedRealtime();
+        Trace.beginSection("startup " + name);
+        Trace.endSection();
+        Log.i(TAG, "startup " + name + " +" + sinceStart + "ms");
+        FirebaseManager.getInstance().getMetrics()
+                .record("startup." + name, sinceStart * 1_000_000L, true, 0, 0);
+    }
+
+    // Only a start that went through the prefetch counts; after a manual login the
+    // time is mostly the user typing.
+    public void markFirstCalendar() {
+        if (!prefetched || firstCalendarMarked) return;
+        firstCalendarMarked = true;
+        mark("firstCalendar");
+    }
+}
@@ -0,0 +1,120 @@
+package com.example.halldues;
+
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.google.firebase.database.DataSnapshot;
+import com.google.firebase.database.DatabaseError;
+import com.google.firebase.database.DatabaseReference;
+import com.google.firebase.database.ValueEventListener;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// In-memory profile of the signed-in resident for the lifetime of the session.
+// One long-lived listener on users/{uid} fills it and keeps it fresh, so screens
+// read the User synchronously instead of each fetching it again.
+public class UserProfileRepository {
+
+    private static final String TAG = "UserProfileRepository";
+
+    private final DatabaseReference usersRef;
+    private final List<FirebaseManager.OnUserOperationListener> waiting = new ArrayList<>();
+
+    private String sessionUserId;
+    private User current;
+    private ValueEventListener profileListener;
+    private boolean profileIndexed; // the backfill below is tried once per session
+
+    public UserProfileRepository(DatabaseReference usersRef) {
+        this.usersRef = usersRef;
+    }
+
+    @Nullable
+    public User get(String userId) {
+        return current != null && userId.equals(sessionUserId) ? current : null;
+    }
+
+    // Starts (or joins) the session for userId; listener fires once the profile is known.
+    public void load(String userId, FirebaseManager.OnUserOperationListener listener) {
+        if (!userId.equals(sessionUserId)) {
+            clear();
+            startWatching(userId);
+        }
+
+        if (current != null) {
+            listener.onSuccess(current);
+        } else {
+            waiting.add(listener);
+        }
+    }
+
+    public void clear() {
+        if (profileListener != null) {
+            usersRef.child(sessionUserId).removeEventListener(profileListener);
+        }
+        profileListener = null;
+        sessionUserId = null;
+        current = null;
+        profileIndexed = false;
+
+        List<FirebaseManager.OnUserOperationListener> pending = new ArrayList<>(waiting);
+        waiting.clear();
+        for (FirebaseManager.OnUserOperationListener l : pending) {
+            l.onFailure("Session ended.");
+        }
+    }
+
+    // Profiles written before resident search lack the name key and the roll number
+    // entry; the owner adds both the first time their session loads the profile.
+    // Tried once per session: a rejected write is reverted locally, which fires the
+    // profile listener again, and must not start another attempt.
+    private void indexProfile(User user) {
+        profileIndexed = true;
+        Map<String, Object> updates = new HashMap<>();
+        updates.put("users/" + user.getId() + "/" + SnapshotMappers.NAME_KEY, SnapshotMappers.nameKey(user.getFullName()));
+        String roll = SnapshotMappers.rollKey(user.getRollNumber());
+        if (roll != null && roll.equals(user.getRollNumber())) {
+            updates.put("rollIndex/" + roll, user.getId());
+        }
+        usersRef.getRoot().updateChildren(updates)
+                .addOnFailureListener(e -> Log.w(TAG, "Profile index backfill failed: " + e.getMessage()));
+    }
+
+    private void startWatching(String userId) {
+        sessionUserId = userId;
+        profileListener = usersRef.child(userId).addValueEventListener(new ValueEventListener() {
+            @Override
+            public void onDataChange(@NonNull DataSnapshot snapshot) {
+                User user = SnapshotMappers.userFromSnapshot(snapshot);
+                if (user != null && !profileIndexed && !snapshot.hasChild(SnapshotMappers.NAME_KEY)) {
+                    indexProfile(user);
+                }
+                if (user != null) {
+                    current = user;
+                    notifyWaiting(user, null);
+                } else {
+                    notifyWaiting(null, "User data not found in database.");
+                }
+            }
+
+            @Override
+            public void onCancelled(@NonNull DatabaseError error) {
+                notifyWaiting(null, "Database error: " + error.getMessage());
+            }
+        });
+    }
+
+    private void notifyWaiting(@Nullable User user, @Nullable String error) {
+        List<FirebaseManager.OnUserOperationListener> pending = new ArrayList<>(waiting);
+        waiting.clear();
+        for (FirebaseManager.OnUserOperationListener l : pending) {
+            if (user != null) l.onSuccess(user);
+            else l.onFailure(error);
+        }
+    }
+}
@@ -0,0 +1,50 @@
+plugins {
+    java
+    id("me.champeau.jmh") version "0.7.2"
+}
+
+java {
+    sourceCompatibility = JavaVersion.VERSION_11
+    targetCompatibility = JavaVersion.VERSION_11
+}
+
+// The app classes under test are compiled straight from the app's sources, so the
+// benchmarks always measure the code in this commit. Only classes without Android
+// framework dependencies can be listed here.
+sourceSets {
+    main {
+        java {
+            srcDir(rootDir.parentFile)
+            include(
+                "BillingEngine.java",
+                "DateKeys.java",
+                "MealRecord.java",
+                "MealStatus.java",
+                "MonthMealBitmap.java",
+                "PaymentRecord.java",
+                "RateTable.java",
+                "SnapshotMappers.java",
+                "User.java"
+            )
+        }
+    }
+}
+
+dependencies {
+    compileOnly("androidx.annotation:annotation:1.9.1")
+    // Same com.google.firebase.database annotations and class mapper as the Android
+    // SDK, packaged for the JVM.
+    implementation("com.google.firebase:firebase-admin:9.4.3")
+}
+
+// Run with: gradle jmh (from this directory). Results are written as JSON to
+// build/results/jmh/results.json; keep one per commit and compare them with any
+// JMH result viewer (e.g. jmh.morethan.io) to spot regressions.
+jmh {
+    jmhVersion.set("1.37")
+    warmupIterations.set(3)
+    iterations.set(5)
+    fork.set(2)
+    resultFormat.set("JSON")
+    resultsFile.set(layout.buildDirectory.file("results/jmh/results.json"))
+}
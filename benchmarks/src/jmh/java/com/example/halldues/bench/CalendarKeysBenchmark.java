@@ -0,0 +1,69 @@
+package com.example.halldues.bench;
+
+import com.example.halldues.DateKeys;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.text.SimpleDateFormat;
+import java.util.Calendar;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+// The date keys needed to lay out one calendar month.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class CalendarKeysBenchmark {
+
+    private final SimpleDateFormat dateFormat = new SimpleDateFormat("yyyy-MM-dd", Locale.US);
+    private Calendar currentCalendar;
+    private int monthKey;
+
+    @Setup
+    public void setUp() {
+        currentCalendar = Calendar.getInstance();
+        currentCalendar.clear();
+        currentCalendar.set(2025, Calendar.APRIL, 1);
+        monthKey = DateKeys.parseMonth(History.MONTH);
+    }
+
+    // buildCalendar before MealCalendarView: clone the Calendar, then format a
+    // "yyyy-MM-dd" key per day.
+    @Benchmark
+    public void calendarAndSimpleDateFormat(Blackhole bh) {
+        Calendar cal = (Calendar) currentCalendar.clone();
+        cal.set(Calendar.DAY_OF_MONTH, 1);
+        bh.consume(cal.get(Calendar.DAY_OF_WEEK) - 1);
+        int daysInMonth = cal.getActualMaximum(Calendar.DAY_OF_MONTH);
+        for (int day = 1; day <= daysInMonth; day++) {
+            cal.set(Calendar.DAY_OF_MONTH, day);
+            bh.consume(dateFormat.format(cal.getTime()));
+        }
+    }
+
+    // What the calendar view does now: integer keys from table lookups.
+    @Benchmark
+    public void dateKeys(Blackhole bh) {
+        bh.consume(DateKeys.firstWeekday(monthKey));
+        int daysInMonth = DateKeys.lengthOfMonth(monthKey);
+        for (int day = 1; day <= daysInMonth; day++) {
+            bh.consume(DateKeys.dayKey(monthKey, day));
+        }
+    }
+
+    // Integer keys formatted back to strings, as records for the wire need.
+    @Benchmark
+    public void dateKeysFormatted(Blackhole bh) {
+        int daysInMonth = DateKeys.lengthOfMonth(monthKey);
+        for (int day = 1; day <= daysInMonth; day++) {
+            bh.consume(DateKeys.formatDay(DateKeys.dayKey(monthKey, day)));
+        }
+    }
+}
@@ -0,0 +1,75 @@
+package com.example.halldues.bench;
+
+import com.example.halldues.BillingEngine;
+import com.example.halldues.DateKeys;
+import com.example.halldues.MealRecord;
+import com.example.halldues.MealStatus;
+import com.example.halldues.MonthMealBitmap;
+import com.example.halldues.RateTable;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+// One resident's month dues after a toggle.
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class DuesBenchmark {
+
+    private final RateTable rates = RateTable.DEFAULT;
+    private List<MealRecord> monthRecords;
+    private MonthMealBitmap month;
+    private int monthKey;
+    private BillingEngine engine;
+    private MonthMealBitmap toggled;
+    private int tap;
+
+    @Setup
+    public void setUp() {
+        monthRecords = History.month(History.records(), History.MONTH);
+        month = MonthMealBitmap.fromRecords(monthRecords);
+        monthKey = DateKeys.parseMonth(History.MONTH);
+        engine = new BillingEngine(rates, monthKey, month);
+        toggled = month;
+    }
+
+    // Recount the month's records by status string and price the counts, as any
+    // screen without the engine has to on every change.
+    @Benchmark
+    public long recountRecords() {
+        int daysInMonth = DateKeys.lengthOfMonth(monthKey);
+        int off = 0;
+        int closed = 0;
+        for (MealRecord r : monthRecords) {
+            if ("MEAL_OFF".equals(r.getStatus())) off++;
+            else if ("HALL_CLOSED".equals(r.getStatus())) closed++;
+        }
+        int on = daysInMonth - off - closed;
+        long flat = closed < daysInMonth ? rates.generatorCharge + rates.waterCharge + rates.miscCharge : 0;
+        return on * rates.mealRate + Math.max(0, off - rates.freeOffDays) * rates.offDayFine + flat;
+    }
+
+    // Engine built from the month bitmap: a few bit counts.
+    @Benchmark
+    public long engineFromBitmap() {
+        return new BillingEngine(rates, monthKey, month).getTotal();
+    }
+
+    // Engine kept current one toggle at a time.
+    @Benchmark
+    public long engineToggle() {
+        int day = tap++ % 30 + 1;
+        MealStatus next = toggled.getOrDefault(day).next();
+        toggled = toggled.with(day, next);
+        engine.setDay(day, next);
+        return engine.getTotal();
+    }
+}
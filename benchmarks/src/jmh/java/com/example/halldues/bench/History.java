@@ -0,0 +1,66 @@
+package com.example.halldues.bench;
+
+import com.example.halldues.DateKeys;
+import com.example.halldues.MealRecord;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+// Deterministic fixture: one resident with a status on every day of YEARS years,
+// as the flat meals/ node held it before month nodes, newest month MONTH.
+final class History {
+
+    static final String USER_ID = "uid00042";
+    static final String MONTH = "2025-04";
+    static final int YEARS = 3;
+
+    private static final String[] STATUSES = {"MEAL_ON", "MEAL_ON", "MEAL_ON", "MEAL_OFF", "HALL_CLOSED"};
+
+    private History() {
+    }
+
+    static List<MealRecord> records() {
+        Random random = new Random(42);
+        int last = DateKeys.parseDay(MONTH + "-30");
+        int first = DateKeys.plusDays(last, -365 * YEARS + 1);
+        List<MealRecord> list = new ArrayList<>();
+        for (int day = first; day <= last; day = DateKeys.plusDays(day, 1)) {
+            MealRecord r = new MealRecord();
+            r.setUserId(USER_ID);
+            r.setDate(DateKeys.formatDay(day));
+            r.setId(USER_ID + "_" + r.getDate());
+            r.setStatus(STATUSES[random.nextInt(STATUSES.length)]);
+            r.setTimestamp(1_700_000_000_000L + random.nextInt(1_000_000_000));
+            list.add(r);
+        }
+        return list;
+    }
+
+    // What DataSnapshot.getValue() hands the class mapper: strings and Long.
+    static Map<String, Object> toRow(MealRecord r) {
+        Map<String, Object> row = new HashMap<>();
+        row.put("id", r.getId());
+        row.put("userId", r.getUserId());
+        row.put("date", r.getDate());
+        row.put("status", r.getStatus());
+        row.put("timestamp", r.getTimestamp());
+        return row;
+    }
+
+    static List<Map<String, Object>> rows(List<MealRecord> records) {
+        List<Map<String, Object>> rows = new ArrayList<>(records.size());
+        for (MealRecord r : records) rows.add(toRow(r));
+        return rows;
+    }
+
+    static List<MealRecord> month(List<MealRecord> records, String yearMonth) {
+        List<MealRecord> list = new ArrayList<>();
+        for (MealRecord r : records) {
+            if (r.getDate().startsWith(yearMonth)) list.add(r);
+        }
+        return list;
+    }
+}
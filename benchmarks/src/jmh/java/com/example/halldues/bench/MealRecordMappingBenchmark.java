@@ -0,0 +1,74 @@
+package com.example.halldues.bench;
+
+import com.example.halldues.MealRecord;
+import com.example.halldues.MonthMealBitmap;
+import com.example.halldues.SnapshotMappers;
+import com.google.firebase.database.utilities.encoding.CustomClassMapper;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+// Turning one month of database rows into MealRecords.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class MealRecordMappingBenchmark {
+
+    private List<Map<String, Object>> monthRows;
+    private List<MealRecord> monthRecords;
+    private MonthMealBitmap month;
+
+    @Setup
+    public void setUp() {
+        monthRecords = History.month(History.records(), History.MONTH);
+        monthRows = History.rows(monthRecords);
+        month = MonthMealBitmap.fromRecords(monthRecords);
+    }
+
+    // snapshot.getValue(MealRecord.class) goes through this reflective mapper.
+    @Benchmark
+    public void reflectiveFromRows(Blackhole bh) {
+        for (Map<String, Object> row : monthRows) {
+            bh.consume(CustomClassMapper.convertToCustomClass(row, MealRecord.class));
+        }
+    }
+
+    // setValue(record) on the write path.
+    @Benchmark
+    public void reflectiveToRows(Blackhole bh) {
+        for (MealRecord r : monthRecords) {
+            bh.consume(CustomClassMapper.convertToPlainJavaTypes(r));
+        }
+    }
+
+    // SnapshotMappers.mealRecordFromSnapshot: the same rows, field by field.
+    @Benchmark
+    public void mappedFromRows(Blackhole bh) {
+        for (Map<String, Object> row : monthRows) {
+            bh.consume(SnapshotMappers.mealRecordFromMap(row));
+        }
+    }
+
+    @Benchmark
+    public void mappedToRows(Blackhole bh) {
+        for (MealRecord r : monthRecords) {
+            bh.consume(SnapshotMappers.toMap(r));
+        }
+    }
+
+    // Records rebuilt from a month node for callers that still want a list.
+    @Benchmark
+    public List<MealRecord> bitmapToRecords() {
+        return month.toRecords(History.USER_ID, History.MONTH);
+    }
+}
@@ -0,0 +1,67 @@
+package com.example.halldues.bench;
+
+import com.example.halldues.MealRecord;
+import com.example.halldues.MonthMealBitmap;
+import com.google.firebase.database.utilities.encoding.CustomClassMapper;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+// Reading one month of a resident's meals: the old full-history query against
+// the month node the app reads now.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class MonthFilterBenchmark {
+
+    private List<Map<String, Object>> historyRows;
+    private List<MealRecord> history;
+    private String monthHex;
+
+    @Setup
+    public void setUp() {
+        history = History.records();
+        historyRows = History.rows(history);
+        monthHex = MonthMealBitmap.fromRecords(History.month(history, History.MONTH)).toHex();
+    }
+
+    // getMealRecordsForMonth as it was: map every record of the resident's
+    // history, keep those whose date starts with the month.
+    @Benchmark
+    public List<MealRecord> mapAndFilterHistory() {
+        List<MealRecord> list = new ArrayList<>();
+        for (Map<String, Object> row : historyRows) {
+            MealRecord r = CustomClassMapper.convertToCustomClass(row, MealRecord.class);
+            if (r != null && r.getDate().startsWith(History.MONTH)) list.add(r);
+        }
+        return list;
+    }
+
+    // The startsWith scan alone, over records already mapped.
+    @Benchmark
+    public List<MealRecord> filterHistory() {
+        return History.month(history, History.MONTH);
+    }
+
+    // The filtered month folded into the bitmap the calendar draws from.
+    @Benchmark
+    public MonthMealBitmap filterHistoryToBitmap() {
+        return MonthMealBitmap.fromRecords(History.month(history, History.MONTH));
+    }
+
+    // Current read: meals/{uid}/{yyyy-MM}, one hex field.
+    @Benchmark
+    public MonthMealBitmap monthNode() {
+        return MonthMealBitmap.fromHex(monthHex);
+    }
+}
@@ -0,0 +1,69 @@
+package com.example.halldues.bench;
+
+import com.example.halldues.MealRecord;
+import com.example.halldues.MealStatus;
+import com.example.halldues.MonthMealBitmap;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+// One calendar tap: find the day's status, cycle it, store it back.
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class StatusCycleBenchmark {
+
+    private final Map<String, MealRecord> mealRecordsMap = new HashMap<>();
+    private final String[] dates = new String[30];
+    private MonthMealBitmap month;
+    private int tap;
+
+    @Setup
+    public void setUp() {
+        for (MealRecord r : History.month(History.records(), History.MONTH)) {
+            mealRecordsMap.put(r.getDate(), r);
+        }
+        for (int day = 1; day <= 30; day++) {
+            dates[day - 1] = History.MONTH + (day < 10 ? "-0" : "-") + day;
+        }
+        month = MonthMealBitmap.fromRecords(mealRecordsMap.values());
+    }
+
+    // The old tap handler: look the record up by date string, switch on the
+    // status string, and store a new MealRecord.
+    @Benchmark
+    public MealRecord stringStatusAndRecordMap() {
+        String date = dates[tap++ % 30];
+        MealRecord current = mealRecordsMap.get(date);
+        String newStatus = getNextStatus(current != null ? current.getStatus() : "MEAL_ON");
+        MealRecord record = new MealRecord(History.USER_ID, date, newStatus);
+        mealRecordsMap.put(date, record);
+        return record;
+    }
+
+    // Current tap handler: MealStatus.next() on the month bitmap.
+    @Benchmark
+    public MonthMealBitmap enumStatusAndBitmap() {
+        int day = tap++ % 30 + 1;
+        month = month.with(day, month.getOrDefault(day).next());
+        return month;
+    }
+
+    // Copy of MealManagementActivity.getNextStatus before MealStatus.next().
+    private static String getNextStatus(String s) {
+        switch (s) {
+            case "MEAL_ON": return "MEAL_OFF";
+            case "MEAL_OFF": return "HALL_CLOSED";
+            default: return "MEAL_ON";
+        }
+    }
+}
@@ -0,0 +1,52 @@
+package com.example.halldues.bench;
+
+import com.example.halldues.SnapshotMappers;
+import com.example.halldues.User;
+import com.google.firebase.database.utilities.encoding.CustomClassMapper;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+// One profile node, as the profile listener and getUserById read it.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class UserMappingBenchmark {
+
+    private User user;
+    private Map<String, Object> node;
+
+    @Setup
+    public void setUp() {
+        user = new User("Rahim Uddin", "CSE", "1907001", History.USER_ID);
+        node = SnapshotMappers.toMap(user);
+    }
+
+    @Benchmark
+    public User reflectiveFromNode() {
+        return CustomClassMapper.convertToCustomClass(node, User.class);
+    }
+
+    @Benchmark
+    public User mappedFromNode() {
+        return SnapshotMappers.userFromMap(History.USER_ID, node);
+    }
+
+    @Benchmark
+    public Object reflectiveToNode() {
+        return CustomClassMapper.convertToPlainJavaTypes(user);
+    }
+
+    @Benchmark
+    public Map<String, Object> mappedToNode() {
+        return SnapshotMappers.toMap(user);
+    }
+}